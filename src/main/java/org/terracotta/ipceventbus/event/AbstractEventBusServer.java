@@ -0,0 +1,369 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The part of a server common to all the transports: the registry of the client connections and the broadcast of the
+ * events to them.
+ * <p>
+ * When relaying, the events received from a client are also forwarded to the other clients, and the interest advertised
+ * to the clients covers the events listened to by the other clients.
+ * <p>
+ * The clients are registered by ID, the ID of a connection being unique among the connected clients. The broadcasts
+ * iterate over an array of the clients, taken again after each connection or disconnection by the first broadcast
+ * needing it: registering a client costs a map insertion and broadcasting takes no lock. The members of each channel
+ * are kept the same way by {@link Channels}, updated under the same lock as the clients.
+ *
+ * @author Mathieu Carbou
+ */
+abstract class AbstractEventBusServer extends DefaultEventBus implements EventBusServer {
+
+  private static final Connection[] NONE = new Connection[0];
+
+  private final Map<String, Connection> clientsById = new ConcurrentHashMap<String, Connection>();
+  // the clients, or null after a change until a broadcast takes them again
+  private volatile Connection[] clients = NONE;
+  private final Object clientsLock = new Object();
+  private final Channels channels = new Channels();
+  private final AtomicLong dropped = new AtomicLong();
+  private final boolean relay;
+  private final Sessions sessions = new Sessions();
+  // orders the interest updates, so that a client never ends up with a stale one
+  private final Object interestLock = new Object();
+  private Interest interest;
+
+  AbstractEventBusServer(String uuid, ErrorListener errorListener, Listeners listeners, Dispatcher dispatcher, boolean relay) {
+    super(uuid, errorListener, listeners, dispatcher);
+    this.relay = relay;
+  }
+
+  /**
+   * Registers a new client and notifies the local listeners
+   */
+  void connected(Connection client) {
+    synchronized (interestLock) {
+      synchronized (clientsLock) {
+        clientsById.put(client.getId(), client);
+        clients = null;
+        // the client might have joined its channels before being registered
+        channels.update(client, client.getPeerChannels());
+      }
+      Interest changed = advertised();
+      if (changed.equals(interest)) {
+        client.sendInterest(interest);
+      } else {
+        interest = changed;
+        for (Connection c : getClients()) {
+          c.sendInterest(changed);
+        }
+      }
+    }
+    sendLocal(new DefaultEvent(getId(), "eventbus.client.connect", client.getId()));
+  }
+
+  /**
+   * Unregisters a client once its connection is closed
+   */
+  void disconnected(Connection client) {
+    boolean removed;
+    synchronized (clientsLock) {
+      removed = clientsById.remove(client.getId(), client);
+      if (removed) {
+        clients = null;
+        channels.remove(client);
+      }
+    }
+    if (removed) {
+      dropped.addAndGet(client.getDroppedEvents());
+      interestChanged();
+    }
+  }
+
+  /**
+   * Notifies the local listeners of an event received from a client, and forwards it to the other clients when relaying
+   */
+  void received(Connection from, Event event) {
+    sendLocal(event);
+    if (relay && event.isUserEvent() && !(event instanceof CallEvent)) {
+      broadcast(from, event, null);
+    }
+  }
+
+  /**
+   * Called once a client has advertised a new interest
+   */
+  void interestChanged() {
+    if (relay) {
+      listenersChanged();
+    }
+  }
+
+  /**
+   * Called once a client has joined or left channels
+   */
+  void channelsChanged(Connection client) {
+    synchronized (clientsLock) {
+      if (clientsById.get(client.getId()) == client) {
+        channels.update(client, client.getPeerChannels());
+      }
+    }
+  }
+
+  /**
+   * Closes all the client connections, after having sent them their queued events
+   */
+  void closeClients() {
+    for (Connection client : getClients()) {
+      client.close();
+    }
+  }
+
+  @Override
+  public void trigger(String name, Object data) {
+    Assert.legalEventName(name);
+    Assert.notInternalName(name);
+    Event event = new DefaultEvent(getId(), name, data);
+    sendLocal(event);
+    sendRemote(event);
+  }
+
+  @Override
+  void trigger(DefaultTopic topic, Object data) {
+    Event event = new DefaultEvent(getId(), topic.getName(), System.currentTimeMillis(), data);
+    sendLocal(event, topic.getListeners());
+    sendRemote(event, topic.getEncodedName());
+  }
+
+  @Override
+  public boolean triggerTo(String clientId, String name, Object data) {
+    Assert.legalEventName(name);
+    Assert.notInternalName(name);
+    Connection client = clientsById.get(clientId);
+    if (client == null || !client.wants(name)) {
+      return false;
+    }
+    client.sendRemote(new OutboundEvent(new DefaultEvent(getId(), name, data), null, false));
+    return true;
+  }
+
+  @Override
+  public int triggerTo(Collection<String> clientIds, String name, Object data) {
+    Assert.legalEventName(name);
+    Assert.notInternalName(name);
+    Event event = new DefaultEvent(getId(), name, data);
+    // each client gets the event once, even if its ID is given several times
+    Set<String> ids = new LinkedHashSet<String>(clientIds);
+    int sent = 0;
+    // encoded once by the first client writer, as a broadcast event
+    OutboundEvent outbound = null;
+    for (String clientId : ids) {
+      Connection client = clientsById.get(clientId);
+      if (client != null && client.wants(name)) {
+        if (outbound == null) {
+          outbound = new OutboundEvent(event, null, ids.size() > 1);
+        }
+        client.sendRemote(outbound);
+        sent++;
+      }
+    }
+    return sent;
+  }
+
+  @Override
+  public int triggerChannel(String channel, String name, Object data) {
+    Assert.legalChannelName(channel);
+    Assert.legalEventName(name);
+    Assert.notInternalName(name);
+    Connection[] members = channels.members(channel);
+    int sent = 0;
+    // encoded once by the first client writer, as a broadcast event
+    OutboundEvent outbound = null;
+    for (Connection client : members) {
+      if (client.wants(name)) {
+        if (outbound == null) {
+          outbound = new OutboundEvent(new DefaultEvent(getId(), name, data), null, members.length > 1);
+        }
+        client.sendRemote(outbound);
+        sent++;
+      }
+    }
+    return sent;
+  }
+
+  @Override
+  public Collection<String> getChannelMembers(String channel) {
+    Assert.legalChannelName(channel);
+    Connection[] members = channels.members(channel);
+    List<String> ids = new ArrayList<String>(members.length);
+    for (Connection client : members) {
+      ids.add(client.getId());
+    }
+    return ids;
+  }
+
+  void sendRemote(Event event) {
+    sendRemote(event, null);
+  }
+
+  void sendRemote(Event event, byte[] encodedName) {
+    broadcast(null, event, encodedName);
+  }
+
+  @Override
+  boolean sendRequest(Request request) {
+    return broadcast(null, request, null);
+  }
+
+  /**
+   * @param except The client not to send the event to, or null
+   * @return true if the event was sent to a client at least
+   */
+  private boolean broadcast(Connection except, Event event, byte[] encodedName) {
+    Connection[] clients = clients();
+    // encoded once by the first client writer, then the same frame is written to all the clients listening to it
+    OutboundEvent outbound = null;
+    for (Connection client : clients) {
+      if (client != except && client.wants(event.getName())) {
+        if (outbound == null) {
+          outbound = event instanceof RelayedEvent ?
+              new OutboundEvent((RelayedEvent) event) :
+              new OutboundEvent(event, encodedName, clients.length > 1);
+        }
+        client.sendRemote(outbound);
+      }
+    }
+    return outbound != null;
+  }
+
+  @Override
+  void listenersChanged() {
+    synchronized (interestLock) {
+      Interest changed = advertised();
+      if (!changed.equals(interest)) {
+        interest = changed;
+        for (Connection client : getClients()) {
+          client.sendInterest(changed);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The events this server wants from its clients
+   */
+  private Interest advertised() {
+    Interest advertised = listeners.interest();
+    if (relay) {
+      for (Connection client : getClients()) {
+        advertised = advertised.union(client.getPeerInterest());
+      }
+    }
+    return advertised;
+  }
+
+  Sessions getSessions() {
+    return sessions;
+  }
+
+  /**
+   * @return The clients connected, without copying them
+   */
+  private Connection[] clients() {
+    Connection[] clients = this.clients;
+    if (clients == null) {
+      synchronized (clientsLock) {
+        clients = this.clients;
+        if (clients == null) {
+          this.clients = clients = clientsById.values().toArray(NONE);
+        }
+      }
+    }
+    return clients;
+  }
+
+  Collection<Connection> getClients() {
+    return Arrays.asList(clients());
+  }
+
+  @Override
+  public int getClientCount() {
+    return clientsById.size();
+  }
+
+  @Override
+  public Map<String, Integer> getClientQueueDepths() {
+    Map<String, Integer> depths = new LinkedHashMap<String, Integer>();
+    for (Connection client : getClients()) {
+      depths.put(client.getId(), client.getQueueDepth());
+    }
+    return depths;
+  }
+
+  @Override
+  public Map<String, Long> getClientRoundTripMicros() {
+    Map<String, Long> roundTrips = new LinkedHashMap<String, Long>();
+    for (Connection client : getClients()) {
+      roundTrips.put(client.getId(), client.getRoundTripMicros());
+    }
+    return roundTrips;
+  }
+
+  @Override
+  public Map<String, Integer> getClientCredits() {
+    Map<String, Integer> credits = new LinkedHashMap<String, Integer>();
+    for (Connection client : getClients()) {
+      credits.put(client.getId(), client.getAvailableCredits());
+    }
+    return credits;
+  }
+
+  @Override
+  public int getQueueDepth() {
+    int depth = 0;
+    for (Connection client : getClients()) {
+      depth += client.getQueueDepth();
+    }
+    return depth;
+  }
+
+  @Override
+  public long getDroppedEvents() {
+    long dropped = this.dropped.get();
+    for (Connection client : getClients()) {
+      dropped += client.getDroppedEvents();
+    }
+    return dropped;
+  }
+
+  @Override
+  public String toString() {
+    return EventBusServer.class.getSimpleName() + ":" + getId();
+  }
+
+}
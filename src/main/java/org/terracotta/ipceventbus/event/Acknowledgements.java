@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Decides when the server side of a connection acknowledges the sequenced events it reads.
+ * <p>
+ * A reader acknowledging each time it has read everything available would send an acknowledgement per socket read,
+ * waking the writer and the client up as often as the events arrive. Instead, a batch of {@link #EVERY} events is
+ * acknowledged at once, and the last events of a burst are acknowledged by the timer shortly after the reader became
+ * idle, a single time for all the bursts read meanwhile.
+ *
+ * @author Mathieu Carbou
+ */
+final class Acknowledgements {
+
+  // the number of sequenced events read before acknowledging them
+  static final int EVERY = 256;
+  // the delay before acknowledging the events read when nothing more is available
+  static final long DELAY_MICROS = 1000;
+
+  private final AtomicBoolean delayed = new AtomicBoolean();
+  private final Runnable delayedAck;
+  private final Runnable ack;
+  // only used by the reader
+  private int unacked;
+
+  /**
+   * @param ack Queues an acknowledgement of the last sequence number received, without blocking
+   */
+  Acknowledgements(final Runnable ack) {
+    this.ack = ack;
+    this.delayedAck = new Runnable() {
+      @Override
+      public void run() {
+        delayed.set(false);
+        ack.run();
+      }
+    };
+  }
+
+  /**
+   * Called by the reader for each sequenced event read, duplicates included
+   */
+  void received() {
+    if (++unacked >= EVERY) {
+      unacked = 0;
+      ack.run();
+    }
+  }
+
+  /**
+   * Called by the reader when no more frames are available
+   */
+  void idle() {
+    if (unacked > 0) {
+      unacked = 0;
+      if (delayed.compareAndSet(false, true)) {
+        Heartbeat.schedule(delayedAck, DELAY_MICROS, TimeUnit.MICROSECONDS);
+      }
+    }
+  }
+
+}
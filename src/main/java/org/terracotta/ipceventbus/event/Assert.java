@@ -26,6 +26,11 @@ final class Assert {
     if (name.length() == 0) throw new IllegalArgumentException(name);
   }
 
+  static void legalChannelName(String channel) {
+    if (channel == null) throw new NullPointerException("Channel name is null");
+    if (channel.length() == 0) throw new IllegalArgumentException(channel);
+  }
+
   static void notInternalName(String name) {
     if (name.startsWith("eventbus.")) throw new IllegalArgumentException(name);
   }
@@ -17,6 +17,7 @@
 package org.terracotta.ipceventbus.event;
 
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Mathieu Carbou
@@ -26,6 +27,8 @@ public class BaseBuilder<T extends BaseBuilder<T>> {
   String busId;
   ErrorListener errorListener = new RethrowingErrorListener();
   Listeners listeners = new Listeners();
+  Dispatcher dispatcher = Dispatcher.direct();
+  ConnectionOptions connectionOptions = new ConnectionOptions();
 
   BaseBuilder() {
   }
@@ -48,7 +51,7 @@ public class BaseBuilder<T extends BaseBuilder<T>> {
    * @param listener The listener to register
    */
   public T on(String event, EventListener listener) {
-    listeners.on(event).add(listener);
+    listeners.add(event, listener);
     return (T) this;
   }
 
@@ -58,7 +61,7 @@ public class BaseBuilder<T extends BaseBuilder<T>> {
    * @param listener The listener to register
    */
   public T on(EventListener listener) {
-    listeners.on("").add(listener);
+    listeners.add("", listener);
     return (T) this;
   }
 
@@ -73,8 +76,120 @@ public class BaseBuilder<T extends BaseBuilder<T>> {
     return (T) this;
   }
 
+  /**
+   * Chooses the threads calling the {@link EventListener}s. By default, listeners are called by the thread triggering the
+   * event, or by the socket reader thread for remote events.
+   *
+   * @param dispatcher The dispatcher to use, i.e. {@link Dispatcher#queued(int, Dispatcher.Overflow)}. It will be owned by the built bus.
+   * @return this builder
+   */
+  public T dispatcher(Dispatcher dispatcher) {
+    if (dispatcher == null) throw new NullPointerException("Dispatcher is null");
+    this.dispatcher = dispatcher;
+    return (T) this;
+  }
+
+  /**
+   * Chooses how the data of the events sent to remote buses is encoded. This is only used by {@link RemoteEventBus}es.
+   * The {@link EventCodec#binary()} codec is used by default, and also with the peers which do not know the given codec.
+   *
+   * @param codec The codec to use, which must be known by the remote peers
+   * @return this builder
+   */
+  public T codec(EventCodec codec) {
+    if (codec == null) throw new NullPointerException("Codec is null");
+    connectionOptions.codec = codec;
+    return (T) this;
+  }
+
+  /**
+   * Groups the events sent to remote buses into fewer socket writes. This is only used by {@link RemoteEventBus}es.
+   * Events are queued and written by a dedicated thread, which sends them once no more events are waiting, once the
+   * linger time has elapsed since the first unsent event, or once the buffer is full. By default, the buffer holds 8KB
+   * and the linger time is 0, so that events are sent as soon as possible.
+   *
+   * @param batchBytes   The size of the buffer
+   * @param lingerMicros How long to wait for more events before sending the unsent ones, in microseconds
+   * @return this builder
+   */
+  public T batch(int batchBytes, long lingerMicros) {
+    if (batchBytes <= 0) throw new IllegalArgumentException("Bad batch size: " + batchBytes);
+    if (lingerMicros < 0) throw new IllegalArgumentException("Bad linger time: " + lingerMicros);
+    connectionOptions.batchBytes = batchBytes;
+    connectionOptions.lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+    return (T) this;
+  }
+
+  /**
+   * Bounds the queue of events waiting to be sent to each remote peer. This is only used by {@link RemoteEventBus}es.
+   * Each connection has its own queue, so that a slow peer does not delay the others unless the
+   * {@link RemoteEventBus.SlowPeerPolicy#BLOCK} policy is used. By default, a queue holds up to 65536 events and blocks
+   * the producers when full.
+   *
+   * @param capacity The maximum number of events waiting to be sent to a peer
+   * @param policy   What to do when the queue of a peer is full
+   * @return this builder
+   */
+  public T outbound(int capacity, RemoteEventBus.SlowPeerPolicy policy) {
+    if (capacity <= 0) throw new IllegalArgumentException("Bad capacity: " + capacity);
+    if (policy == null) throw new NullPointerException("Slow peer policy is null");
+    connectionOptions.outboundCapacity = capacity;
+    connectionOptions.overflow = policy;
+    return (T) this;
+  }
+
+  /**
+   * Detects the remote peers which are hung or unreachable while their connection looks open. This is only used by
+   * {@link RemoteEventBus}es connected through a socket. A connection having written nothing for the interval sends a
+   * heartbeat, which the peer answers, so that the events already sent are enough to prove it is alive when busy. A
+   * connection having read nothing for the timeout is closed after an {@code eventbus.client.timeout} event. Peers of
+   * previous versions, which do not answer heartbeats, are never timed out.
+   *
+   * @param intervalMillis How long a connection stays idle before sending a heartbeat, in milliseconds
+   * @param timeoutMillis  How long a connection stays without receiving anything before being closed, in milliseconds,
+   *                       greater than the interval
+   * @return this builder
+   */
+  public T heartbeat(long intervalMillis, long timeoutMillis) {
+    if (intervalMillis <= 0) throw new IllegalArgumentException("Bad heartbeat interval: " + intervalMillis);
+    if (timeoutMillis <= intervalMillis) throw new IllegalArgumentException("Bad idle timeout: " + timeoutMillis + ", must be greater than the interval: " + intervalMillis);
+    connectionOptions.heartbeatMillis = intervalMillis;
+    connectionOptions.idleTimeoutMillis = timeoutMillis;
+    return (T) this;
+  }
+
+  /**
+   * Limits the events the remote peers send to this bus to the ones it can dispatch. This is only used by
+   * {@link RemoteEventBus}es connected through a socket. Each connection announces a window of events to its peer when
+   * connecting, and grants them again once the {@link Dispatcher} has called the listeners or discarded them, so that
+   * a queued dispatcher never holds more than a window of events. A peer having used its window keeps its events in
+   * its outbound queue, so that the {@link RemoteEventBus.SlowPeerPolicy} set with
+   * {@link #outbound(int, RemoteEventBus.SlowPeerPolicy)} decides whether its producers block or lose events, instead of
+   * filling the socket buffers. Peers of previous versions are not limited.
+   *
+   * @param window The number of events a peer may send ahead of the ones dispatched
+   * @return this builder
+   */
+  public T credits(int window) {
+    if (window <= 0) throw new IllegalArgumentException("Bad credit window: " + window);
+    connectionOptions.creditWindow = window;
+    return (T) this;
+  }
+
   public EventBus build() throws EventBusException {
-    return new DefaultEventBus(busId != null ? busId : UUID.randomUUID().toString(), errorListener, listeners);
+    return new DefaultEventBus(busId != null ? busId : UUID.randomUUID().toString(), errorListener, listeners, dispatcher);
+  }
+
+  void checkNoHeartbeat() throws EventBusException {
+    if (connectionOptions.heartbeatMillis > 0) {
+      throw new EventBusException("Heartbeats are only supported by the socket transports");
+    }
+  }
+
+  void checkNoCredits() throws EventBusException {
+    if (connectionOptions.creditWindow > 0) {
+      throw new EventBusException("Credits are only supported by the socket transports: a shared memory ring is already bounded");
+    }
   }
 
 }
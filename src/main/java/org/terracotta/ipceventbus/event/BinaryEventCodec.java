@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The default {@link EventCodec}: a tag byte followed by a compact encoding for the common types, or by a serialized
+ * object for the others. Each object is serialized on its own, so nothing is retained between events.
+ *
+ * @author Mathieu Carbou
+ */
+final class BinaryEventCodec implements EventCodec {
+
+  static final BinaryEventCodec INSTANCE = new BinaryEventCodec();
+
+  static final String NAME = "binary";
+
+  private static final byte NULL = 0;
+  private static final byte STRING = 1;
+  private static final byte INTEGER = 2;
+  private static final byte LONG = 3;
+  private static final byte BOOLEAN = 4;
+  private static final byte DOUBLE = 5;
+  private static final byte FLOAT = 6;
+  private static final byte SHORT = 7;
+  private static final byte BYTE = 8;
+  private static final byte CHARACTER = 9;
+  private static final byte BYTES = 10;
+  private static final byte HASH_MAP = 11;
+  private static final byte LINKED_HASH_MAP = 12;
+  private static final byte SERIALIZED = 127;
+
+  private BinaryEventCodec() {
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public void encode(Object data, DataOutput out) throws IOException {
+    if (data == null) {
+      out.writeByte(NULL);
+    } else if (data instanceof String) {
+      out.writeByte(STRING);
+      writeString(out, (String) data);
+    } else if (data instanceof Integer) {
+      out.writeByte(INTEGER);
+      out.writeInt((Integer) data);
+    } else if (data instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) data);
+    } else if (data instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) data);
+    } else if (data instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) data);
+    } else if (data instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) data);
+    } else if (data instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) data);
+    } else if (data instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) data);
+    } else if (data instanceof Character) {
+      out.writeByte(CHARACTER);
+      out.writeChar((Character) data);
+    } else if (data instanceof byte[]) {
+      byte[] bytes = (byte[]) data;
+      out.writeByte(BYTES);
+      writeVarInt(out, bytes.length);
+      out.write(bytes);
+    } else if ((data.getClass() == HashMap.class || data.getClass() == LinkedHashMap.class) && isStringMap((Map<?, ?>) data)) {
+      Map<?, ?> map = (Map<?, ?>) data;
+      out.writeByte(data.getClass() == HashMap.class ? HASH_MAP : LINKED_HASH_MAP);
+      writeVarInt(out, map.size());
+      for (Map.Entry<?, ?> entry : map.entrySet()) {
+        writeString(out, (String) entry.getKey());
+        writeString(out, (String) entry.getValue());
+      }
+    } else {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(bytes);
+      oos.writeObject(data);
+      oos.close();
+      out.writeByte(SERIALIZED);
+      writeVarInt(out, bytes.size());
+      out.write(bytes.toByteArray());
+    }
+  }
+
+  @Override
+  public Object decode(DataInput in) throws IOException, ClassNotFoundException {
+    byte tag = in.readByte();
+    switch (tag) {
+      case NULL:
+        return null;
+      case STRING:
+        return readString(in);
+      case INTEGER:
+        return in.readInt();
+      case LONG:
+        return in.readLong();
+      case BOOLEAN:
+        return in.readBoolean();
+      case DOUBLE:
+        return in.readDouble();
+      case FLOAT:
+        return in.readFloat();
+      case SHORT:
+        return in.readShort();
+      case BYTE:
+        return in.readByte();
+      case CHARACTER:
+        return in.readChar();
+      case BYTES: {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        return bytes;
+      }
+      case HASH_MAP:
+      case LINKED_HASH_MAP: {
+        int size = readLength(in);
+        Map<String, String> map = tag == HASH_MAP ? new HashMap<String, String>(size * 4 / 3 + 1) : new LinkedHashMap<String, String>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+          map.put(readString(in), readString(in));
+        }
+        return map;
+      }
+      case SERIALIZED: {
+        byte[] bytes = new byte[readLength(in)];
+        in.readFully(bytes);
+        ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+          return ois.readObject();
+        } finally {
+          ois.close();
+        }
+      }
+      default:
+        throw new StreamCorruptedException("Unknown data tag: " + tag);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return NAME;
+  }
+
+  private static boolean isStringMap(Map<?, ?> map) {
+    for (Map.Entry<?, ?> entry : map.entrySet()) {
+      if (entry.getKey() != null && !(entry.getKey() instanceof String)
+          || entry.getValue() != null && !(entry.getValue() instanceof String)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads a length or a count of entries, each entry taking a byte at least, checked against the bytes left in the
+   * frame before allocating anything
+   */
+  private static int readLength(DataInput in) throws IOException {
+    int length = readVarInt(in);
+    if (length < 0 || in instanceof FrameInput && length > ((FrameInput) in).remaining()) {
+      throw new EventBusIOException("Bad length: " + length);
+    }
+    return length;
+  }
+
+  static void writeVarInt(DataOutput out, int v) throws IOException {
+    if (out instanceof FrameOutput) {
+      ((FrameOutput) out).writeVarInt(v);
+      return;
+    }
+    while ((v & ~0x7F) != 0) {
+      out.writeByte((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    out.writeByte(v);
+  }
+
+  static int readVarInt(DataInput in) throws IOException {
+    if (in instanceof FrameInput) {
+      return ((FrameInput) in).readVarInt();
+    }
+    int v = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      v |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return v;
+      }
+    }
+    throw new StreamCorruptedException("Bad varint");
+  }
+
+  static void writeString(DataOutput out, String s) throws IOException {
+    if (out instanceof FrameOutput) {
+      ((FrameOutput) out).writeString(s);
+    } else if (s == null) {
+      writeVarInt(out, 0);
+    } else {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      writeVarInt(out, bytes.length + 1);
+      out.write(bytes);
+    }
+  }
+
+  static String readString(DataInput in) throws IOException {
+    if (in instanceof FrameInput) {
+      return ((FrameInput) in).readString();
+    }
+    int length = readVarInt(in) - 1;
+    if (length == -1) {
+      return null;
+    }
+    if (length < 0) {
+      throw new EventBusIOException("Bad string length: " + length);
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+}
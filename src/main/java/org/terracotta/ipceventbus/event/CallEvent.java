@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+/**
+ * An event of a request/reply call, carrying the id correlating the reply with its request. Calls are never coalesced,
+ * relayed or made compact.
+ *
+ * @author Mathieu Carbou
+ */
+abstract class CallEvent extends DefaultEvent {
+
+  private static final long serialVersionUID = 7018457196413208472L;
+
+  // the id of the call, unique among the calls of the bus having sent the request
+  final long call;
+
+  CallEvent(String source, String name, long timestamp, Object data, long call) {
+    super(source, name, timestamp, data);
+    this.call = call;
+  }
+
+}
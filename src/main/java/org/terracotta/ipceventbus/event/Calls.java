@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The calls of a bus waiting for their reply.
+ * <p>
+ * A reply finds its call by id in a single table. The timeouts are watched by a hashed timer wheel on the timer of the
+ * heartbeats: each call is put in the slot of its deadline, and each tick only visits the slot of the tick, expiring
+ * its calls past their deadline and forgetting the ones already answered. Opening a call therefore costs a map and a
+ * queue insertion, whatever the number of pending calls, and the timer only runs while some calls are in the wheel.
+ *
+ * @author Mathieu Carbou
+ */
+final class Calls {
+
+  static final class Call extends CompletableFuture<Event> {
+    final long id;
+    final String name;
+    final long timeoutMillis;
+    // the tick after which the call has timed out
+    final long deadline;
+
+    Call(long id, String name, long timeoutMillis, long deadline) {
+      this.id = id;
+      this.name = name;
+      this.timeoutMillis = timeoutMillis;
+      this.deadline = deadline;
+    }
+  }
+
+  private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+  // a power of 2: a turn of the wheel lasts about 5s, longer timeouts take several turns
+  private static final int SLOTS = 512;
+
+  private final ConcurrentHashMap<Long, Call> pending = new ConcurrentHashMap<Long, Call>();
+  private final AtomicLong ids = new AtomicLong();
+  private final Queue<Call>[] wheel;
+  private final AtomicInteger entries = new AtomicInteger();
+  private final AtomicBoolean ticking = new AtomicBoolean();
+  private final Runnable tick = new Runnable() {
+    @Override
+    public void run() {
+      tick();
+    }
+  };
+  // the last tick visited, only used by the timer
+  private long visited = now();
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  Calls() {
+    wheel = new Queue[SLOTS];
+    for (int i = 0; i < SLOTS; i++) {
+      wheel[i] = new ConcurrentLinkedQueue<Call>();
+    }
+  }
+
+  /**
+   * @return A new call, failing with a {@link TimeoutException} if not answered within the timeout
+   */
+  Call open(String name, long timeoutMillis) {
+    // rounded up to the next tick, so that a call never expires early
+    long deadline = (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis)) / TICK_NANOS + 1;
+    Call call = new Call(ids.incrementAndGet(), name, timeoutMillis, deadline);
+    pending.put(call.id, call);
+    wheel[(int) (deadline & (SLOTS - 1))].add(call);
+    entries.incrementAndGet();
+    if (ticking.compareAndSet(false, true)) {
+      Heartbeat.schedule(tick, TICK_NANOS, TimeUnit.NANOSECONDS);
+    }
+    return call;
+  }
+
+  /**
+   * Fails a call at once, i.e. when its request could not be sent
+   */
+  void fail(Call call, String message) {
+    pending.remove(call.id);
+    call.completeExceptionally(new EventBusException(message));
+  }
+
+  /**
+   * Completes the call answered by a reply, unless it has already been answered or has timed out
+   */
+  void complete(Reply reply) {
+    Call call = pending.remove(reply.call);
+    if (call == null) {
+      return;
+    }
+    if (reply.failed) {
+      call.completeExceptionally(new EventBusException("Request " + reply.getName() + " failed on " + reply.getSource() + ": " + reply.getData()));
+    } else {
+      call.complete(reply);
+    }
+  }
+
+  /**
+   * @return The number of calls waiting for their reply
+   */
+  int size() {
+    return pending.size();
+  }
+
+  // called by the timer
+  private void tick() {
+    long now = now();
+    // after a long pause, a single turn visits all the slots
+    for (long t = Math.max(visited + 1, now - SLOTS + 1); t <= now; t++) {
+      expire(wheel[(int) (t & (SLOTS - 1))], now);
+    }
+    visited = now;
+    ticking.set(false);
+    if (entries.get() > 0 && ticking.compareAndSet(false, true)) {
+      Heartbeat.schedule(tick, TICK_NANOS, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private void expire(Queue<Call> slot, long now) {
+    for (Iterator<Call> it = slot.iterator(); it.hasNext(); ) {
+      Call call = it.next();
+      if (call.isDone() || call.deadline <= now) {
+        it.remove();
+        entries.decrementAndGet();
+        if (pending.remove(call.id) != null && !call.isDone()) {
+          call.completeExceptionally(new TimeoutException("No reply to request " + call.name + " within " + call.timeoutMillis + "ms"));
+        }
+      }
+    }
+  }
+
+  private static long now() {
+    return System.nanoTime() / TICK_NANOS;
+  }
+
+}
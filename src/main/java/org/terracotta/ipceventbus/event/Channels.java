@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The members of the channels of a server, by channel name. Each channel keeps an array of its members, copied when a
+ * client joins or leaves it, so that sending to a channel only costs a map lookup and takes no lock.
+ * <p>
+ * The updates are guarded by the lock of the server registering its clients, so that a client leaving all its channels
+ * when disconnected does not join them again.
+ *
+ * @author Mathieu Carbou
+ */
+final class Channels {
+
+  private static final Connection[] NONE = new Connection[0];
+
+  private final Map<String, Connection[]> members = new ConcurrentHashMap<String, Connection[]>();
+  // the channels joined by each client, guarded by the lock of the server
+  private final Map<Connection, Set<String>> joined = new HashMap<Connection, Set<String>>();
+
+  /**
+   * @return The clients having joined this channel, without copying them
+   */
+  Connection[] members(String channel) {
+    Connection[] connections = members.get(channel);
+    return connections == null ? NONE : connections;
+  }
+
+  /**
+   * Makes a client the member of these channels only
+   */
+  void update(Connection client, Set<String> channels) {
+    Set<String> before = joined.get(client);
+    if (before == null) {
+      before = Collections.emptySet();
+    }
+    for (String channel : before) {
+      if (!channels.contains(channel)) {
+        leave(client, channel);
+      }
+    }
+    for (String channel : channels) {
+      if (!before.contains(channel)) {
+        join(client, channel);
+      }
+    }
+    if (channels.isEmpty()) {
+      joined.remove(client);
+    } else {
+      joined.put(client, channels);
+    }
+  }
+
+  /**
+   * Removes a client from all its channels
+   */
+  void remove(Connection client) {
+    update(client, Collections.<String>emptySet());
+  }
+
+  private void join(Connection client, String channel) {
+    Connection[] connections = members(channel);
+    Connection[] copy = Arrays.copyOf(connections, connections.length + 1);
+    copy[connections.length] = client;
+    members.put(channel, copy);
+  }
+
+  private void leave(Connection client, String channel) {
+    Connection[] connections = members(channel);
+    for (int i = 0; i < connections.length; i++) {
+      if (connections[i] == client) {
+        if (connections.length == 1) {
+          members.remove(channel);
+        } else {
+          Connection[] copy = new Connection[connections.length - 1];
+          System.arraycopy(connections, 0, copy, 0, i);
+          System.arraycopy(connections, i + 1, copy, i, copy.length - i);
+          members.put(channel, copy);
+        }
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return The channels of a client joining one more
+   */
+  static Set<String> with(Set<String> channels, String channel) {
+    Assert.legalChannelName(channel);
+    if (channels.contains(channel)) {
+      return channels;
+    }
+    Set<String> copy = new LinkedHashSet<String>(channels);
+    copy.add(channel);
+    return Collections.unmodifiableSet(copy);
+  }
+
+  /**
+   * @return The channels of a client leaving one of them
+   */
+  static Set<String> without(Set<String> channels, String channel) {
+    Assert.legalChannelName(channel);
+    if (!channels.contains(channel)) {
+      return channels;
+    }
+    Set<String> copy = new LinkedHashSet<String>(channels);
+    copy.remove(channel);
+    return Collections.unmodifiableSet(copy);
+  }
+
+}
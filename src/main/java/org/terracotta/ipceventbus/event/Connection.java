@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.Set;
+
+/**
+ * The connection of a server to one of its clients, whatever the transport
+ *
+ * @author Mathieu Carbou
+ */
+interface Connection {
+
+  String getId();
+
+  /**
+   * @return true if the client listens to this event, or has not told which events it listens to
+   */
+  boolean wants(String event);
+
+  /**
+   * @return The events the client listens to, or all of them if it has not told yet
+   */
+  Interest getPeerInterest();
+
+  /**
+   * @return The channels the client has joined, none until it tells
+   */
+  Set<String> getPeerChannels();
+
+  /**
+   * Queues an event to be sent to the client
+   */
+  void sendRemote(OutboundEvent event);
+
+  /**
+   * Tells the client which events the server listens to
+   */
+  void sendInterest(Interest interest);
+
+  int getQueueDepth();
+
+  long getDroppedEvents();
+
+  /**
+   * @return The round-trip time to the client measured by the last heartbeat, in microseconds, or -1 if unknown
+   */
+  long getRoundTripMicros();
+
+  /**
+   * @return The number of events the client still accepts, or -1 if it does not limit them
+   */
+  int getAvailableCredits();
+
+  /**
+   * Closes the connection once the queued events are sent
+   */
+  void close();
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * The settings of the connections of a remote bus, filled by the builders
+ *
+ * @author Mathieu Carbou
+ */
+final class ConnectionOptions {
+
+  static final int DEFAULT_BATCH_BYTES = 8 * 1024;
+  static final int DEFAULT_OUTBOUND_CAPACITY = 64 * 1024;
+  static final int DEFAULT_RING_BYTES = 1024 * 1024;
+
+  /**
+   * The preferred codec to send events, or null to only use Java serialization, as the previous versions did
+   */
+  EventCodec codec = EventCodec.binary();
+
+  /**
+   * The number of bytes buffered before being written to the socket
+   */
+  int batchBytes = DEFAULT_BATCH_BYTES;
+
+  /**
+   * How long to wait for more events before writing the buffered ones, 0 to write them as soon as no more event is waiting
+   */
+  long lingerNanos;
+
+  /**
+   * The maximum number of events waiting to be written to a peer
+   */
+  int outboundCapacity = DEFAULT_OUTBOUND_CAPACITY;
+
+  /**
+   * What to do with the events sent to a peer whose queue is full
+   */
+  RemoteEventBus.SlowPeerPolicy overflow = RemoteEventBus.SlowPeerPolicy.BLOCK;
+
+  /**
+   * The delay before the first attempt to connect again to a lost server, doubled at each failed attempt, or 0 to close
+   * the client when the connection is lost
+   */
+  long reconnectMillis;
+
+  /**
+   * The longest delay between two attempts to connect again
+   */
+  long maxReconnectMillis;
+
+  /**
+   * How long a connection stays without writing anything before sending a heartbeat, or 0 to disable heartbeats
+   */
+  long heartbeatMillis;
+
+  /**
+   * How long a connection with heartbeats stays without reading anything before being closed
+   */
+  long idleTimeoutMillis;
+
+  /**
+   * The number of events a peer may send ahead of the ones dispatched, or 0 to let the peers send without limit
+   */
+  int creditWindow;
+
+  /**
+   * The channels a client joins once connected
+   */
+  Set<String> channels = Collections.emptySet();
+
+  /**
+   * Whether a server forwards the events received from a client to its other clients
+   */
+  boolean relay;
+
+  /**
+   * The number of I/O threads of the NIO transport, or 0 to use the blocking transport, having threads per connection
+   */
+  int ioThreads;
+
+  /**
+   * The Unix domain socket to listen on or to connect to, or null to use TCP
+   */
+  Path unixSocket;
+
+  /**
+   * The file shared with the peer to exchange the events through memory, or null to use a socket
+   */
+  Path sharedMemory;
+
+  /**
+   * The size of each ring of the shared memory file
+   */
+  int ringBytes = DEFAULT_RING_BYTES;
+
+  /**
+   * How the reader of a shared memory ring waits for events
+   */
+  RemoteEventBus.WaitStrategy waitStrategy = RemoteEventBus.WaitStrategy.PARK;
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The credit-based flow control of a connection, in both directions.
+ * <p>
+ * A side configured with a window announces it in its hello, so that its peer starts with this window as soon as it
+ * writes frames, then grants again the events it has received in {@link Frames#CREDIT} frames, by halves of the window,
+ * once they are dispatched: called by the listeners or discarded by the dispatcher draining them (see
+ * {@link Dispatcher#receiving(Runnable)}). A side only writes an event when its peer has granted it some credit, so
+ * that no more than a window of events is ever in flight or waiting to be dispatched by the peer: the other events
+ * wait in the outbound queue, whose {@link RemoteEventBus.SlowPeerPolicy} then decides what producers do. A peer announcing no window, such as a peer of a previous version, gets the events without limit.
+ *
+ * @author Mathieu Carbou
+ */
+final class Credits {
+
+  private static final int UNLIMITED = -1;
+
+  // sending side: the events the peer still accepts, or UNLIMITED if it has announced no window
+  private final AtomicInteger available = new AtomicInteger(UNLIMITED);
+
+  // receiving side: the events to grant to the peer in the next credit frame
+  private final int window;
+  private final int refill;
+  private final AtomicInteger granting = new AtomicInteger();
+
+  /**
+   * @param window The number of events the peer may send ahead of the ones dispatched, or 0 to let it send without limit
+   */
+  Credits(int window) {
+    this.window = window;
+    this.refill = Math.max(1, window / 2);
+  }
+
+  /**
+   * Called by the reader when the hello of the peer is received, before writing any frame
+   *
+   * @param window The window announced by the peer, or 0 if it does not limit the events
+   */
+  void limit(int window) {
+    if (window > 0) {
+      available.compareAndSet(UNLIMITED, window);
+    }
+  }
+
+  /**
+   * Called by the reader when the peer grants some credit
+   */
+  void granted(int events) {
+    while (true) {
+      int current = available.get();
+      if (available.compareAndSet(current, current == UNLIMITED ? events : current + events)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return true if an event can be written now
+   */
+  boolean ready() {
+    return available.get() != 0;
+  }
+
+  /**
+   * Called by the writer for each event written
+   */
+  void consume() {
+    while (true) {
+      int current = available.get();
+      if (current <= 0 || available.compareAndSet(current, current - 1)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return The number of events the peer still accepts, or -1 if it does not limit them
+   */
+  int available() {
+    return available.get();
+  }
+
+  /**
+   * @return The window announced to the peer in the hello, or 0 if the events are not limited
+   */
+  int window() {
+    return window;
+  }
+
+  /**
+   * Called for each event received, once called by the listeners or discarded, possibly by a thread of the dispatcher
+   *
+   * @return true if a credit frame must be sent
+   */
+  boolean received() {
+    // the counter goes up one by one from the last frame sent, so that it always crosses the refill threshold
+    return window > 0 && granting.incrementAndGet() == refill;
+  }
+
+  /**
+   * Called by the writer when sending a credit frame
+   *
+   * @return The number of events to grant, possibly 0 if already granted by a previous frame
+   */
+  int grant() {
+    return granting.getAndSet(0);
+  }
+
+}
@@ -28,7 +28,7 @@ class DefaultEvent implements Serializable, Event {
 
   private final String source;
   private final String name;
-  private final long timestamp = System.currentTimeMillis();
+  private final long timestamp;
   private final Object data;
 
   DefaultEvent(String source, String name) {
@@ -36,9 +36,17 @@ class DefaultEvent implements Serializable, Event {
   }
 
   DefaultEvent(String source, String name, Object data) {
+    this(source, name, System.currentTimeMillis(), data);
     Assert.legalEventName(name);
+  }
+
+  /**
+   * Creates an event without validating its name, which must have been validated before.
+   */
+  DefaultEvent(String source, String name, long timestamp, Object data) {
     this.source = source;
     this.name = name;
+    this.timestamp = timestamp;
     this.data = data;
   }
 
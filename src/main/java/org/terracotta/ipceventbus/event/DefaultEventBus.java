@@ -17,6 +17,9 @@
 
 package org.terracotta.ipceventbus.event;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * @author Mathieu Carbou
  */
@@ -25,15 +28,19 @@ class DefaultEventBus implements EventBus {
   private final String uuid;
   private final ErrorListener errorListener;
   protected final Listeners listeners;
+  protected final Dispatcher dispatcher;
+  // created by the first request
+  private final AtomicReference<Calls> calls = new AtomicReference<Calls>();
 
   DefaultEventBus(String uuid, ErrorListener errorListener) {
-    this(uuid, errorListener, new Listeners());
+    this(uuid, errorListener, new Listeners(), Dispatcher.direct());
   }
 
-  DefaultEventBus(String uuid, ErrorListener errorListener, Listeners initialListeners) {
+  DefaultEventBus(String uuid, ErrorListener errorListener, Listeners initialListeners, Dispatcher dispatcher) {
     this.uuid = uuid;
     this.errorListener = errorListener;
     this.listeners = new Listeners(initialListeners);
+    this.dispatcher = dispatcher;
   }
 
   @Override
@@ -44,12 +51,14 @@ class DefaultEventBus implements EventBus {
   @Override
   public void on(String event, EventListener listener) {
     Assert.legalEventName(event);
-    listeners.on(event).add(listener);
+    listeners.add(event, listener);
+    listenersChanged();
   }
 
   @Override
   public void on(EventListener listener) {
-    listeners.on("").add(listener);
+    listeners.add("", listener);
+    listenersChanged();
   }
 
   @Override
@@ -61,19 +70,99 @@ class DefaultEventBus implements EventBus {
   public void trigger(String name, Object data) {
     Assert.legalEventName(name);
     Assert.notInternalName(name);
-    Event event = new DefaultEvent(getId(), name, data);
-    sendLocal(event);
+    EventListener[] targets = listeners.get(name);
+    if (targets.length > 0) {
+      sendLocal(new DefaultEvent(getId(), name, data), targets);
+    }
   }
 
-  void sendLocal(Event event) {
-    for (EventListener listener : listeners.on(event.getName())) {
-      try {
-        listener.onEvent(event);
-      } catch (Throwable e) {
-        errorListener.onError(event, listener, e);
+  @Override
+  public Topic topic(String name) {
+    Assert.legalEventName(name);
+    Assert.notInternalName(name);
+    return new DefaultTopic(this, listeners.slot(name));
+  }
+
+  void trigger(DefaultTopic topic, Object data) {
+    EventListener[] targets = topic.getListeners();
+    if (targets.length > 0) {
+      sendLocal(new DefaultEvent(getId(), topic.getName(), System.currentTimeMillis(), data), targets);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Event> request(String name, Object data, long timeoutMillis) {
+    Assert.legalEventName(name);
+    Assert.notInternalName(name);
+    if (timeoutMillis <= 0) throw new IllegalArgumentException("Bad timeout: " + timeoutMillis);
+    Calls calls = calls();
+    Calls.Call call = calls.open(name, timeoutMillis);
+    Request request = new Request(getId(), name, System.currentTimeMillis(), data, call.id, calls);
+    EventListener[] targets = listeners.get(name);
+    boolean sent = sendRequest(request);
+    if (targets.length > 0) {
+      sendLocal(request, targets);
+    } else if (!sent) {
+      calls.fail(call, "Nobody listening to request " + name);
+    }
+    return call;
+  }
+
+  @Override
+  public void reply(String event, final RequestHandler handler) {
+    if (handler == null) throw new NullPointerException("Handler is null");
+    on(event, new EventListener() {
+      @Override
+      public void onEvent(Event e) {
+        if (e instanceof Request) {
+          ((Request) e).answer(getId(), handler);
+        }
       }
+    });
+  }
+
+  /**
+   * Sends a request to the remote peers listening to it
+   *
+   * @return true if it was sent to a peer at least
+   */
+  boolean sendRequest(Request request) {
+    return false;
+  }
+
+  private Calls calls() {
+    Calls calls = this.calls.get();
+    if (calls == null) {
+      this.calls.compareAndSet(null, new Calls());
+      calls = this.calls.get();
+    }
+    return calls;
+  }
+
+  /**
+   * Notifies the local listeners of an event, or completes the call answered by a reply. The connections owned by
+   * another bus, never sending requests, hand the replies over to their owner.
+   */
+  void sendLocal(Event event) {
+    Calls calls = this.calls.get();
+    if (calls != null && event instanceof Reply) {
+      calls.complete((Reply) event);
+      return;
     }
-    for (EventListener listener : listeners.on("")) {
+    sendLocal(event, listeners.get(event.getName()));
+  }
+
+  void sendLocal(Event event, EventListener[] targets) {
+    if (targets.length > 0) {
+      dispatcher.dispatch(this, event, targets);
+    }
+  }
+
+  /**
+   * Calls the listeners, from the thread chosen by the {@link Dispatcher}
+   */
+  void deliver(Event event, EventListener[] targets) {
+    for (EventListener listener : targets) {
       try {
         listener.onEvent(event);
       } catch (Throwable e) {
@@ -87,17 +176,31 @@ class DefaultEventBus implements EventBus {
     Assert.legalEventName(event);
     Assert.notInternalName(event);
     listeners.removeAll(event);
+    listenersChanged();
   }
 
   @Override
   public void unbind(EventListener listener) {
     listeners.removeAll(listener);
+    listenersChanged();
   }
 
   @Override
   public void unbind(String event, EventListener listener) {
     Assert.legalEventName(event);
     listeners.remove(event, listener);
+    listenersChanged();
+  }
+
+  /**
+   * Called once a listener has been added or removed, i.e. to advertise the new {@link Interest} to the remote peers
+   */
+  void listenersChanged() {
+  }
+
+  @Override
+  public void close() {
+    dispatcher.close();
   }
 
   @Override
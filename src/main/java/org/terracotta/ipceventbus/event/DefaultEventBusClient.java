@@ -17,62 +17,235 @@
 
 package org.terracotta.ipceventbus.event;
 
+import org.terracotta.ipceventbus.Daemons;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.Set;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
 
 /**
  * @author Mathieu Carbou
  */
-class DefaultEventBusClient extends DefaultEventBus implements EventBusClient {
+class DefaultEventBusClient extends DefaultEventBus implements EventBusClient, Connection {
+
+  private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+  private static final int FRAME_BUFFER_BYTES = 256;
+
+  // queued to have the writer send the last advertised interest
+  private static final Object ADVERTISE = new Object();
+  // queued to have the writer send the channels joined
+  private static final Object JOIN = new Object();
+  // queued to have the writer send the session to resume
+  private static final Object RESUME = new Object();
+  // queued to have the writer acknowledge the last sequenced event received
+  private static final Object ACK = new Object();
+  // queued to have the writer send a heartbeat
+  private static final Object PING = new Object();
+  // queued to have the writer answer the last heartbeat received
+  private static final Object PONG = new Object();
+  // queued to have the writer grant the peer the events dispatched
+  private static final Object CREDIT = new Object();
 
   private final AtomicReference<Socket> socket;
-  private ObjectOutputStream outputStream;
+  private final EventCodec codec;
+  private final FrameOutput frame = new FrameOutput();
+  private OutputStream socketOutput;
+  private InputStream socketInput;
+  private ResettingObjectOutputStream outputStream;
   private ObjectInputStream inputStream;
+  private volatile EventCodec peerCodec;
+  // set before peerCodec when the peer reads compact frames
+  private volatile boolean compact;
+  // the strings sent to the peer, used by the writer thread
+  private final FrameDictionary sentNames = new FrameDictionary();
+  private boolean framing;
   private Thread receiver;
+  private final CountDownLatch receiving = new CountDownLatch(1);
+  private Outbox outbox;
+  private final boolean advertising;
+  private final boolean relay;
+  private volatile Runnable interestListener;
+  private final CountDownLatch handshake = new CountDownLatch(1);
+  // the sessions of the reconnecting clients of a server, or null for a client
+  private final Sessions sessions;
+  private volatile Sessions.Session session;
+  private volatile String resumed;
+  private volatile LongConsumer ackListener;
+  private long acked;
+  private volatile Interest advertised;
+  private volatile Interest peerInterest = Interest.ALL;
+  private Interest written;
+  private volatile Set<String> channels;
+  private volatile Set<String> peerChannels = Collections.emptySet();
+  private volatile Runnable channelsListener;
+  private Set<String> writtenChannels = Collections.emptySet();
+  private volatile Heartbeat heartbeat;
+  private volatile long pinged;
+  private final Credits credits;
+  private final Runnable granting = new Runnable() {
+    @Override
+    public void run() {
+      dispatched();
+    }
+  };
+
+  DefaultEventBusClient(Socket socket, ErrorListener listener, Listeners initialListeners, Dispatcher dispatcher, ConnectionOptions options) {
+    this(socket.getLocalAddress().getHostName() + ":" + socket.getLocalPort(), socket, listener, initialListeners, dispatcher, options);
+  }
 
-  DefaultEventBusClient(Socket socket, ErrorListener listener, Listeners initialListeners) {
-    this(socket.getLocalAddress().getHostName() + ":" + socket.getLocalPort(), socket, listener, initialListeners);
+  /**
+   * Creates a connection owned by another bus, which advertises its own interest: the connection of a server to a
+   * client, or of a reconnecting client to its server. It only reads the events of the peer once {@link #start()} is
+   * called, so that none is received before the owner has registered its listeners.
+   *
+   * @param sessions The sessions of the reconnecting clients of the server, or null for a client
+   */
+  DefaultEventBusClient(String uuid, Socket socket, ErrorListener listener, ConnectionOptions options, Sessions sessions) {
+    this(uuid, socket, listener, new Listeners(), Dispatcher.direct(), options, false, sessions);
   }
 
-  DefaultEventBusClient(String uuid, Socket socket, ErrorListener listener) {
-    this(uuid, socket, listener, new Listeners());
+  DefaultEventBusClient(String uuid, Socket socket, ErrorListener listener, Listeners initialListeners, Dispatcher dispatcher, ConnectionOptions options) {
+    this(uuid, socket, listener, initialListeners, dispatcher, options, true, null);
   }
 
-  DefaultEventBusClient(String uuid, Socket socket, ErrorListener listener, Listeners initialListeners) {
-    super(uuid, listener, initialListeners);
+  private DefaultEventBusClient(String uuid, Socket socket, ErrorListener listener, Listeners initialListeners, Dispatcher dispatcher, ConnectionOptions options, boolean advertising, Sessions sessions) {
+    super(uuid, listener, initialListeners, dispatcher);
+    this.advertising = advertising;
+    this.sessions = sessions;
+    this.relay = options.relay;
     this.socket = new AtomicReference<>(socket);
+    this.codec = options.codec;
+    this.credits = new Credits(options.creditWindow);
+    this.channels = options.channels;
     try {
-      this.outputStream = new ObjectOutputStream(socket.getOutputStream());
-      this.inputStream = new ObjectInputStream(socket.getInputStream());
+      // the writer thread already groups the events: small frames, such as acknowledgements, must not wait for more
+      socket.setTcpNoDelay(true);
+      // the input object stream must wrap the socket stream directly: it does not read ahead, so binary frames can follow
+      this.socketOutput = new BufferedOutputStream(socket.getOutputStream(), options.batchBytes);
+      this.socketInput = socket.getInputStream();
+      this.outputStream = new ResettingObjectOutputStream(socketOutput);
+      if (codec != null) {
+        outputStream.send(new DefaultEvent(getId(), Frames.HELLO, Frames.decodable(codec, credits.window())));
+      }
+      outputStream.flush();
+      this.inputStream = new ObjectInputStream(socketInput);
     } catch (IOException e) {
       close();
       throw new EventBusIOException("Bad socket: " + socket + " : " + e.getMessage(), e);
     }
-    final CountDownLatch receiving = new CountDownLatch(1);
-    receiver = new Thread("reader@" + getId()) {
+    outbox = new Outbox("writer@" + getId(), options.lingerNanos, options.outboundCapacity, options.overflow, new Outbox.Writer() {
       @Override
-      public void run() {
-        receiving.countDown();
-        while (!Thread.currentThread().isInterrupted() && !isClosed()) {
-          Event event = null;
-          try {
-            event = (Event) inputStream.readObject();
-          } catch (IOException | ClassNotFoundException e) {
-            sendLocal(new DefaultEvent(DefaultEventBusClient.this.getId(), "eventbus.client.error", e));
+      public boolean ready() {
+        return credits.ready();
+      }
+
+      @Override
+      public void write(Object message) throws IOException {
+        if (message == ADVERTISE) {
+          writeInterest();
+        } else if (message == JOIN) {
+          writeChannels();
+        } else if (message == RESUME) {
+          writeResume();
+        } else if (message == ACK) {
+          writeAck();
+        } else if (message == PING) {
+          writeHeartbeat(Frames.PING, System.nanoTime());
+        } else if (message == PONG) {
+          writeHeartbeat(Frames.PONG, pinged);
+        } else if (message == CREDIT) {
+          writeCredit();
+        } else {
+          DefaultEventBusClient.this.write((OutboundEvent) message);
+        }
+      }
+
+      @Override
+      public void flush() throws IOException {
+        DefaultEventBusClient.this.flush();
+      }
+
+      @Override
+      public void failed(Exception e) {
+        if (!isClosed()) {
+          sendLocal(new DefaultEvent(DefaultEventBusClient.this.getId(), "eventbus.client.error", e));
+        }
+        close(false);
+      }
 
-            close();
+      @Override
+      public void overflowed(IOException e) {
+        sendLocal(new DefaultEvent(DefaultEventBusClient.this.getId(), "eventbus.client.error", e));
+        // releases the writer if it is blocked on the socket: it will then close this bus
+        Socket s = DefaultEventBusClient.this.socket.get();
+        if (s != null) {
+          try {
+            s.close();
+          } catch (IOException ignored) {
           }
-          if (event != null && "eventbus.event".equals(event.getName())) {
-            sendLocal(event.getData(Event.class));
+        }
+      }
+    });
+    final ObjectInputStream objects = inputStream;
+    final InputStream frames = socketInput;
+    receiver = Daemons.newThread("reader@" + getId(), new Runnable() {
+      @Override
+      public void run() {
+        receiving.countDown();
+        try {
+          EventCodec peerEncoding = readObjects(objects);
+          if (peerEncoding != null) {
+            readFrames(new DataInputStream(new BufferedInputStream(frames)), peerEncoding);
           }
+        } catch (IOException | ClassNotFoundException e) {
+          sendLocal(new DefaultEvent(DefaultEventBusClient.this.getId(), "eventbus.client.error", e));
+          close(false);
+        } catch (RuntimeException e) {
+          // i.e. a corrupt frame or a failing listener: the connection must not stay open without a reader
+          sendLocal(new DefaultEvent(DefaultEventBusClient.this.getId(), "eventbus.client.error", e));
+          close(false);
+        }
+      }
+    });
+    heartbeat = Heartbeat.start(options, new Heartbeat.Target() {
+      @Override
+      public void ping() {
+        if (peerCodec != null) {
+          outbox.push(PING);
         }
       }
-    };
-    receiver.setDaemon(true);
+
+      @Override
+      public void expired(SocketTimeoutException e) {
+        if (peerCodec != null && !isClosed()) {
+          sendLocal(new DefaultEvent(DefaultEventBusClient.this.getId(), "eventbus.client.timeout", e));
+          close(false);
+        }
+      }
+    });
+    if (advertising) {
+      start();
+    }
+    listenersChanged();
+  }
+
+  /**
+   * Starts reading the events of the peer
+   */
+  void start() {
     receiver.start();
     try {
       receiving.await();
@@ -82,23 +255,187 @@ class DefaultEventBusClient extends DefaultEventBus implements EventBusClient {
     }
   }
 
+  /**
+   * Reads serialized events until the peer switches to binary frames
+   *
+   * @return The codec used by the peer, or null if the connection is closed
+   */
+  private EventCodec readObjects(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    while (!Thread.currentThread().isInterrupted() && !isClosed()) {
+      Event event = (Event) in.readObject();
+      read();
+      if ("eventbus.event".equals(event.getName())) {
+        sendLocal(event.getData(Event.class));
+      } else if (Frames.CALL.equals(event.getName())) {
+        sendLocal(Frames.readCall(event.getData(byte[].class), this));
+      } else if (codec != null && Frames.HELLO.equals(event.getName())) {
+        compact = Frames.supports(event.getData(), Frames.DICTIONARY);
+        // before the writer sees the codec: the frames it writes from then on consume the window of the peer
+        credits.limit(Frames.window(event.getData()));
+        peerCodec = Frames.negotiate(codec, event.getData());
+        if (peerCodec != null && advertised != null) {
+          // the interest could not be sent before knowing that the peer reads frames
+          outbox.push(ADVERTISE);
+        }
+        if (peerCodec != null && !channels.isEmpty()) {
+          outbox.push(JOIN);
+        }
+        handshake.countDown();
+      } else if (codec != null && Frames.SWITCH.equals(event.getName())) {
+        return Frames.resolve(codec, event.getData());
+      }
+    }
+    return null;
+  }
+
+  // called by the reader: the event is granted again to the peer once dispatched
+  private void receive(Event event) {
+    if (credits.window() == 0) {
+      sendLocal(event);
+    } else {
+      Dispatcher.receiving(granting);
+      try {
+        sendLocal(event);
+      } finally {
+        Dispatcher.received();
+      }
+    }
+  }
+
+  // called once an event has been called by the listeners or discarded, possibly by a thread of the dispatcher
+  private void dispatched() {
+    if (credits.received()) {
+      outbox.push(CREDIT);
+    }
+  }
+
+  private void readFrames(DataInputStream in, EventCodec peerEncoding) throws IOException, ClassNotFoundException {
+    FrameInput frame = new FrameInput();
+    FrameDictionary receivedNames = new FrameDictionary();
+    byte[] buffer = new byte[FRAME_BUFFER_BYTES];
+    Acknowledgements acknowledgements = new Acknowledgements(new Runnable() {
+      @Override
+      public void run() {
+        outbox.push(ACK);
+      }
+    });
+    while (!Thread.currentThread().isInterrupted() && !isClosed()) {
+      int length = Frames.checkLength(in.readInt());
+      if (length > buffer.length) {
+        buffer = new byte[Math.max(length, buffer.length * 2)];
+      }
+      in.readFully(buffer, 0, length);
+      read();
+      frame.reset(buffer, 0, length);
+      byte type = frame.readByte();
+      FrameDictionary names = (type & Frames.COMPACT) == 0 ? null : receivedNames;
+      type &= ~Frames.COMPACT;
+      if (type == Frames.EVENT) {
+        receive(relay ? Frames.readRelayed(frame, peerEncoding, names) : Frames.readEvent(frame, peerEncoding, names));
+      } else if (type == Frames.SEQUENCED_EVENT) {
+        Sessions.Session session = this.session;
+        if (session == null || session.accept(frame.readLong())) {
+          receive(relay ? Frames.readRelayed(frame, peerEncoding, names) : Frames.readEvent(frame, peerEncoding, names));
+        } else {
+          if (names != null) {
+            // an event received twice may still define its source and name
+            names.read(frame);
+            names.read(frame);
+          }
+          dispatched();
+        }
+        if (session != null) {
+          acknowledgements.received();
+        }
+      } else if (type == Frames.REQUEST) {
+        receive(Frames.readRequest(frame, peerEncoding, this));
+      } else if (type == Frames.REPLY) {
+        receive(Frames.readReply(frame, peerEncoding));
+      } else if (type == Frames.RESUME && sessions != null) {
+        session = sessions.resume(frame.readString());
+      } else if (type == Frames.ACK) {
+        LongConsumer listener = ackListener;
+        if (listener != null) {
+          listener.accept(frame.readLong());
+        }
+      } else if (type == Frames.PING) {
+        pinged = frame.readLong();
+        outbox.push(PONG);
+      } else if (type == Frames.PONG) {
+        Heartbeat heartbeat = this.heartbeat;
+        if (heartbeat != null) {
+          heartbeat.pong(frame.readLong());
+        }
+      } else if (type == Frames.CREDIT) {
+        credits.granted(frame.readInt());
+        outbox.wake();
+      } else if (type == Frames.INTEREST) {
+        peerInterest = Frames.readInterest(frame);
+        Runnable listener = interestListener;
+        if (listener != null) {
+          listener.run();
+        }
+      } else if (type == Frames.CHANNELS) {
+        peerChannels = Frames.readChannels(frame);
+        Runnable listener = channelsListener;
+        if (listener != null) {
+          listener.run();
+        }
+      }
+      if (buffer.length > Frames.RETAINED_BUFFER_BYTES) {
+        buffer = new byte[FRAME_BUFFER_BYTES];
+      }
+      if (in.available() == 0) {
+        acknowledgements.idle();
+      }
+    }
+  }
+
+  // called by the reader thread
+  private void read() {
+    Heartbeat heartbeat = this.heartbeat;
+    if (heartbeat != null) {
+      heartbeat.read();
+    }
+  }
+
   @Override
   public void close() {
-    if (!isClosed()) {
-      Socket s = socket.get();
-      if (s != null && socket.compareAndSet(s, null)) {
-        try {
-          s.close();
-        } catch (IOException ignored) {
-        }
-        outputStream = null;
-        inputStream = null;
-        if (receiver != null) {
-          receiver.interrupt();
-          receiver = null;
+    // let the events already triggered be written
+    close(true);
+  }
+
+  /**
+   * @param drain false to discard the events not written yet, i.e. when the connection is broken
+   */
+  private void close(boolean drain) {
+    // the socket might already be closed when disconnecting a slow peer
+    Socket s = socket.get();
+    if (s != null && socket.compareAndSet(s, null)) {
+      if (heartbeat != null) {
+        heartbeat.stop();
+      }
+      if (outbox != null) {
+        if (drain) {
+          outbox.close(CLOSE_TIMEOUT_MILLIS);
+        } else {
+          outbox.abort();
         }
-        sendLocal(new DefaultEvent(getId(), "eventbus.client.disconnect"));
       }
+      try {
+        s.close();
+      } catch (IOException ignored) {
+      }
+      outputStream = null;
+      inputStream = null;
+      socketOutput = null;
+      socketInput = null;
+      if (receiver != null) {
+        receiver.interrupt();
+        receiver = null;
+      }
+      sendLocal(new DefaultEvent(getId(), "eventbus.client.disconnect"));
+      dispatcher.close();
     }
   }
 
@@ -127,17 +464,276 @@ class DefaultEventBusClient extends DefaultEventBus implements EventBusClient {
     sendRemote(event);
   }
 
+  @Override
+  void trigger(DefaultTopic topic, Object data) {
+    Event event = new DefaultEvent(getId(), topic.getName(), System.currentTimeMillis(), data);
+    sendLocal(event, topic.getListeners());
+    sendRemote(event, topic.getEncodedName());
+  }
+
   void sendRemote(Event event) {
+    sendRemote(event, null);
+  }
+
+  /**
+   * @param encodedName The UTF-8 bytes of the event name if already known, or null
+   */
+  void sendRemote(Event event, byte[] encodedName) {
+    if (wants(event.getName())) {
+      sendRemote(new OutboundEvent(event, encodedName, false));
+    }
+  }
+
+  @Override
+  boolean sendRequest(Request request) {
+    if (isClosed() || !wants(request.getName())) {
+      return false;
+    }
+    sendRemote(new OutboundEvent(request, null, false));
+    return true;
+  }
+
+  @Override
+  public boolean wants(String event) {
+    return peerInterest.wants(event);
+  }
+
+  /**
+   * Waits for the peer to tell which codecs it knows, which a peer of a previous version never does
+   *
+   * @return true if the peer can read frames
+   */
+  boolean awaitHandshake(long timeoutMillis) throws InterruptedException {
+    return handshake.await(timeoutMillis, TimeUnit.MILLISECONDS) && peerCodec != null;
+  }
+
+  /**
+   * Starts the session of a reconnecting client: its events are then sent with their sequence number
+   */
+  void resume(String session) {
+    resumed = session;
     if (!isClosed()) {
-      try {
-        outputStream.writeObject(new DefaultEvent(getId(), "eventbus.event", event));
-        outputStream.flush();
-      } catch (IOException e) {
-        close();
+      outbox.push(RESUME);
+    }
+  }
+
+  /**
+   * @param listener Called by the reader thread with the last sequence number received by the server
+   */
+  void onAck(LongConsumer listener) {
+    this.ackListener = listener;
+  }
+
+  @Override
+  public long getRoundTripMicros() {
+    Heartbeat heartbeat = this.heartbeat;
+    return heartbeat == null ? -1 : heartbeat.getRoundTripMicros();
+  }
+
+  @Override
+  public int getAvailableCredits() {
+    return credits.available();
+  }
+
+  @Override
+  public Interest getPeerInterest() {
+    return peerInterest;
+  }
+
+  /**
+   * @param listener Called by the reader thread each time the peer advertises a new interest
+   */
+  void onPeerInterest(Runnable listener) {
+    this.interestListener = listener;
+  }
+
+  @Override
+  public Set<String> getPeerChannels() {
+    return peerChannels;
+  }
+
+  /**
+   * @param listener Called by the reader thread each time the peer joins or leaves channels
+   */
+  void onPeerChannels(Runnable listener) {
+    this.channelsListener = listener;
+  }
+
+  @Override
+  public synchronized void join(String channel) {
+    sendChannels(Channels.with(channels, channel));
+  }
+
+  @Override
+  public synchronized void leave(String channel) {
+    sendChannels(Channels.without(channels, channel));
+  }
+
+  @Override
+  public Set<String> getChannels() {
+    return channels;
+  }
+
+  /**
+   * Tells the server all the channels this client is a member of
+   */
+  void sendChannels(Set<String> channels) {
+    this.channels = channels;
+    if (!isClosed()) {
+      outbox.push(JOIN);
+    }
+  }
+
+  @Override
+  public void sendRemote(OutboundEvent event) {
+    if (!isClosed()) {
+      outbox.offer(event, event.key());
+    }
+  }
+
+  @Override
+  public void sendInterest(Interest interest) {
+    advertised = interest;
+    if (!isClosed()) {
+      outbox.push(ADVERTISE);
+    }
+  }
+
+  @Override
+  synchronized void listenersChanged() {
+    if (advertising && outbox != null) {
+      Interest interest = listeners.interest();
+      if (!interest.equals(advertised)) {
+        sendInterest(interest);
       }
     }
   }
 
+  @Override
+  public int getQueueDepth() {
+    return outbox == null ? 0 : outbox.depth();
+  }
+
+  @Override
+  public long getDroppedEvents() {
+    return outbox == null ? 0 : outbox.dropped();
+  }
+
+  // called by the writer thread
+  private void write(OutboundEvent message) throws IOException {
+    EventCodec peerCodec = this.peerCodec;
+    if (peerCodec == null && message.event instanceof CallEvent) {
+      outputStream.send(new DefaultEvent(getId(), Frames.CALL, Frames.callFrame(frame, (CallEvent) message.event)));
+    } else if (peerCodec == null) {
+      outputStream.send(new DefaultEvent(getId(), "eventbus.event", message.event));
+    } else {
+      switchToFrames(peerCodec);
+      if (message.shared) {
+        socketOutput.write(message.frame(peerCodec, frame));
+      } else {
+        frame.reset();
+        message.encode(frame, peerCodec, compact ? sentNames : null);
+        frame.writeTo(socketOutput);
+      }
+      credits.consume();
+    }
+  }
+
+  // called by the writer thread: sends the last advertised interest, to peers reading frames only
+  private void writeInterest() throws IOException {
+    EventCodec peerCodec = this.peerCodec;
+    Interest interest = advertised;
+    if (peerCodec == null || interest == written) {
+      return;
+    }
+    switchToFrames(peerCodec);
+    frame.reset();
+    Frames.writeInterest(frame, interest);
+    frame.writeTo(socketOutput);
+    written = interest;
+  }
+
+  // called by the writer thread: sends the last channels joined, to peers reading frames only
+  private void writeChannels() throws IOException {
+    EventCodec peerCodec = this.peerCodec;
+    Set<String> channels = this.channels;
+    if (peerCodec == null || channels == writtenChannels) {
+      return;
+    }
+    switchToFrames(peerCodec);
+    frame.reset();
+    Frames.writeChannels(frame, channels);
+    frame.writeTo(socketOutput);
+    writtenChannels = channels;
+  }
+
+  // called by the writer thread
+  private void writeResume() throws IOException {
+    EventCodec peerCodec = this.peerCodec;
+    if (peerCodec != null) {
+      switchToFrames(peerCodec);
+      frame.reset();
+      Frames.writeResume(frame, resumed);
+      frame.writeTo(socketOutput);
+    }
+  }
+
+  // called by the writer thread: a client having sent events quickly gets a single acknowledgement
+  private void writeAck() throws IOException {
+    long last = session.last();
+    if (last > acked) {
+      switchToFrames(peerCodec);
+      frame.reset();
+      Frames.writeAck(frame, last);
+      frame.writeTo(socketOutput);
+      acked = last;
+    }
+  }
+
+  // called by the writer thread: the events dispatched since the last credit frame are granted at once
+  private void writeCredit() throws IOException {
+    int events = credits.grant();
+    if (events > 0) {
+      switchToFrames(peerCodec);
+      frame.reset();
+      Frames.writeCredit(frame, events);
+      frame.writeTo(socketOutput);
+    }
+  }
+
+  // called by the writer thread
+  private void writeHeartbeat(byte type, long nanos) throws IOException {
+    EventCodec peerCodec = this.peerCodec;
+    if (peerCodec != null) {
+      switchToFrames(peerCodec);
+      frame.reset();
+      Frames.writeHeartbeat(frame, type, nanos);
+      frame.writeTo(socketOutput);
+    }
+  }
+
+  // called by the writer thread
+  private void switchToFrames(EventCodec peerCodec) throws IOException {
+    if (!framing) {
+      outputStream.send(new DefaultEvent(getId(), Frames.SWITCH, peerCodec.getName()));
+      outputStream.flush();
+      framing = true;
+    }
+  }
+
+  // called by the writer thread
+  private void flush() throws IOException {
+    if (framing) {
+      socketOutput.flush();
+    } else {
+      outputStream.flush();
+    }
+    Heartbeat heartbeat = this.heartbeat;
+    if (heartbeat != null) {
+      heartbeat.written();
+    }
+  }
+
   @Override
   public String toString() {
     return EventBusClient.class.getSimpleName() + ":" + getId();
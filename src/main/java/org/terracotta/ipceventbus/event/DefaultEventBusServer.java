@@ -17,52 +17,30 @@
 
 package org.terracotta.ipceventbus.event;
 
+import org.terracotta.ipceventbus.Daemons;
+
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
+ * A server accepting connections with a blocking thread, each client connection having its own reader and writer threads.
+ *
  * @author Mathieu Carbou
  */
-final class DefaultEventBusServer extends DefaultEventBus implements EventBusServer {
+final class DefaultEventBusServer extends AbstractEventBusServer {
 
-  private final Collection<DefaultEventBusClient> clients = new LinkedList<DefaultEventBusClient>();
-  private final ReadWriteLock clientsLock = new ReentrantReadWriteLock();
   private final AtomicReference<ServerSocket> serverSocket = new AtomicReference<ServerSocket>();
   private Thread acceptor;
 
-  DefaultEventBusServer(String uuid, ServerSocket serverSocket, final ErrorListener errorListener, final Listeners listeners) {
-    super(uuid, errorListener, listeners);
+  DefaultEventBusServer(String uuid, ServerSocket serverSocket, final ErrorListener errorListener, final Listeners listeners, Dispatcher dispatcher, final ConnectionOptions connectionOptions) {
+    super(uuid, errorListener, listeners, dispatcher, connectionOptions.relay);
     this.serverSocket.set(serverSocket);
-    final EventListener listener = new EventListener() {
-      @Override
-      public void onEvent(Event e) {
-        sendLocal(e);
-        if (!e.isUserEvent() && "eventbus.client.disconnect".equals(e.getName())) {
-          for (DefaultEventBusClient cli : getClients()) {
-            if (cli.getId().equals(e.getSource())) {
-              clientsLock.writeLock().lock();
-              try {
-                clients.remove(cli);
-              } finally {
-                clientsLock.writeLock().unlock();
-              }
-              break;
-            }
-          }
-        }
-      }
-    };
     final CountDownLatch listening = new CountDownLatch(1);
-    acceptor = new Thread("client-acceptor") {
+    acceptor = Daemons.newThread("client-acceptor", new Runnable() {
       @Override
       public void run() {
         listening.countDown();
@@ -70,22 +48,43 @@ final class DefaultEventBusServer extends DefaultEventBus implements EventBusSer
           try {
             Socket socket = DefaultEventBusServer.this.serverSocket.get().accept();
             InetSocketAddress address = (InetSocketAddress) socket.getRemoteSocketAddress();
-            DefaultEventBusClient client = new DefaultEventBusClient(address.getHostName() + ":" + address.getPort(), socket, errorListener);
-            client.on(listener);
-            clientsLock.writeLock().lock();
+            final DefaultEventBusClient client;
             try {
-              clients.add(client);
-            } finally {
-              clientsLock.writeLock().unlock();
+              client = new DefaultEventBusClient(address.getHostName() + ":" + address.getPort(), socket, errorListener, connectionOptions, getSessions());
+            } catch (EventBusIOException e) {
+              // the peer went away before sending its stream header: the socket is closed, the next one is accepted
+              continue;
             }
-            sendLocal(new DefaultEvent(DefaultEventBusServer.this.getId(), "eventbus.client.connect", client.getId()));
+            client.on(new EventListener() {
+              @Override
+              public void onEvent(Event e) {
+                received(client, e);
+                if (!e.isUserEvent() && "eventbus.client.disconnect".equals(e.getName())) {
+                  disconnected(client);
+                }
+              }
+            });
+            client.onPeerInterest(new Runnable() {
+              @Override
+              public void run() {
+                interestChanged();
+              }
+            });
+            client.onPeerChannels(new Runnable() {
+              @Override
+              public void run() {
+                channelsChanged(client);
+              }
+            });
+            // registered before reading, so that a client disconnecting at once is also unregistered
+            connected(client);
+            client.start();
           } catch (IOException e) {
             close();
           }
         }
       }
-    };
-    acceptor.setDaemon(true);
+    });
     acceptor.start();
     try {
       listening.await();
@@ -121,50 +120,11 @@ final class DefaultEventBusServer extends DefaultEventBus implements EventBusSer
         }
         acceptor.interrupt();
         acceptor = null;
-        for (DefaultEventBusClient client : getClients()) {
-          client.close();
-        }
+        closeClients();
         sendLocal(new DefaultEvent(getId(), "eventbus.server.close"));
+        dispatcher.close();
       }
     }
   }
 
-  @Override
-  public synchronized void trigger(String name, Object data) {
-    Assert.legalEventName(name);
-    Assert.notInternalName(name);
-    Event event = new DefaultEvent(getId(), name, data);
-    sendLocal(event);
-    sendRemote(event);
-  }
-
-  void sendRemote(Event event) {
-    clientsLock.readLock().lock();
-    try {
-      for (DefaultEventBusClient client : clients) {
-        client.sendRemote(event);
-      }
-    } finally {
-      clientsLock.readLock().unlock();
-    }
-  }
-
-  @Override
-  public String toString() {
-    return EventBusServer.class.getSimpleName() + ":" + getId();
-  }
-
-  private Collection<DefaultEventBusClient> getClients() {
-    clientsLock.readLock().lock();
-    try {
-      return new ArrayList<DefaultEventBusClient>(clients);
-    } finally {
-      clientsLock.readLock().unlock();
-    }
-  }
-
-  @Override
-  public int getClientCount() {
-    return getClients().size();
-  }
 }
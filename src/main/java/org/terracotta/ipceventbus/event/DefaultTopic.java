@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author Mathieu Carbou
+ */
+final class DefaultTopic implements Topic {
+
+  private final DefaultEventBus eventBus;
+  private final Listeners.Slot slot;
+  private final byte[] encodedName;
+
+  DefaultTopic(DefaultEventBus eventBus, Listeners.Slot slot) {
+    this.eventBus = eventBus;
+    this.slot = slot;
+    this.encodedName = slot.event.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public String getName() {
+    return slot.event;
+  }
+
+  EventListener[] getListeners() {
+    return slot.listeners;
+  }
+
+  /**
+   * @return The UTF-8 bytes of the topic name, written as is in the frames sent to remote buses
+   */
+  byte[] getEncodedName() {
+    return encodedName;
+  }
+
+  @Override
+  public void trigger() {
+    eventBus.trigger(this, null);
+  }
+
+  @Override
+  public void trigger(Object data) {
+    eventBus.trigger(this, data);
+  }
+
+  @Override
+  public String toString() {
+    return Topic.class.getSimpleName() + ":" + getName() + "@" + eventBus.getId();
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+/**
+ * @author Mathieu Carbou
+ */
+final class DirectDispatcher extends Dispatcher {
+
+  static final DirectDispatcher INSTANCE = new DirectDispatcher();
+
+  private DirectDispatcher() {
+  }
+
+  @Override
+  void dispatch(DefaultEventBus eventBus, Event event, EventListener[] listeners) {
+    eventBus.deliver(event, listeners);
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return 0;
+  }
+
+  @Override
+  public long getDroppedEvents() {
+    return 0;
+  }
+
+  @Override
+  public void close() {
+  }
+
+  @Override
+  public String toString() {
+    return Dispatcher.class.getSimpleName() + ":direct";
+  }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.ipceventbus.event;
+
+import java.io.Closeable;
+import java.util.function.Function;
+
+/**
+ * Decides which thread calls the {@link EventListener}s of a bus.
+ * <p>
+ * By default, listeners are called directly by the thread triggering the event (or by the socket reader thread for
+ * remote events). A queued dispatcher instead puts events in a bounded queue drained by its own threads, so that a slow
+ * listener does not stall the producers. A partitioned dispatcher spreads events over several single-threaded lanes
+ * while keeping the order of the events having the same key.
+ * <p>
+ * A dispatcher is owned by the bus it is given to, which closes it when closed.
+ *
+ * @author Mathieu Carbou
+ */
+public abstract class Dispatcher implements Closeable {
+
+  /**
+   * What to do when an event is dispatched and the queue is full
+   */
+  public enum Overflow {
+    /**
+     * Block the producer until there is some room in the queue
+     */
+    BLOCK,
+    /**
+     * Discard the event being dispatched
+     */
+    DROP_NEWEST,
+    /**
+     * Discard the oldest queued event to make some room
+     */
+    DROP_OLDEST,
+    /**
+     * Throw an {@link EventBusException} to the producer
+     */
+    FAIL
+  }
+
+  // the callback of the event received from a peer that the current thread is dispatching, see receiving()
+  private static final ThreadLocal<Runnable> DISPATCHED = new ThreadLocal<Runnable>();
+
+  Dispatcher() {
+  }
+
+  /**
+   * Called by a connection before notifying the local listeners of an event received from its peer, then followed by
+   * {@link #received()}: the callback is run once the listeners have been called or the event discarded, by whichever
+   * dispatcher ends up queuing it. It is handed over through the thread of the caller, also when a direct dispatcher
+   * calls a listener forwarding the event to another bus, as the servers do. It grants the event again to the peer.
+   *
+   * @param dispatched The callback, run by the caller or by a thread of the dispatcher having queued the event
+   */
+  static void receiving(Runnable dispatched) {
+    DISPATCHED.set(dispatched);
+  }
+
+  /**
+   * Called by a connection once the local listeners have been notified: runs the callback given to
+   * {@link #receiving(Runnable)} if no dispatcher has queued the event, because called directly or discarded
+   */
+  static void received() {
+    Runnable dispatched = takeDispatched();
+    if (dispatched != null) {
+      dispatched.run();
+    }
+  }
+
+  /**
+   * @return The callback of the event being dispatched by this thread, if received from a peer, which the caller must
+   * now run once the event is dispatched or discarded
+   */
+  static Runnable takeDispatched() {
+    Runnable dispatched = DISPATCHED.get();
+    if (dispatched != null) {
+      DISPATCHED.set(null);
+    }
+    return dispatched;
+  }
+
+  /**
+   * @return A dispatcher calling the listeners from the thread triggering the event. This is the default.
+   */
+  public static Dispatcher direct() {
+    return DirectDispatcher.INSTANCE;
+  }
+
+  /**
+   * @param capacity The maximum number of events waiting to be dispatched
+   * @param overflow What to do when the queue is full
+   * @return A dispatcher calling the listeners from one dedicated thread
+   */
+  public static Dispatcher queued(int capacity, Overflow overflow) {
+    return queued(capacity, overflow, 1);
+  }
+
+  /**
+   * @param capacity The maximum number of events waiting to be dispatched
+   * @param overflow What to do when the queue is full
+   * @param threads  The number of threads draining the queue. With more than one thread, events are not called in order.
+   * @return A dispatcher calling the listeners from a pool of dedicated threads
+   */
+  public static Dispatcher queued(int capacity, Overflow overflow, int threads) {
+    return new QueuedDispatcher(capacity, overflow, threads);
+  }
+
+  /**
+   * @param lanes    The number of lanes, each one being drained by its own thread
+   * @param capacity The maximum number of events waiting to be dispatched, per lane
+   * @param overflow What to do when the queue of a lane is full
+   * @return A dispatcher calling the listeners in order for events coming from the same {@link Event#getSource()}
+   */
+  public static Dispatcher partitioned(int lanes, int capacity, Overflow overflow) {
+    return partitioned(lanes, capacity, overflow, Event::getSource);
+  }
+
+  /**
+   * @param lanes    The number of lanes, each one being drained by its own thread
+   * @param capacity The maximum number of events waiting to be dispatched, per lane
+   * @param overflow What to do when the queue of a lane is full
+   * @param key      Extracts the key of an event. Events having the same key are called in order, on the same lane.
+   * @return A dispatcher spreading events over several lanes by hashing their key
+   */
+  public static Dispatcher partitioned(int lanes, int capacity, Overflow overflow, Function<? super Event, ?> key) {
+    return new PartitionedDispatcher(lanes, capacity, overflow, key);
+  }
+
+  /**
+   * @return The number of events waiting to be dispatched
+   */
+  public abstract int getQueueDepth();
+
+  /**
+   * @return The number of events discarded because the queue was full
+   */
+  public abstract long getDroppedEvents();
+
+  /**
+   * Stops accepting new events. The events already queued are still dispatched, while the producers blocked on a full
+   * queue give up their events.
+   */
+  @Override
+  public abstract void close();
+
+  abstract void dispatch(DefaultEventBus eventBus, Event event, EventListener[] listeners);
+
+}
@@ -16,10 +16,14 @@
  */
 package org.terracotta.ipceventbus.event;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author Mathieu Carbou
  */
-public interface EventBus extends EventSender {
+public interface EventBus extends EventSender, Closeable {
 
   /**
    * Register a new listener for an event
@@ -58,6 +62,74 @@ public interface EventBus extends EventSender {
    */
   void unbind(String event, EventListener listener);
 
+  /**
+   * Get a pre-resolved handle to trigger an event: the name is validated once and the handle points straight to the
+   * listeners of this event, so that triggering through it avoids any per-call validation and lookup. The buses not
+   * overriding this method return a topic calling {@link #trigger(String, Object)}.
+   *
+   * @param name the event name
+   * @return a topic triggering this event on this bus
+   */
+  default Topic topic(final String name) {
+    return new Topic() {
+      @Override
+      public String getName() {
+        return name;
+      }
+
+      @Override
+      public void trigger() {
+        EventBus.this.trigger(name);
+      }
+
+      @Override
+      public void trigger(Object data) {
+        EventBus.this.trigger(name, data);
+      }
+    };
+  }
+
+  /**
+   * Sends a request to the listeners of an event, on this bus and on the remote peers listening to it, and waits for
+   * the first reply of a {@link RequestHandler}. The other replies are ignored. Requests are never relayed by a server.
+   * <p>
+   * The future completes with the reply, whose data is the value returned by the handler and whose source is the bus
+   * having replied. It fails with an {@link EventBusException} at once if nobody listens to the event, or when the
+   * handler fails, and with a {@link java.util.concurrent.TimeoutException} when no reply came in time. It is completed
+   * by the thread reading the reply or by a timer shared by all the buses, so the stages depending on it must not block.
+   * It fails at once for the buses not supporting requests.
+   *
+   * @param name          the event name
+   * @param data          the data of the request
+   * @param timeoutMillis how long to wait for a reply
+   * @return a future completed by the first reply
+   */
+  default CompletableFuture<Event> request(String name, Object data, long timeoutMillis) {
+    CompletableFuture<Event> future = new CompletableFuture<Event>();
+    future.completeExceptionally(new EventBusException("Requests are not supported by " + getClass().getName()));
+    return future;
+  }
+
+  /**
+   * Registers a handler answering the requests of an event. It is a listener of this event, which ignores the events
+   * that are not requests: {@link #unbind(String)} removes it.
+   *
+   * @param event   The event name
+   * @param handler The handler answering the requests
+   * @throws EventBusException if this bus does not support requests
+   */
+  default void reply(String event, RequestHandler handler) throws EventBusException {
+    throw new EventBusException("Requests are not supported by " + getClass().getName());
+  }
+
+  /**
+   * Closes the {@link Dispatcher} given to this bus, whose threads stop once they have dispatched the events already
+   * queued. The events triggered afterwards are discarded. A {@link RemoteEventBus} also closes its connections.
+   */
+  @Override
+  default void close() throws IOException {
+  }
+
   final class Builder extends BaseBuilder<Builder> {
   }
 }
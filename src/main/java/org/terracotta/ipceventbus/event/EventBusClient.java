@@ -20,6 +20,13 @@ import javax.net.SocketFactory;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author Mathieu Carbou
@@ -28,6 +35,70 @@ public interface EventBusClient extends RemoteEventBus {
 
   String getServerHost();
 
+  /**
+   * @return The round-trip time to the server measured by the last heartbeat, in microseconds, or -1 if heartbeats are
+   * not enabled or none was answered yet
+   * @see Builder#heartbeat(long, long)
+   */
+  default long getRoundTripMicros() {
+    return -1;
+  }
+
+  /**
+   * @return The number of events the server still accepts before granting more, or -1 if it does not limit them
+   * @see Builder#credits(int)
+   */
+  default int getAvailableCredits() {
+    return -1;
+  }
+
+  /**
+   * Triggers an event, as {@link #trigger(String, Object)} does, and tells when the server has received it. This is only
+   * supported by the clients built with {@link Builder#reconnect()}, which number their events and keep them until the
+   * server acknowledges them.
+   * <p>
+   * The future completes once the server has acknowledged the event, or at once if the server does not listen to it. It
+   * fails with an {@link EventBusException} when the event is discarded before being acknowledged: when more events than
+   * the outbound capacity wait for an acknowledgement, when the server is of a previous version, which acknowledges
+   * nothing, or when the client is closed. The server might still have received it in the last two cases.
+   *
+   * @return A future completed once the server has received the event
+   * @throws EventBusException if this client does not reconnect
+   */
+  default CompletableFuture<Void> triggerAcknowledged(String name, Object data) throws EventBusException {
+    throw new EventBusException("Acknowledged events are only supported by the reconnecting clients");
+  }
+
+  /**
+   * Joins a channel of the server, so that this client gets the events sent to it with
+   * {@link EventBusServer#triggerChannel(String, String, Object)}. The channels are kept when a reconnecting client
+   * connects again. This is only supported by the socket transports, and is ignored by the servers of previous versions.
+   *
+   * @param channel The name of the channel
+   * @throws EventBusException if the transport does not support channels
+   * @see Builder#join(String...)
+   */
+  default void join(String channel) throws EventBusException {
+    throw new EventBusException("Channels are only supported by the socket transports");
+  }
+
+  /**
+   * Leaves a channel joined with {@link #join(String)}. Events already sent to the channel might still be received.
+   *
+   * @param channel The name of the channel
+   * @throws EventBusException if the transport does not support channels
+   */
+  default void leave(String channel) throws EventBusException {
+    throw new EventBusException("Channels are only supported by the socket transports");
+  }
+
+  /**
+   * @return The channels this client has joined
+   */
+  default Set<String> getChannels() {
+    return Collections.emptySet();
+  }
+
   final class Builder extends BaseBuilder<Builder> {
 
     InetSocketAddress endpoint;
@@ -38,6 +109,8 @@ public interface EventBusClient extends RemoteEventBus {
 
     public Builder connect(String host, int port) {
       endpoint = new InetSocketAddress(host, port);
+      connectionOptions.unixSocket = null;
+      connectionOptions.sharedMemory = null;
       return this;
     }
 
@@ -45,19 +118,187 @@ public interface EventBusClient extends RemoteEventBus {
       return connect("localhost", port);
     }
 
+    /**
+     * Connects to a server listening on a Unix domain socket, with {@link EventBusServer.Builder#listen(Path)}.
+     * This needs Java 16 or later and implies the NIO transport.
+     *
+     * @param socket The path of the socket file
+     * @return this builder
+     */
+    public Builder connect(Path socket) {
+      if (socket == null) throw new NullPointerException("Socket path is null");
+      connectionOptions.unixSocket = socket;
+      connectionOptions.sharedMemory = null;
+      return this;
+    }
+
+    /**
+     * Connects to a server exchanging the events through a memory-mapped file, created with
+     * {@link EventBusServer.Builder#sharedMemory(Path, int, RemoteEventBus.WaitStrategy)}, with the
+     * {@link RemoteEventBus.WaitStrategy#PARK} strategy. This needs Java 9 or later.
+     *
+     * @param file The file created by the server
+     * @return this builder
+     */
+    public Builder sharedMemory(Path file) {
+      return sharedMemory(file, RemoteEventBus.WaitStrategy.PARK);
+    }
+
+    /**
+     * Connects to a server exchanging the events through a memory-mapped file, created with
+     * {@link EventBusServer.Builder#sharedMemory(Path, int, RemoteEventBus.WaitStrategy)}. This needs Java 9 or later.
+     *
+     * @param file The file created by the server
+     * @param wait How the reader thread waits for the events of the server
+     * @return this builder
+     */
+    public Builder sharedMemory(Path file, RemoteEventBus.WaitStrategy wait) {
+      if (file == null) throw new NullPointerException("File is null");
+      if (wait == null) throw new NullPointerException("Wait strategy is null");
+      connectionOptions.sharedMemory = file;
+      connectionOptions.waitStrategy = wait;
+      connectionOptions.unixSocket = null;
+      return this;
+    }
+
+    /**
+     * Serves the connection with a selector instead of blocking threads. The listeners are then called by the I/O
+     * thread unless another {@link Dispatcher} is used. The server must be of this version or later, using either transport.
+     *
+     * @return this builder
+     */
+    public Builder nio() {
+      connectionOptions.ioThreads = 1;
+      return this;
+    }
+
+    /**
+     * Connects again to the server when the connection is lost, waiting 100ms before the first attempt, then twice as
+     * long at each failed attempt, up to 5s.
+     *
+     * @return this builder
+     * @see #reconnect(long, long)
+     */
+    public Builder reconnect() {
+      return reconnect(100, 5000);
+    }
+
+    /**
+     * Connects again to the server when the connection is lost instead of closing the client. The events triggered
+     * while disconnected are kept and sent once reconnected, and an {@code eventbus.client.reconnect} event is
+     * triggered locally at each reconnection.
+     * <p>
+     * The events sent are kept until the server acknowledges them, so that the ones lost with the connection are sent
+     * again: the server skips the ones it had already received. Up to the outbound capacity given to
+     * {@link #outbound(int, RemoteEventBus.SlowPeerPolicy)} events are kept: past it, the oldest ones are dropped. This
+     * is only supported by the blocking TCP transport.
+     *
+     * @param delayMillis    The delay before the first attempt, doubled at each failed attempt
+     * @param maxDelayMillis The longest delay between two attempts
+     * @return this builder
+     */
+    public Builder reconnect(long delayMillis, long maxDelayMillis) {
+      if (delayMillis <= 0) throw new IllegalArgumentException("Bad reconnection delay: " + delayMillis);
+      if (maxDelayMillis < delayMillis) throw new IllegalArgumentException("Bad maximum reconnection delay: " + maxDelayMillis);
+      connectionOptions.reconnectMillis = delayMillis;
+      connectionOptions.maxReconnectMillis = maxDelayMillis;
+      return this;
+    }
+
+    /**
+     * Joins channels of the server as soon as connected, as {@link EventBusClient#join(String)} does.
+     *
+     * @param channels The names of the channels
+     * @return this builder
+     */
+    public Builder join(String... channels) {
+      Set<String> joined = connectionOptions.channels;
+      for (String channel : channels) {
+        joined = Channels.with(joined, channel);
+      }
+      connectionOptions.channels = joined;
+      return this;
+    }
+
     @Override
     public EventBusClient build() throws EventBusException {
+      if (connectionOptions.sharedMemory != null) {
+        return buildShm();
+      }
+      if (connectionOptions.unixSocket != null) {
+        return buildNio();
+      }
       if (endpoint == null) {
+        if (System.getProperty("ipc.bus.shm") != null) {
+          return sharedMemory(Paths.get(System.getProperty("ipc.bus.shm")), RemoteEventBus.WaitStrategy.valueOf(System.getProperty("ipc.bus.shm.wait", "PARK"))).buildShm();
+        }
+        if (System.getProperty("ipc.bus.path") != null) {
+          return connect(Paths.get(System.getProperty("ipc.bus.path"))).buildNio();
+        }
         connect(System.getProperty("ipc.bus.host", "localhost"), Integer.parseInt(System.getProperty("ipc.bus.port", "56789")));
       }
+      if (connectionOptions.ioThreads > 0) {
+        return buildNio();
+      }
       try {
         Socket socket = SocketFactory.getDefault().createSocket();
         socket.connect(endpoint);
-        return busId == null ? new DefaultEventBusClient(socket, errorListener, listeners) : new DefaultEventBusClient(busId, socket, errorListener, listeners);
+        if (connectionOptions.reconnectMillis > 0) {
+          return new ReconnectingEventBusClient(busId != null ? busId : (socket.getLocalAddress().getHostName() + ":" + socket.getLocalPort()), socket, endpoint, errorListener, listeners, dispatcher, connectionOptions);
+        }
+        return busId == null ? new DefaultEventBusClient(socket, errorListener, listeners, dispatcher, connectionOptions) : new DefaultEventBusClient(busId, socket, errorListener, listeners, dispatcher, connectionOptions);
       } catch (IOException e) {
         throw new EventBusIOException("Bad endpoint: " + endpoint.getHostName() + ":" + endpoint.getPort() + " : " + e.getMessage(), e);
       }
     }
 
+    private EventBusClient buildShm() throws EventBusException {
+      checkNotReconnecting();
+      checkNoHeartbeat();
+      checkNoCredits();
+      if (!connectionOptions.channels.isEmpty()) {
+        throw new EventBusException("Channels are only supported by the socket transports");
+      }
+      Path file = connectionOptions.sharedMemory;
+      try {
+        return new ShmEventBusClient(busId != null ? busId : UUID.randomUUID().toString(), ShmFile.open(file, connectionOptions.codec), errorListener, listeners, dispatcher, connectionOptions);
+      } catch (UnsupportedOperationException e) {
+        throw new EventBusException(e.getMessage(), e);
+      } catch (IOException e) {
+        throw new EventBusIOException("Bad endpoint: " + file + " : " + e.getMessage(), e);
+      }
+    }
+
+    private EventBusClient buildNio() throws EventBusException {
+      checkNotReconnecting();
+      Path socket = connectionOptions.unixSocket;
+      SocketChannel channel = null;
+      try {
+        if (socket != null) {
+          channel = UnixSockets.connect(socket);
+          return new NioEventBusClient(busId != null ? busId : UUID.randomUUID().toString(), channel, errorListener, listeners, dispatcher, connectionOptions);
+        }
+        channel = SocketChannel.open(endpoint);
+        InetSocketAddress local = (InetSocketAddress) channel.getLocalAddress();
+        return new NioEventBusClient(busId != null ? busId : (local.getHostName() + ":" + local.getPort()), channel, errorListener, listeners, dispatcher, connectionOptions);
+      } catch (UnsupportedOperationException e) {
+        throw new EventBusException(e.getMessage(), e);
+      } catch (IOException e) {
+        if (channel != null) {
+          try {
+            channel.close();
+          } catch (IOException ignored) {
+          }
+        }
+        throw new EventBusIOException("Bad endpoint: " + (socket != null ? socket : endpoint.getHostName() + ":" + endpoint.getPort()) + " : " + e.getMessage(), e);
+      }
+    }
+
+    private void checkNotReconnecting() throws EventBusException {
+      if (connectionOptions.reconnectMillis > 0) {
+        throw new EventBusException("Reconnection is only supported by the blocking TCP transport");
+      }
+    }
+
   }
 }
@@ -20,6 +20,12 @@ import javax.net.ServerSocketFactory;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
 
 /**
  * @author Mathieu Carbou
@@ -28,6 +34,89 @@ public interface EventBusServer extends RemoteEventBus {
 
   int getClientCount();
 
+  /**
+   * @return The number of events waiting to be sent to each client, by client ID. A growing depth denotes a slow client.
+   * The servers not queuing the events return an empty map.
+   */
+  default Map<String, Integer> getClientQueueDepths() {
+    return Collections.emptyMap();
+  }
+
+  /**
+   * @return The round-trip time to each client measured by the last heartbeat, in microseconds, by client ID, or -1 for
+   * the clients not answering heartbeats yet. The servers not sending heartbeats return an empty map.
+   * @see Builder#heartbeat(long, long)
+   */
+  default Map<String, Long> getClientRoundTripMicros() {
+    return Collections.emptyMap();
+  }
+
+  /**
+   * @return The number of events each client still accepts before granting more, by client ID, or -1 for the clients
+   * not limiting them. The servers not granting credits return an empty map.
+   * @see Builder#credits(int)
+   */
+  default Map<String, Integer> getClientCredits() {
+    return Collections.emptyMap();
+  }
+
+  /**
+   * Sends an event to a single client, without notifying the local listeners nor the other clients. The IDs of the
+   * clients are the data of the {@code eventbus.client.connect} events, and the keys of {@link #getClientQueueDepths()}.
+   *
+   * @param clientId The ID of the client
+   * @param name     the event name
+   * @param data     data
+   * @return true if the client is connected and listens to this event
+   * @throws EventBusException if this server cannot send an event to a single client
+   */
+  default boolean triggerTo(String clientId, String name, Object data) throws EventBusException {
+    throw new EventBusException("Events to a single client are not supported by " + getClass().getName());
+  }
+
+  /**
+   * Sends an event to some clients, without notifying the local listeners nor the other clients. The event is encoded
+   * once for all of them. A client whose ID is given several times gets the event once. The servers not overriding this
+   * method send it to each client with {@link #triggerTo(String, String, Object)}.
+   *
+   * @param clientIds The IDs of the clients, as given to {@link #triggerTo(String, String, Object)}
+   * @param name      the event name
+   * @param data      data
+   * @return The number of distinct clients connected and listening to this event, which the event was sent to
+   */
+  default int triggerTo(Collection<String> clientIds, String name, Object data) {
+    int sent = 0;
+    for (String clientId : new LinkedHashSet<String>(clientIds)) {
+      if (triggerTo(clientId, name, data)) {
+        sent++;
+      }
+    }
+    return sent;
+  }
+
+  /**
+   * Sends an event to the clients having joined a channel with {@link EventBusClient#join(String)}, without notifying
+   * the local listeners nor the other clients. The event is encoded once for all of them.
+   *
+   * @param channel The name of the channel
+   * @param name    the event name
+   * @param data    data
+   * @return The number of members of the channel listening to this event, which the event was sent to
+   * @throws EventBusException if this server does not support channels
+   */
+  default int triggerChannel(String channel, String name, Object data) throws EventBusException {
+    throw new EventBusException("Channels are not supported by " + getClass().getName());
+  }
+
+  /**
+   * @param channel The name of the channel
+   * @return The IDs of the clients having joined this channel, as given to {@link #triggerTo(String, String, Object)},
+   * or none if this server does not support channels
+   */
+  default Collection<String> getChannelMembers(String channel) {
+    return Collections.emptyList();
+  }
+
   final class Builder extends BaseBuilder<Builder> {
 
     int port = Integer.parseInt(System.getProperty("ipc.bus.port", "56789"));
@@ -44,24 +133,159 @@ public interface EventBusServer extends RemoteEventBus {
 
     public Builder listen(int port) {
       this.port = port;
+      connectionOptions.unixSocket = null;
+      connectionOptions.sharedMemory = null;
       return this;
     }
 
     public Builder listenRandom() {
       port = 0;
+      connectionOptions.unixSocket = null;
+      connectionOptions.sharedMemory = null;
+      return this;
+    }
+
+    /**
+     * Listens on a Unix domain socket instead of a TCP port, for clients running on the same host. This needs Java 16
+     * or later and implies the NIO transport, with one I/O thread unless {@link #nio(int)} is called. The clients must
+     * connect with {@link EventBusClient.Builder#connect(Path)}. The socket file must not exist and is deleted when the
+     * server is closed.
+     *
+     * @param socket The path of the socket file
+     * @return this builder
+     */
+    public Builder listen(Path socket) {
+      if (socket == null) throw new NullPointerException("Socket path is null");
+      connectionOptions.unixSocket = socket;
+      connectionOptions.sharedMemory = null;
+      return this;
+    }
+
+    /**
+     * Exchanges the events with a single client, such as a child process, through a memory-mapped file instead of a
+     * socket, with rings of 1MB and the {@link RemoteEventBus.WaitStrategy#PARK} strategy.
+     *
+     * @param file The file to create, which must not exist
+     * @return this builder
+     * @see #sharedMemory(Path, int, RemoteEventBus.WaitStrategy)
+     */
+    public Builder sharedMemory(Path file) {
+      return sharedMemory(file, ConnectionOptions.DEFAULT_RING_BYTES, RemoteEventBus.WaitStrategy.PARK);
+    }
+
+    /**
+     * Exchanges the events with a single client, such as a child process, through a memory-mapped file instead of a
+     * socket. The file holds a ring in each direction, written directly by the threads triggering the events and polled
+     * by a reader thread. This needs Java 9 or later. The client must connect with {@link EventBusClient.Builder#sharedMemory(Path)}.
+     * The file is deleted when the server is closed: prefer a file in {@code /dev/shm} on Linux, so that it is never
+     * written to a disk.
+     * <p>
+     * The ring is the outbound queue of the connection: the capacity given to
+     * {@link #outbound(int, RemoteEventBus.SlowPeerPolicy)} is not used, and the events sent to a full ring are dropped
+     * with the {@link RemoteEventBus.SlowPeerPolicy#COALESCE} policy.
+     *
+     * @param file      The file to create, which must not exist
+     * @param ringBytes The size of each ring, rounded up to a power of 2. It bounds the size of an encoded event.
+     * @param wait      How the reader thread waits for events
+     * @return this builder
+     */
+    public Builder sharedMemory(Path file, int ringBytes, RemoteEventBus.WaitStrategy wait) {
+      if (file == null) throw new NullPointerException("File is null");
+      if (wait == null) throw new NullPointerException("Wait strategy is null");
+      if (ringBytes < 4096 || ringBytes > 1 << 30) throw new IllegalArgumentException("Bad ring size: " + ringBytes);
+      connectionOptions.sharedMemory = file;
+      connectionOptions.ringBytes = ringBytes;
+      connectionOptions.waitStrategy = wait;
+      connectionOptions.unixSocket = null;
+      return this;
+    }
+
+    /**
+     * Serves the clients with a fixed number of I/O threads, whatever the number of clients, instead of having threads
+     * per client. The listeners are then called by these threads unless another {@link Dispatcher} is used, and the
+     * {@link RemoteEventBus.SlowPeerPolicy#BLOCK} policy does not block them. The clients must be of this version or
+     * later, using either transport.
+     *
+     * @param ioThreads The number of I/O threads
+     * @return this builder
+     */
+    public Builder nio(int ioThreads) {
+      if (ioThreads <= 0) throw new IllegalArgumentException("Bad I/O thread count: " + ioThreads);
+      connectionOptions.ioThreads = ioThreads;
+      return this;
+    }
+
+    /**
+     * Forwards the events received from a client to the other clients listening to them, keeping their source, so that
+     * the clients can talk to each other through this server. An event is not sent back to the client it comes from.
+     * Relayed events are forwarded in the frame they were received in and their data is only decoded if a listener of
+     * this server reads it, or if a client does not use the same codec as the sender. A server using
+     * {@link #sharedMemory(Path)} has a single client and does not relay anything.
+     *
+     * @return this builder
+     */
+    public Builder relay() {
+      connectionOptions.relay = true;
       return this;
     }
 
     @Override
     public EventBusServer build() throws EventBusException {
+      if (connectionOptions.sharedMemory != null) {
+        return buildShm();
+      }
+      if (connectionOptions.ioThreads > 0 || connectionOptions.unixSocket != null) {
+        return buildNio();
+      }
       try {
         ServerSocket serverSocket = ServerSocketFactory.getDefault().createServerSocket();
         serverSocket.bind(new InetSocketAddress(address, port));
-        return new DefaultEventBusServer(busId != null ? busId : (serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort()), serverSocket, errorListener, listeners);
+        return new DefaultEventBusServer(busId != null ? busId : (serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort()), serverSocket, errorListener, listeners, dispatcher, connectionOptions);
       } catch (IOException e) {
         throw new EventBusIOException("Cannot bind on " + address + ":" + port + " : " + e.getMessage(), e);
       }
     }
 
+    private EventBusServer buildShm() throws EventBusException {
+      checkNoHeartbeat();
+      checkNoCredits();
+      Path file = connectionOptions.sharedMemory;
+      try {
+        return new ShmEventBusServer(busId != null ? busId : ("shm:" + file), ShmFile.create(file, connectionOptions.ringBytes, connectionOptions.codec), errorListener, listeners, dispatcher, connectionOptions);
+      } catch (UnsupportedOperationException e) {
+        throw new EventBusException(e.getMessage(), e);
+      } catch (IOException e) {
+        throw new EventBusIOException("Cannot create " + file + " : " + e.getMessage(), e);
+      }
+    }
+
+    private EventBusServer buildNio() throws EventBusException {
+      Path socket = connectionOptions.unixSocket;
+      if (connectionOptions.ioThreads == 0) {
+        connectionOptions.ioThreads = 1;
+      }
+      ServerSocketChannel channel = null;
+      try {
+        if (socket != null) {
+          channel = UnixSockets.bind(socket);
+          return new NioEventBusServer(busId != null ? busId : ("unix:" + socket), channel, errorListener, listeners, dispatcher, connectionOptions);
+        }
+        channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(address, port));
+        InetSocketAddress local = (InetSocketAddress) channel.getLocalAddress();
+        return new NioEventBusServer(busId != null ? busId : (local.getAddress().getHostAddress() + ":" + local.getPort()), channel, errorListener, listeners, dispatcher, connectionOptions);
+      } catch (UnsupportedOperationException e) {
+        throw new EventBusException(e.getMessage(), e);
+      } catch (IOException e) {
+        if (channel != null) {
+          try {
+            channel.close();
+          } catch (IOException ignored) {
+          }
+        }
+        throw new EventBusIOException("Cannot bind on " + (socket != null ? socket : address + ":" + port) + " : " + e.getMessage(), e);
+      }
+    }
+
   }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.ipceventbus.event;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Encodes the data of the events exchanged by remote buses.
+ * <p>
+ * Remote buses send each event in a length-prefixed binary frame holding its source, name and timestamp, followed by
+ * its data written by a codec. When connecting, both peers announce the codecs they can decode: the configured codec
+ * is used to send events if the peer knows it, otherwise the {@link #binary()} codec is used. Peers of older versions,
+ * which do not announce any codec, keep exchanging serialized events.
+ * <p>
+ * A codec is shared by all the connections of a bus and must be thread-safe.
+ *
+ * @author Mathieu Carbou
+ */
+public interface EventCodec {
+
+  /**
+   * @return The name identifying this codec when negotiating with the remote peers
+   */
+  String getName();
+
+  /**
+   * @param data The event data, possibly null
+   * @param out  Where to write the data
+   */
+  void encode(Object data, DataOutput out) throws IOException;
+
+  /**
+   * @param in Where to read the data from, positioned after the event header. It must be read up to the end of the encoded data.
+   * @return The event data
+   */
+  Object decode(DataInput in) throws IOException, ClassNotFoundException;
+
+  /**
+   * @return The default codec, having compact encodings for null, strings, boxed primitives, byte arrays and
+   * {@link java.util.HashMap} or {@link java.util.LinkedHashMap} of strings, and falling back to Java serialization for other data.
+   */
+  static EventCodec binary() {
+    return BinaryEventCodec.INSTANCE;
+  }
+
+}
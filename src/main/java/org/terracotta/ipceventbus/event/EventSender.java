@@ -34,10 +34,13 @@ public interface EventSender {
   void trigger(String name);
 
   /**
-   * Trigger an event with some data
+   * Trigger an event with some data.
+   * <p>
+   * A remote bus encodes the data later, on the thread writing to its peers, so the data must not be modified once
+   * triggered: the peers might receive the modified data, or the connection be closed if the codec fails to encode it.
    *
    * @param name the event name
-   * @param data data
+   * @param data data, not to be modified afterwards
    */
   void trigger(String name, Object data);
 
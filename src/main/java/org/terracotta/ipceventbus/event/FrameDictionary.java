@@ -0,0 +1,117 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The strings of one direction of a connection, i.e. the event names and sources, replaced by small numbers in the
+ * {@link Frames#COMPACT} frames.
+ * <p>
+ * The first frame using a string defines it: a varint {@code id << 1 | 1} followed by the string. The next frames only
+ * write the varint {@code id << 1}, so that a name or a source costs a single byte for the first 63 strings. Once
+ * {@link #MAX_ENTRIES} strings are defined, the other ones are written inline after a 0, so that a peer using many
+ * distinct names does not grow the dictionaries forever. The reading side interns the strings it is given: the events
+ * it receives share the same name and source instances.
+ * <p>
+ * A dictionary is only used by one thread at a time: the writer of the connection, or its reader.
+ *
+ * @author Mathieu Carbou
+ */
+final class FrameDictionary {
+
+  static final int MAX_ENTRIES = 4096;
+
+  private static final int INLINE = 0;
+
+  // writing side
+  private final Map<String, Integer> ids = new HashMap<String, Integer>();
+  // reading side, indexed by id
+  private String[] strings = new String[16];
+  private int size;
+
+  /**
+   * Appends a string, defining it if new
+   */
+  void write(FrameOutput out, String s) {
+    Integer id = s == null ? null : ids.get(s);
+    if (id != null) {
+      out.writeVarInt(id << 1);
+    } else if (s == null || size == MAX_ENTRIES) {
+      out.writeVarInt(INLINE);
+      out.writeString(s);
+    } else {
+      id = ++size;
+      ids.put(s, id);
+      out.writeVarInt(id << 1 | 1);
+      out.writeString(s);
+    }
+  }
+
+  /**
+   * @return A mark to forget the strings defined from now on with {@link #rollback(int)}, i.e. when the frame defining
+   * them is not sent after all
+   */
+  int mark() {
+    return size;
+  }
+
+  void rollback(int mark) {
+    if (size > mark) {
+      for (Iterator<Integer> it = ids.values().iterator(); it.hasNext(); ) {
+        if (it.next() > mark) {
+          it.remove();
+        }
+      }
+      size = mark;
+    }
+  }
+
+  String read(FrameInput in) throws IOException {
+    int v = in.readVarInt();
+    if (v == INLINE) {
+      return in.readString();
+    }
+    int id = v >>> 1;
+    if ((v & 1) == 0) {
+      if (id < 1 || id > size) {
+        throw new StreamCorruptedException("Unknown string: " + id);
+      }
+      return strings[id];
+    }
+    if (id != size + 1 || id > MAX_ENTRIES) {
+      throw new StreamCorruptedException("Bad string definition: " + id + ", " + size + " strings defined");
+    }
+    String s = in.readString();
+    if (s == null) {
+      throw new StreamCorruptedException("Null string definition: " + id);
+    }
+    if (id == strings.length) {
+      strings = Arrays.copyOf(strings, strings.length * 2);
+    }
+    strings[id] = s.intern();
+    size = id;
+    return strings[id];
+  }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a frame from a byte array, with the encodings of {@link FrameOutput}.
+ *
+ * @author Mathieu Carbou
+ */
+final class FrameInput extends InputStream implements DataInput {
+
+  private byte[] buffer;
+  private int position;
+  private int limit;
+
+  FrameInput() {
+    this(new byte[0], 0, 0);
+  }
+
+  FrameInput(byte[] buffer, int offset, int length) {
+    reset(buffer, offset, length);
+  }
+
+  FrameInput reset(byte[] buffer, int offset, int length) {
+    this.buffer = buffer;
+    this.position = offset;
+    this.limit = offset + length;
+    return this;
+  }
+
+  int position() {
+    return position;
+  }
+
+  int remaining() {
+    return limit - position;
+  }
+
+  byte[] buffer() {
+    return buffer;
+  }
+
+  int readVarInt() throws IOException {
+    int v = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = readUnsignedByte();
+      v |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return v;
+      }
+    }
+    throw new StreamCorruptedException("Bad varint");
+  }
+
+  String readString() throws IOException {
+    int length = readVarInt() - 1;
+    if (length < 0) {
+      return null;
+    }
+    require(length);
+    String s = new String(buffer, position, length, StandardCharsets.UTF_8);
+    position += length;
+    return s;
+  }
+
+  @Override
+  public int read() {
+    return position < limit ? buffer[position++] & 0xFF : -1;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) {
+    if (len == 0) {
+      return 0;
+    }
+    int n = Math.min(len, limit - position);
+    if (n <= 0) {
+      return -1;
+    }
+    System.arraycopy(buffer, position, b, off, n);
+    position += n;
+    return n;
+  }
+
+  @Override
+  public int available() {
+    return limit - position;
+  }
+
+  @Override
+  public void readFully(byte[] b) throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    require(len);
+    System.arraycopy(buffer, position, b, off, len);
+    position += len;
+  }
+
+  @Override
+  public int skipBytes(int n) {
+    int skipped = Math.max(0, Math.min(n, limit - position));
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public boolean readBoolean() throws IOException {
+    return readUnsignedByte() != 0;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    return (byte) readUnsignedByte();
+  }
+
+  @Override
+  public int readUnsignedByte() throws IOException {
+    require(1);
+    return buffer[position++] & 0xFF;
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    return (short) readUnsignedShort();
+  }
+
+  @Override
+  public int readUnsignedShort() throws IOException {
+    require(2);
+    int v = ((buffer[position] & 0xFF) << 8) | (buffer[position + 1] & 0xFF);
+    position += 2;
+    return v;
+  }
+
+  @Override
+  public char readChar() throws IOException {
+    return (char) readUnsignedShort();
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    require(4);
+    int v = ((buffer[position] & 0xFF) << 24)
+        | ((buffer[position + 1] & 0xFF) << 16)
+        | ((buffer[position + 2] & 0xFF) << 8)
+        | (buffer[position + 3] & 0xFF);
+    position += 4;
+    return v;
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    return Float.intBitsToFloat(readInt());
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    return Double.longBitsToDouble(readLong());
+  }
+
+  @Override
+  public String readLine() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public String readUTF() throws IOException {
+    return DataInputStream.readUTF(this);
+  }
+
+  private void require(int n) throws EOFException {
+    if (n < 0 || limit - position < n) {
+      throw new EOFException("Frame truncated: " + n + " bytes needed, " + (limit - position) + " available");
+    }
+  }
+
+}
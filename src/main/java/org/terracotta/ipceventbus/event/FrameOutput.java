@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A growable, reusable byte buffer used to encode frames.
+ * <p>
+ * Besides the {@link DataOutput} encodings, it writes unsigned varints and length-prefixed UTF-8 strings.
+ *
+ * @author Mathieu Carbou
+ */
+final class FrameOutput extends OutputStream implements DataOutput {
+
+  private byte[] buffer;
+  private int size;
+
+  FrameOutput() {
+    this(256);
+  }
+
+  FrameOutput(int capacity) {
+    this.buffer = new byte[capacity];
+  }
+
+  int size() {
+    return size;
+  }
+
+  byte[] buffer() {
+    return buffer;
+  }
+
+  void reset() {
+    size = 0;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, size);
+  }
+
+  void writeTo(OutputStream out) throws IOException {
+    out.write(buffer, 0, size);
+  }
+
+  /**
+   * Reserves 4 bytes for a length to be written later with {@link #putInt(int, int)}
+   *
+   * @return the position of the reserved bytes
+   */
+  int skipInt() {
+    ensure(4);
+    int position = size;
+    size += 4;
+    return position;
+  }
+
+  void putInt(int position, int v) {
+    buffer[position] = (byte) (v >>> 24);
+    buffer[position + 1] = (byte) (v >>> 16);
+    buffer[position + 2] = (byte) (v >>> 8);
+    buffer[position + 3] = (byte) v;
+  }
+
+  void writeVarInt(int v) {
+    ensure(5);
+    while ((v & ~0x7F) != 0) {
+      buffer[size++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    buffer[size++] = (byte) v;
+  }
+
+  /**
+   * Writes a nullable string as a varint (0 for null, else the UTF-8 length + 1) followed by its UTF-8 bytes
+   */
+  void writeString(String s) {
+    if (s == null) {
+      writeVarInt(0);
+      return;
+    }
+    int length = s.length();
+    for (int i = 0; i < length; i++) {
+      if (s.charAt(i) >= 0x80) {
+        writeBytes(s.getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+    }
+    // ASCII fast path
+    writeVarInt(length + 1);
+    ensure(length);
+    for (int i = 0; i < length; i++) {
+      buffer[size++] = (byte) s.charAt(i);
+    }
+  }
+
+  /**
+   * Writes a string already encoded in UTF-8, with the same format as {@link #writeString(String)}
+   */
+  void writeBytes(byte[] utf8) {
+    writeVarInt(utf8.length + 1);
+    write(utf8, 0, utf8.length);
+  }
+
+  @Override
+  public void write(int b) {
+    ensure(1);
+    buffer[size++] = (byte) b;
+  }
+
+  @Override
+  public void write(byte[] b) {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensure(len);
+    System.arraycopy(b, off, buffer, size, len);
+    size += len;
+  }
+
+  @Override
+  public void writeBoolean(boolean v) {
+    write(v ? 1 : 0);
+  }
+
+  @Override
+  public void writeByte(int v) {
+    write(v);
+  }
+
+  @Override
+  public void writeShort(int v) {
+    ensure(2);
+    buffer[size++] = (byte) (v >>> 8);
+    buffer[size++] = (byte) v;
+  }
+
+  @Override
+  public void writeChar(int v) {
+    writeShort(v);
+  }
+
+  @Override
+  public void writeInt(int v) {
+    ensure(4);
+    putInt(size, v);
+    size += 4;
+  }
+
+  @Override
+  public void writeLong(long v) {
+    writeInt((int) (v >>> 32));
+    writeInt((int) v);
+  }
+
+  @Override
+  public void writeFloat(float v) {
+    writeInt(Float.floatToIntBits(v));
+  }
+
+  @Override
+  public void writeDouble(double v) {
+    writeLong(Double.doubleToLongBits(v));
+  }
+
+  @Override
+  public void writeBytes(String s) {
+    int length = s.length();
+    ensure(length);
+    for (int i = 0; i < length; i++) {
+      buffer[size++] = (byte) s.charAt(i);
+    }
+  }
+
+  @Override
+  public void writeChars(String s) {
+    int length = s.length();
+    for (int i = 0; i < length; i++) {
+      writeChar(s.charAt(i));
+    }
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    // modified UTF-8, as DataOutputStream does
+    int length = s.length();
+    int utf = 0;
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      utf += c >= 0x0001 && c <= 0x007F ? 1 : c > 0x07FF ? 3 : 2;
+    }
+    if (utf > 65535) throw new UTFDataFormatException("encoded string too long: " + utf + " bytes");
+    writeShort(utf);
+    ensure(utf);
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c >= 0x0001 && c <= 0x007F) {
+        buffer[size++] = (byte) c;
+      } else if (c > 0x07FF) {
+        buffer[size++] = (byte) (0xE0 | ((c >> 12) & 0x0F));
+        buffer[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[size++] = (byte) (0x80 | (c & 0x3F));
+      } else {
+        buffer[size++] = (byte) (0xC0 | ((c >> 6) & 0x1F));
+        buffer[size++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private void ensure(int more) {
+    if (size + more > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + more));
+    }
+  }
+
+}
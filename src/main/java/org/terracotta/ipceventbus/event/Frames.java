@@ -0,0 +1,521 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The wire protocol of remote buses.
+ * <p>
+ * A connection starts with Java serialization, as in the previous versions: each side writes serialized events and
+ * ignores the ones it does not know. Right after the stream header, a side sends a {@link #HELLO} event listing the
+ * codecs it can decode. When a side receives the hello of its peer, it picks a codec, sends a {@link #SWITCH} event
+ * naming it and then only writes binary frames. A peer never sending any hello only gets serialized events.
+ * <p>
+ * A binary frame is: {@code int length, byte type, body}, where the length counts the type and the body. The body of
+ * an {@link #EVENT} frame is: {@code string source, string name, long timestamp, data}, where strings are
+ * length-prefixed UTF-8 and the data is written by the {@link EventCodec}. The body of an {@link #INTEREST} frame is:
+ * {@code boolean all, varint count, string names...}, listing the events the sender listens to (see {@link Interest}).
+ * <p>
+ * A reconnecting client starts each connection with a {@link #RESUME} frame naming its session, then sends its events
+ * in {@link #SEQUENCED_EVENT} frames, being event frames preceded by a {@code long} sequence number. The server skips the
+ * sequence numbers of the session it has already received and tells the last one received in {@link #ACK} frames, so
+ * that the client can resend the events it has not been acknowledged after reconnecting.
+ * <p>
+ * A side having written nothing for a while sends a {@link #PING} frame holding its clock, which the peer echoes in a
+ * {@link #PONG} frame, so that both know the connection is alive and the sender measures the round-trip time.
+ * <p>
+ * A side limiting the events it receives announces {@link #CREDITS} followed by its window in its hello, then grants
+ * its peer the events again once dispatched in {@link #CREDIT} frames holding an {@code int} (see {@link Credits}). A
+ * peer having received such a hello only sends the events it has been granted.
+ * <p>
+ * When both sides announce {@link #DICTIONARY} in their hello, the event frames of a connection carry the
+ * {@link #COMPACT} flag in their type and replace their source and name by references to the previous frames (see
+ * {@link FrameDictionary}). Broadcast and relayed frames, encoded once for several connections, are never compact.
+ * <p>
+ * A {@link #REQUEST} frame is an event frame preceded by the {@code long} id of the call, answered by a {@link #REPLY}
+ * frame: {@code long call, string source, string name, long timestamp, boolean failed}, followed by the data returned
+ * by the handler, or by the string describing its failure. Before switching to frames, they are sent in serialized
+ * {@link #CALL} events holding the frame encoded with the binary codec, which the peers of previous versions ignore.
+ * <p>
+ * A client joining or leaving channels sends a {@link #CHANNELS} frame: {@code varint count, string channels...},
+ * listing all the channels it is a member of, so that the server only keeps the last one (see {@link Channels}).
+ * <p>
+ * Frames of unknown types are skipped. A frame longer than {@link #MAX_FRAME_BYTES} closes the connection, so that a
+ * corrupt length cannot make the reader allocate up to 2GB.
+ *
+ * @author Mathieu Carbou
+ */
+final class Frames {
+
+  static final String HELLO = "eventbus.hello";
+  static final String SWITCH = "eventbus.codec";
+  // announced in the hello, after the codec names, by the peers reading compact frames
+  static final String DICTIONARY = "eventbus.dictionary";
+  static final String CALL = "eventbus.call";
+  // announced in the hello, followed by the window, by the peers limiting the events they receive
+  static final String CREDITS = "eventbus.credits=";
+
+  static final byte EVENT = 1;
+  static final byte INTEREST = 2;
+  static final byte RESUME = 3;
+  static final byte SEQUENCED_EVENT = 4;
+  static final byte ACK = 5;
+  static final byte PING = 6;
+  static final byte PONG = 7;
+  static final byte CREDIT = 8;
+  static final byte REQUEST = 9;
+  static final byte REPLY = 10;
+  static final byte CHANNELS = 11;
+  // flag of the event frames using the dictionary of the connection
+  static final byte COMPACT = 0x40;
+
+  /**
+   * The largest frame accepted, 64MB unless the system property {@code ipc.bus.maxFrameBytes} says otherwise
+   */
+  static final int MAX_FRAME_BYTES = Integer.getInteger("ipc.bus.maxFrameBytes", 64 * 1024 * 1024);
+
+  // the read buffers grown beyond this size for a large frame are shrunk back once it is read
+  static final int RETAINED_BUFFER_BYTES = 64 * 1024;
+
+  private Frames() {
+  }
+
+  /**
+   * @param length The length of a frame, as read from the peer
+   * @return The length, if legal
+   * @throws StreamCorruptedException if the frame is empty or larger than {@link #MAX_FRAME_BYTES}
+   */
+  static int checkLength(int length) throws StreamCorruptedException {
+    if (length < 1) {
+      throw new StreamCorruptedException("Bad frame length: " + length);
+    }
+    if (length > MAX_FRAME_BYTES) {
+      throw new StreamCorruptedException("Frame of " + length + " bytes larger than " + MAX_FRAME_BYTES + " bytes");
+    }
+    return length;
+  }
+
+  /**
+   * @return The names of the codecs a bus configured with the given codec can decode, followed by the features it supports
+   */
+  static String[] decodable(EventCodec codec) {
+    return decodable(codec, 0);
+  }
+
+  /**
+   * @param window The credit window of the bus, or 0 if it does not limit the events it receives
+   * @return The names of the codecs a bus configured with the given codec can decode, followed by the features it supports
+   */
+  static String[] decodable(EventCodec codec, int window) {
+    List<String> hello = new ArrayList<String>(4);
+    hello.add(codec.getName());
+    if (!BinaryEventCodec.NAME.equals(codec.getName())) {
+      hello.add(BinaryEventCodec.NAME);
+    }
+    hello.add(DICTIONARY);
+    if (window > 0) {
+      hello.add(CREDITS + window);
+    }
+    return hello.toArray(new String[0]);
+  }
+
+  /**
+   * @return The credit window announced in the hello of a peer, or 0 if it does not limit the events it receives
+   */
+  static int window(Object peerCodecs) {
+    if (peerCodecs instanceof String[]) {
+      for (String feature : (String[]) peerCodecs) {
+        if (feature != null && feature.startsWith(CREDITS)) {
+          try {
+            return Math.max(0, Integer.parseInt(feature.substring(CREDITS.length())));
+          } catch (NumberFormatException e) {
+            return 0;
+          }
+        }
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * @return true if the hello of a peer announces the given feature
+   */
+  static boolean supports(Object peerCodecs, String feature) {
+    return peerCodecs instanceof String[] && Arrays.asList((String[]) peerCodecs).contains(feature);
+  }
+
+  /**
+   * @return The codec to use to send events to a peer able to decode the given codecs, or null to keep on with Java serialization
+   */
+  static EventCodec negotiate(EventCodec codec, Object peerCodecs) {
+    if (!(peerCodecs instanceof String[])) {
+      return null;
+    }
+    List<String> names = Arrays.asList((String[]) peerCodecs);
+    if (names.contains(codec.getName())) {
+      return codec;
+    }
+    if (names.contains(BinaryEventCodec.NAME)) {
+      return BinaryEventCodec.INSTANCE;
+    }
+    return null;
+  }
+
+  /**
+   * @return The codec to use to decode the events of a peer having switched to the given codec
+   */
+  static EventCodec resolve(EventCodec codec, Object name) throws StreamCorruptedException {
+    if (codec.getName().equals(name)) {
+      return codec;
+    }
+    if (BinaryEventCodec.NAME.equals(name)) {
+      return BinaryEventCodec.INSTANCE;
+    }
+    throw new StreamCorruptedException("Unknown codec: " + name);
+  }
+
+  /**
+   * Appends an event frame
+   *
+   * @param encodedName The UTF-8 bytes of the event name if already known, or null
+   */
+  static void writeEvent(FrameOutput out, EventCodec codec, Event event, byte[] encodedName) throws IOException {
+    writeEvent(out, codec, event, encodedName, 0);
+  }
+
+  /**
+   * Appends an event frame, sequenced if a sequence number is given
+   *
+   * @param encodedName The UTF-8 bytes of the event name if already known, or null
+   * @param seq         The sequence number of the event in the session of the client, or 0
+   */
+  static void writeEvent(FrameOutput out, EventCodec codec, Event event, byte[] encodedName, long seq) throws IOException {
+    writeEvent(out, codec, event, encodedName, seq, null);
+  }
+
+  /**
+   * Appends an event frame, sequenced if a sequence number is given, and compact if a dictionary is given
+   *
+   * @param encodedName The UTF-8 bytes of the event name if already known, or null
+   * @param seq         The sequence number of the event in the session of the client, or 0
+   * @param names       The dictionary of the strings sent to the peer, or null
+   */
+  static void writeEvent(FrameOutput out, EventCodec codec, Event event, byte[] encodedName, long seq, FrameDictionary names) throws IOException {
+    int start = out.skipInt();
+    byte flag = names == null ? 0 : COMPACT;
+    if (seq > 0) {
+      out.writeByte(SEQUENCED_EVENT | flag);
+      out.writeLong(seq);
+    } else {
+      out.writeByte(EVENT | flag);
+    }
+    if (names != null) {
+      names.write(out, event.getSource());
+      names.write(out, event.getName());
+    } else {
+      out.writeString(event.getSource());
+      if (encodedName != null) {
+        out.writeBytes(encodedName);
+      } else {
+        out.writeString(event.getName());
+      }
+    }
+    out.writeLong(event.getTimestamp());
+    codec.encode(event.getData(), out);
+    out.putInt(start, out.size() - start - 4);
+  }
+
+  /**
+   * Appends a channels frame
+   */
+  static void writeChannels(FrameOutput out, Set<String> channels) {
+    int start = out.skipInt();
+    out.writeByte(CHANNELS);
+    out.writeVarInt(channels.size());
+    for (String channel : channels) {
+      out.writeString(channel);
+    }
+    out.putInt(start, out.size() - start - 4);
+  }
+
+  /**
+   * Appends an interest frame
+   */
+  static void writeInterest(FrameOutput out, Interest interest) {
+    int start = out.skipInt();
+    out.writeByte(INTEREST);
+    out.writeBoolean(interest.isAll());
+    out.writeVarInt(interest.getNames().size());
+    for (String name : interest.getNames()) {
+      out.writeString(name);
+    }
+    out.putInt(start, out.size() - start - 4);
+  }
+
+  /**
+   * Appends a resume frame
+   */
+  static void writeResume(FrameOutput out, String session) {
+    int start = out.skipInt();
+    out.writeByte(RESUME);
+    out.writeString(session);
+    out.putInt(start, out.size() - start - 4);
+  }
+
+  /**
+   * Appends an acknowledgement frame
+   *
+   * @param seq The last sequence number received
+   */
+  static void writeAck(FrameOutput out, long seq) {
+    int start = out.skipInt();
+    out.writeByte(ACK);
+    out.writeLong(seq);
+    out.putInt(start, out.size() - start - 4);
+  }
+
+  /**
+   * Appends a ping frame, or the pong frame answering it
+   *
+   * @param type  {@link #PING} or {@link #PONG}
+   * @param nanos The clock of the side sending the ping
+   */
+  static void writeHeartbeat(FrameOutput out, byte type, long nanos) {
+    int start = out.skipInt();
+    out.writeByte(type);
+    out.writeLong(nanos);
+    out.putInt(start, out.size() - start - 4);
+  }
+
+  /**
+   * Appends a credit frame
+   *
+   * @param events The number of events granted to the peer
+   */
+  static void writeCredit(FrameOutput out, int events) {
+    int start = out.skipInt();
+    out.writeByte(CREDIT);
+    out.writeInt(events);
+    out.putInt(start, out.size() - start - 4);
+  }
+
+  /**
+   * Appends a request frame
+   */
+  static void writeRequest(FrameOutput out, EventCodec codec, Request request) throws IOException {
+    int start = out.skipInt();
+    out.writeByte(REQUEST);
+    out.writeLong(request.call);
+    out.writeString(request.getSource());
+    out.writeString(request.getName());
+    out.writeLong(request.getTimestamp());
+    codec.encode(request.getData(), out);
+    out.putInt(start, out.size() - start - 4);
+  }
+
+  /**
+   * Appends a reply frame
+   */
+  static void writeReply(FrameOutput out, EventCodec codec, Reply reply) throws IOException {
+    int start = out.skipInt();
+    out.writeByte(REPLY);
+    out.writeLong(reply.call);
+    out.writeString(reply.getSource());
+    out.writeString(reply.getName());
+    out.writeLong(reply.getTimestamp());
+    out.writeBoolean(reply.failed);
+    if (reply.failed) {
+      out.writeString(String.valueOf(reply.getData()));
+    } else {
+      codec.encode(reply.getData(), out);
+    }
+    out.putInt(start, out.size() - start - 4);
+  }
+
+  /**
+   * @return The data of a {@link #CALL} event: the frame of a request or of a reply, encoded with the binary codec
+   */
+  static byte[] callFrame(FrameOutput scratch, CallEvent call) throws IOException {
+    scratch.reset();
+    if (call instanceof Request) {
+      writeRequest(scratch, BinaryEventCodec.INSTANCE, (Request) call);
+    } else {
+      writeReply(scratch, BinaryEventCodec.INSTANCE, (Reply) call);
+    }
+    return scratch.toByteArray();
+  }
+
+  /**
+   * Reads the request or the reply held by a {@link #CALL} event
+   *
+   * @param from The connection it was received from
+   */
+  static CallEvent readCall(byte[] frame, Connection from) throws IOException, ClassNotFoundException {
+    FrameInput in = new FrameInput(frame, 4, frame.length - 4);
+    byte type = in.readByte();
+    if (type == REQUEST) {
+      return readRequest(in, BinaryEventCodec.INSTANCE, from);
+    }
+    if (type == REPLY) {
+      return readReply(in, BinaryEventCodec.INSTANCE);
+    }
+    throw new StreamCorruptedException("Bad call frame type: " + type);
+  }
+
+  /**
+   * Reads the body of a request frame, the type having been read
+   *
+   * @param from The connection to send the reply to
+   */
+  static Request readRequest(FrameInput in, EventCodec codec, Connection from) throws IOException, ClassNotFoundException {
+    long call = in.readLong();
+    String source = in.readString();
+    String name = in.readString();
+    long timestamp = in.readLong();
+    Object data = codec.decode(in);
+    if (name == null || name.length() == 0) {
+      throw new StreamCorruptedException("Bad request name: " + name);
+    }
+    return new Request(source, name, timestamp, data, call, from);
+  }
+
+  /**
+   * Reads the body of a reply frame, the type having been read
+   */
+  static Reply readReply(FrameInput in, EventCodec codec) throws IOException, ClassNotFoundException {
+    long call = in.readLong();
+    String source = in.readString();
+    String name = in.readString();
+    long timestamp = in.readLong();
+    boolean failed = in.readBoolean();
+    Object data = failed ? in.readString() : codec.decode(in);
+    return new Reply(source, name, timestamp, data, call, failed);
+  }
+
+  /**
+   * Reads the body of a channels frame, the type having been read
+   */
+  static Set<String> readChannels(FrameInput in) throws IOException {
+    int count = in.readVarInt();
+    if (count < 0 || count > in.remaining()) {
+      throw new StreamCorruptedException("Bad channels size: " + count);
+    }
+    Set<String> channels = new HashSet<String>(count * 2);
+    for (int i = 0; i < count; i++) {
+      channels.add(in.readString());
+    }
+    return Collections.unmodifiableSet(channels);
+  }
+
+  /**
+   * Reads the body of an interest frame, the type having been read
+   */
+  static Interest readInterest(FrameInput in) throws IOException {
+    boolean all = in.readBoolean();
+    int count = in.readVarInt();
+    if (count < 0 || count > in.remaining()) {
+      throw new StreamCorruptedException("Bad interest size: " + count);
+    }
+    Set<String> names = new HashSet<String>(count * 2);
+    for (int i = 0; i < count; i++) {
+      names.add(in.readString());
+    }
+    return all ? Interest.ALL : new Interest(false, names);
+  }
+
+  /**
+   * Reads the header of an event frame, the type having been read, keeping a copy of the frame and leaving the data
+   * encoded. The copy is an {@link #EVENT} frame, even if a sequenced event was read.
+   */
+  static RelayedEvent readRelayed(FrameInput in, EventCodec codec) throws IOException {
+    return readRelayed(in, codec, null);
+  }
+
+  /**
+   * Reads the header of an event frame, compact if a dictionary is given, keeping a copy of the frame as a plain
+   * {@link #EVENT} frame and leaving the data encoded
+   *
+   * @param names The dictionary of the strings received from the peer, or null
+   */
+  static RelayedEvent readRelayed(FrameInput in, EventCodec codec, FrameDictionary names) throws IOException {
+    if (names != null) {
+      String source = names.read(in);
+      String name = names.read(in);
+      if (name == null || name.length() == 0) {
+        throw new StreamCorruptedException("Bad event name: " + name);
+      }
+      // the strings are written back, so that the frame can be sent to any peer
+      int rest = in.position();
+      long timestamp = in.readLong();
+      FrameOutput frame = new FrameOutput(32 + in.remaining());
+      int start = frame.skipInt();
+      frame.writeByte(EVENT);
+      frame.writeString(source);
+      frame.writeString(name);
+      int dataOffset = frame.size() + 8;
+      frame.write(in.buffer(), rest, 8 + in.remaining());
+      frame.putInt(start, frame.size() - start - 4);
+      return new RelayedEvent(source, name, timestamp, frame.toByteArray(), dataOffset, codec);
+    }
+    int body = in.position();
+    int length = 1 + in.remaining();
+    String source = in.readString();
+    String name = in.readString();
+    long timestamp = in.readLong();
+    if (name == null || name.length() == 0) {
+      throw new StreamCorruptedException("Bad event name: " + name);
+    }
+    FrameOutput frame = new FrameOutput(4 + length);
+    frame.writeInt(length);
+    frame.writeByte(EVENT);
+    frame.write(in.buffer(), body, length - 1);
+    return new RelayedEvent(source, name, timestamp, frame.buffer(), 5 + in.position() - body, codec);
+  }
+
+  /**
+   * Reads the body of an event frame, the type having been read
+   */
+  static Event readEvent(FrameInput in, EventCodec codec) throws IOException, ClassNotFoundException {
+    return readEvent(in, codec, null);
+  }
+
+  /**
+   * Reads the body of an event frame, compact if a dictionary is given, the type having been read
+   *
+   * @param names The dictionary of the strings received from the peer, or null
+   */
+  static Event readEvent(FrameInput in, EventCodec codec, FrameDictionary names) throws IOException, ClassNotFoundException {
+    String source = names == null ? in.readString() : names.read(in);
+    String name = names == null ? in.readString() : names.read(in);
+    long timestamp = in.readLong();
+    Object data = codec.decode(in);
+    if (name == null || name.length() == 0) {
+      throw new StreamCorruptedException("Bad event name: " + name);
+    }
+    return new DefaultEvent(source, name, timestamp, data);
+  }
+
+}
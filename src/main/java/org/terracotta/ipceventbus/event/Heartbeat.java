@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import org.terracotta.ipceventbus.Daemons;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Watches the traffic of a connection, on a timer shared by all the connections.
+ * <p>
+ * The I/O threads only flag that they have read or written something, so that watching a busy connection costs a plain
+ * store per read and per write: under load, the events themselves prove that both peers are alive. At each tick, a
+ * connection having written nothing since the previous tick sends a {@link Frames#PING}, which the peer answers with a
+ * {@link Frames#PONG} giving the round-trip time. A connection having read nothing for the timeout has timed out.
+ *
+ * @author Mathieu Carbou
+ */
+final class Heartbeat {
+
+  interface Target {
+    /**
+     * Called by the timer when nothing was written during the last interval, to queue a ping if the peer reads frames
+     */
+    void ping();
+
+    /**
+     * Called at each tick once nothing was read for the timeout, until the heartbeat is stopped, unless the previous call
+     * is still running. It is called by a thread of its own, since closing the connection runs the listeners of the
+     * bus, which must not stall the timer shared by all the connections. A peer of a previous version, which does not
+     * answer the pings, must not be considered as timed out.
+     */
+    void expired(SocketTimeoutException e);
+  }
+
+  private static final class Timer {
+    static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        return Daemons.newThread("eventbus-heartbeat", r);
+      }
+    });
+
+    static {
+      INSTANCE.setRemoveOnCancelPolicy(true);
+    }
+  }
+
+  private final Target target;
+  private final long timeoutNanos;
+  private final AtomicBoolean read = new AtomicBoolean();
+  private final AtomicBoolean written = new AtomicBoolean();
+  private final AtomicBoolean expiring = new AtomicBoolean();
+  private final ScheduledFuture<?> task;
+  private volatile long roundTripNanos = -1;
+  // only used by the timer
+  private long lastRead = System.nanoTime();
+
+  /**
+   * @return A started heartbeat, or null if the options do not enable heartbeats
+   */
+  static Heartbeat start(ConnectionOptions options, Target target) {
+    return options.heartbeatMillis > 0 ? new Heartbeat(options.heartbeatMillis, options.idleTimeoutMillis, target) : null;
+  }
+
+  /**
+   * Runs a task once on the timer of the heartbeats, which must not block
+   */
+  static void schedule(Runnable task, long delay, TimeUnit unit) {
+    Timer.INSTANCE.schedule(task, delay, unit);
+  }
+
+  private Heartbeat(long intervalMillis, long timeoutMillis, Target target) {
+    this.target = target;
+    this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    this.task = Timer.INSTANCE.scheduleAtFixedRate(new Runnable() {
+      @Override
+      public void run() {
+        tick();
+      }
+    }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Called by the reader of the connection after each frame or batch of frames
+   */
+  void read() {
+    read.lazySet(true);
+  }
+
+  /**
+   * Called by the writer of the connection after each write to the socket
+   */
+  void written() {
+    written.lazySet(true);
+  }
+
+  /**
+   * Called by the reader of the connection when the peer answers a ping
+   *
+   * @param sentNanos The time the ping was sent at, echoed by the peer
+   */
+  void pong(long sentNanos) {
+    roundTripNanos = System.nanoTime() - sentNanos;
+  }
+
+  /**
+   * @return The round-trip time measured by the last ping, in microseconds, or -1 if none was answered yet
+   */
+  long getRoundTripMicros() {
+    long nanos = roundTripNanos;
+    return nanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  void stop() {
+    task.cancel(false);
+  }
+
+  private void tick() {
+    long now = System.nanoTime();
+    if (read.getAndSet(false)) {
+      lastRead = now;
+    } else if (now - lastRead >= timeoutNanos) {
+      if (expiring.compareAndSet(false, true)) {
+        final SocketTimeoutException e = new SocketTimeoutException("Nothing received for " + TimeUnit.NANOSECONDS.toMillis(now - lastRead) + "ms");
+        Daemons.newThread("eventbus-heartbeat-expiry", new Runnable() {
+          @Override
+          public void run() {
+            try {
+              target.expired(e);
+            } finally {
+              expiring.set(false);
+            }
+          }
+        }).start();
+      }
+      return;
+    }
+    if (!written.getAndSet(false)) {
+      target.ping();
+    }
+  }
+
+}
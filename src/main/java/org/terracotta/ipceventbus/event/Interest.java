@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The names of the events a bus listens to, advertised to its remote peers so that they only send these events.
+ * <p>
+ * A bus having a listener for all the events wants all of them. Until a peer has advertised its interest, i.e. if it is
+ * of a previous version, it is sent all the events.
+ *
+ * @author Mathieu Carbou
+ */
+final class Interest {
+
+  static final Interest ALL = new Interest(true, Collections.<String>emptySet());
+
+  private final boolean all;
+  private final Set<String> names;
+
+  Interest(boolean all, Set<String> names) {
+    this.all = all;
+    this.names = names;
+  }
+
+  /**
+   * @return The interest of a bus having these listeners
+   */
+  static Interest of(boolean wildcard, Set<String> listened) {
+    if (wildcard) {
+      return ALL;
+    }
+    Set<String> names = new HashSet<String>(listened.size() * 2);
+    for (String name : listened) {
+      // internal events are never sent
+      if (!name.startsWith("eventbus.")) {
+        names.add(name);
+      }
+    }
+    return new Interest(false, names);
+  }
+
+  /**
+   * @return The events wanted by this interest or the other one
+   */
+  Interest union(Interest other) {
+    if (all || other.all) {
+      return ALL;
+    }
+    if (names.containsAll(other.names)) {
+      return this;
+    }
+    Set<String> union = new HashSet<String>(names);
+    union.addAll(other.names);
+    return new Interest(false, union);
+  }
+
+  boolean wants(String name) {
+    return all || names.contains(name);
+  }
+
+  boolean isAll() {
+    return all;
+  }
+
+  Set<String> getNames() {
+    return names;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof Interest)) return false;
+    Interest that = (Interest) o;
+    return all == that.all && names.equals(that.names);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * (all ? 1 : 0) + names.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return all ? "*" : names.toString();
+  }
+
+}
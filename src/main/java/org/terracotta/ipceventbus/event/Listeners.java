@@ -17,49 +17,213 @@
 
 package org.terracotta.ipceventbus.event;
 
-import java.util.Collection;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.stream.Collectors;
 
 /**
+ * Listener index of a bus.
+ * <p>
+ * The index is an immutable dispatch table which is rebuilt and swapped on each registration change, so that looking up
+ * the listeners of an event never allocates nor inserts anything. For each registered event name, the table holds the
+ * listeners of that name followed by the wildcard listeners, in the order they will be called.
+ * <p>
+ * {@link Slot}s are live views on the listeners of one name, kept up to date on each swap. They back the {@link Topic}s,
+ * and are only held weakly: the slot of a name is forgotten once no topic of this name is referenced anymore.
+ *
  * @author Mathieu Carbou
  */
 final class Listeners {
 
-  private final ConcurrentMap<String, Collection<EventListener>> index;
+  static final EventListener[] NONE = new EventListener[0];
+
+  private final Map<String, SlotReference> slots = new HashMap<String, SlotReference>();
+  private final ReferenceQueue<Slot> collected = new ReferenceQueue<Slot>();
+  private volatile Table table;
 
   Listeners(Listeners original) {
-    this.index = new ConcurrentHashMap<>(original.index.entrySet().stream().collect(Collectors.toMap(
-            Map.Entry::getKey,
-            e -> new CopyOnWriteArrayList<>(e.getValue()))));
+    this.table = original.table;
   }
 
   Listeners() {
-    this.index = new ConcurrentHashMap<>();
+    this.table = new Table(new HashMap<String, EventListener[]>(), NONE);
+  }
+
+  /**
+   * @return the listeners to call for this event: the ones registered for this name, then the wildcard ones
+   */
+  EventListener[] get(String event) {
+    Table t = table;
+    EventListener[] listeners = t.dispatch.get(event);
+    return listeners == null ? t.wildcard : listeners;
+  }
+
+  /**
+   * @return the slot holding the live listeners of this event, created if needed
+   */
+  synchronized Slot slot(String event) {
+    expunge();
+    SlotReference reference = slots.get(event);
+    Slot slot = reference == null ? null : reference.get();
+    if (slot == null) {
+      slot = new Slot(event, get(event));
+      slots.put(event, new SlotReference(slot, collected));
+    }
+    return slot;
+  }
+
+  /**
+   * @return The number of slots still referenced
+   */
+  synchronized int slots() {
+    expunge();
+    return slots.size();
+  }
+
+  /**
+   * @return The events having listeners, to be advertised to the remote peers
+   */
+  Interest interest() {
+    Table t = table;
+    return Interest.of(t.wildcard.length > 0, t.registered.keySet());
+  }
+
+  synchronized void add(String event, EventListener listener) {
+    Table t = table;
+    if (event.length() == 0) {
+      swap(new Table(t.registered, append(t.wildcard, listener)));
+    } else {
+      Map<String, EventListener[]> registered = new HashMap<String, EventListener[]>(t.registered);
+      EventListener[] current = registered.get(event);
+      registered.put(event, append(current == null ? NONE : current, listener));
+      swap(new Table(registered, t.wildcard));
+    }
+  }
+
+  synchronized void removeAll(String event) {
+    Table t = table;
+    if (event.length() == 0) {
+      swap(new Table(t.registered, NONE));
+    } else if (t.registered.containsKey(event)) {
+      Map<String, EventListener[]> registered = new HashMap<String, EventListener[]>(t.registered);
+      registered.remove(event);
+      swap(new Table(registered, t.wildcard));
+    }
+  }
+
+  synchronized void removeAll(EventListener listener) {
+    Table t = table;
+    Map<String, EventListener[]> registered = new HashMap<String, EventListener[]>();
+    for (Map.Entry<String, EventListener[]> entry : t.registered.entrySet()) {
+      EventListener[] remaining = remove(entry.getValue(), listener);
+      if (remaining.length > 0) {
+        registered.put(entry.getKey(), remaining);
+      }
+    }
+    swap(new Table(registered, remove(t.wildcard, listener)));
+  }
+
+  synchronized void remove(String event, EventListener listener) {
+    Table t = table;
+    if (event.length() == 0) {
+      swap(new Table(t.registered, remove(t.wildcard, listener)));
+    } else {
+      EventListener[] current = t.registered.get(event);
+      if (current != null) {
+        Map<String, EventListener[]> registered = new HashMap<String, EventListener[]>(t.registered);
+        EventListener[] remaining = remove(current, listener);
+        if (remaining.length > 0) {
+          registered.put(event, remaining);
+        } else {
+          registered.remove(event);
+        }
+        swap(new Table(registered, t.wildcard));
+      }
+    }
+  }
+
+  private void swap(Table t) {
+    table = t;
+    expunge();
+    for (SlotReference reference : slots.values()) {
+      Slot slot = reference.get();
+      if (slot != null) {
+        slot.listeners = get(slot.event);
+      }
+    }
+  }
+
+  // removes the slots of the topics no longer referenced
+  private void expunge() {
+    for (Reference<? extends Slot> reference = collected.poll(); reference != null; reference = collected.poll()) {
+      String event = ((SlotReference) reference).event;
+      if (slots.get(event) == reference) {
+        slots.remove(event);
+      }
+    }
   }
 
-  public Collection<EventListener> on(String event) {
-    this.index.putIfAbsent(event, new CopyOnWriteArrayList<EventListener>());
-    return this.index.get(event);
+  private static EventListener[] append(EventListener[] listeners, EventListener listener) {
+    EventListener[] copy = Arrays.copyOf(listeners, listeners.length + 1);
+    copy[listeners.length] = listener;
+    return copy;
   }
 
-  public void removeAll(String event) {
-    index.remove(event);
+  // removes the first occurrence only, like Collection.remove() did
+  private static EventListener[] remove(EventListener[] listeners, EventListener listener) {
+    for (int i = 0; i < listeners.length; i++) {
+      if (listeners[i].equals(listener)) {
+        if (listeners.length == 1) {
+          return NONE;
+        }
+        EventListener[] copy = new EventListener[listeners.length - 1];
+        System.arraycopy(listeners, 0, copy, 0, i);
+        System.arraycopy(listeners, i + 1, copy, i, copy.length - i);
+        return copy;
+      }
+    }
+    return listeners;
   }
 
-  public void removeAll(EventListener listener) {
-    for (Collection<EventListener> listeners : index.values()) {
-      listeners.remove(listener);
+  static final class Slot {
+    final String event;
+    volatile EventListener[] listeners;
+
+    private Slot(String event, EventListener[] listeners) {
+      this.event = event;
+      this.listeners = listeners;
     }
   }
 
-  public void remove(String event, EventListener listener) {
-    Collection<EventListener> listeners = index.get(event);
-    if (listeners != null) {
-      listeners.remove(listener);
+  private static final class SlotReference extends WeakReference<Slot> {
+    final String event;
+
+    SlotReference(Slot slot, ReferenceQueue<Slot> queue) {
+      super(slot, queue);
+      this.event = slot.event;
+    }
+  }
+
+  private static final class Table {
+    // listeners registered per event name, without the wildcard ones
+    final Map<String, EventListener[]> registered;
+    // listeners to call per event name: the registered ones followed by the wildcard ones
+    final Map<String, EventListener[]> dispatch;
+    final EventListener[] wildcard;
+
+    Table(Map<String, EventListener[]> registered, EventListener[] wildcard) {
+      this.registered = registered;
+      this.wildcard = wildcard;
+      this.dispatch = new HashMap<String, EventListener[]>(registered.size() * 2);
+      for (Map.Entry<String, EventListener[]> entry : registered.entrySet()) {
+        EventListener[] named = entry.getValue();
+        EventListener[] all = Arrays.copyOf(named, named.length + wildcard.length);
+        System.arraycopy(wildcard, 0, all, named.length, wildcard.length);
+        dispatch.put(entry.getKey(), all);
+      }
     }
   }
 }
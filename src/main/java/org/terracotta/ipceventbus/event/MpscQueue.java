@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An unbounded, lock-free queue for many producers and a single consumer.
+ * <p>
+ * Producers swap the tail and then link the previous tail to their node: a node which is being linked is not seen by
+ * the consumer yet, so {@link #poll()} can return null while a producer is still offering.
+ *
+ * @author Mathieu Carbou
+ */
+final class MpscQueue<E> {
+
+  private static final class Node<E> {
+    E value;
+    volatile Node<E> next;
+
+    Node(E value) {
+      this.value = value;
+    }
+  }
+
+  private final AtomicReference<Node<E>> tail;
+  private Node<E> head;
+
+  MpscQueue() {
+    head = new Node<E>(null);
+    tail = new AtomicReference<Node<E>>(head);
+  }
+
+  /**
+   * Can be called by any thread
+   */
+  void offer(E e) {
+    Node<E> node = new Node<E>(e);
+    tail.getAndSet(node).next = node;
+  }
+
+  /**
+   * Must only be called by the consumer thread
+   *
+   * @return The oldest element, or null
+   */
+  E poll() {
+    Node<E> next = head.next;
+    if (next == null) {
+      return null;
+    }
+    E e = next.value;
+    next.value = null;
+    head = next;
+    return e;
+  }
+
+  /**
+   * Must only be called by the consumer thread
+   */
+  boolean isEmpty() {
+    return head.next == null;
+  }
+
+}
@@ -0,0 +1,735 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A connection of the NIO transport, served by a {@link NioLoop}.
+ * <p>
+ * It speaks the same protocol as the blocking transport (see {@link Frames}), without any thread of its own:
+ * <ul>
+ * <li>Producers queue the events in an {@link OutboundQueue} and schedule a write on the loop if none is pending.
+ * The loop encodes the queued events into a buffer of up to the batch size and writes it to the channel. When the
+ * channel is full, it waits for the channel to be writable again while the events accumulate in the queue.</li>
+ * <li>The loop reads whatever bytes are available and decodes the complete frames, keeping the incomplete one for the
+ * next read. Until the peer switches to binary frames, its serialized events are accumulated and decoded again from
+ * the start of the stream at each read: this only lasts for the handshake, so the peers of previous versions, never
+ * switching, are not supported.</li>
+ * </ul>
+ *
+ * @author Mathieu Carbou
+ */
+final class NioConnection implements NioLoop.Handler, Connection {
+
+  interface Peer {
+    /**
+     * Called by the loop for each event received
+     */
+    void received(NioConnection connection, Event event);
+
+    /**
+     * Called by the loop each time the peer advertises a new interest
+     */
+    void interested(NioConnection connection);
+
+    /**
+     * Called by the loop each time the peer joins or leaves channels
+     */
+    void joined(NioConnection connection);
+
+    /**
+     * Called by the loop once the connection is closed
+     *
+     * @param cause The failure having closed the connection, a {@link SocketTimeoutException} if the peer stopped
+     *              answering the heartbeats, or null if it was closed by this side
+     */
+    void closed(NioConnection connection, IOException cause);
+  }
+
+  static final int PREAMBLE_LIMIT = 1024 * 1024;
+
+  private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+  private static final int READ_BUFFER_BYTES = 8 * 1024;
+
+  // queued to have the loop send the last advertised interest
+  private static final Object ADVERTISE = new Object();
+  // queued to have the loop send the channels joined
+  private static final Object JOIN = new Object();
+  // queued to have the loop acknowledge the last sequenced event received
+  private static final Object ACK = new Object();
+  // queued to have the loop send a heartbeat
+  private static final Object PING = new Object();
+  // queued to have the loop answer the last heartbeat received
+  private static final Object PONG = new Object();
+  // queued to have the loop grant the peer the events dispatched
+  private static final Object CREDIT = new Object();
+
+  private final String id;
+  private final SocketChannel channel;
+  private final NioLoop loop;
+  private final Peer peer;
+  private final EventCodec codec;
+  private final int batchBytes;
+  private final OutboundQueue queue;
+  private final boolean blocking;
+  private final boolean relay;
+  // the sessions of the reconnecting clients of a server, or null for a client
+  private final Sessions sessions;
+  private final Heartbeat heartbeat;
+  private final Credits credits;
+  private final Runnable granting = new Runnable() {
+    @Override
+    public void run() {
+      dispatched();
+    }
+  };
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final CountDownLatch closeLatch = new CountDownLatch(1);
+  private volatile boolean closed;
+  private volatile Interest advertised;
+  private volatile Interest peerInterest = Interest.ALL;
+  private volatile Set<String> channels;
+  private volatile Set<String> peerChannels = Collections.emptySet();
+
+  // only used by the loop thread
+  private SelectionKey key;
+  private final FrameOutput out = new FrameOutput();
+  private final ResettingObjectOutputStream objects;
+  private int written;
+  private EventCodec peerCodec;
+  // the strings sent to the peer, if it reads compact frames
+  private FrameDictionary sentNames;
+  private final FrameDictionary receivedNames = new FrameDictionary();
+  private boolean framing;
+  private boolean draining;
+  private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+  private FrameOutput preamble = new FrameOutput();
+  private int preambleEvents;
+  private EventCodec peerEncoding;
+  private final FrameInput frame = new FrameInput();
+  private Interest writtenInterest;
+  private Set<String> writtenChannels = Collections.emptySet();
+  private Sessions.Session session;
+  private long acked;
+  private final Acknowledgements acknowledgements = new Acknowledgements(new Runnable() {
+    @Override
+    public void run() {
+      if (!queue.isClosed()) {
+        queue.push(ACK);
+        schedule();
+      }
+    }
+  });
+  private long pinged;
+
+  /**
+   * @param sessions The sessions of the reconnecting clients of the server, or null for a client
+   */
+  NioConnection(String id, final SocketChannel channel, NioLoop loop, ConnectionOptions options, Sessions sessions, Peer peer) throws IOException {
+    this.id = id;
+    this.channel = channel;
+    this.loop = loop;
+    this.peer = peer;
+    this.codec = options.codec;
+    this.batchBytes = options.batchBytes;
+    this.queue = new OutboundQueue(options.outboundCapacity, options.overflow);
+    this.blocking = options.overflow == RemoteEventBus.SlowPeerPolicy.BLOCK;
+    this.relay = options.relay;
+    this.sessions = sessions;
+    this.credits = new Credits(options.creditWindow);
+    this.channels = options.channels;
+    // the stream header and the hello are the first bytes written
+    this.objects = new ResettingObjectOutputStream(out);
+    objects.send(new DefaultEvent(id, Frames.HELLO, Frames.decodable(codec, credits.window())));
+    objects.flush();
+    if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+      // the loop already groups the events: small frames, such as acknowledgements, must not wait for more
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+    channel.configureBlocking(false);
+    loop.execute(new NioLoop.Task(NioConnection.this) {
+      @Override
+      public void run() {
+        try {
+          key = NioConnection.this.loop.register(channel, SelectionKey.OP_READ, NioConnection.this);
+          write();
+        } catch (IOException e) {
+          failed(e);
+        }
+      }
+    });
+    this.heartbeat = Heartbeat.start(options, new Heartbeat.Target() {
+      @Override
+      public void ping() {
+        if (!closed && !queue.isClosed()) {
+          queue.push(PING);
+          schedule();
+        }
+      }
+
+      @Override
+      public void expired(final SocketTimeoutException e) {
+        NioConnection.this.loop.execute(new NioLoop.Task(NioConnection.this) {
+          @Override
+          public void run() {
+            // a peer not having sent its hello might be of a previous version
+            if (peerCodec != null) {
+              closeNow(e);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  InetSocketAddress getRemoteAddress() throws IOException {
+    return (InetSocketAddress) channel.getRemoteAddress();
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public boolean wants(String event) {
+    return peerInterest.wants(event);
+  }
+
+  @Override
+  public Interest getPeerInterest() {
+    return peerInterest;
+  }
+
+  @Override
+  public void sendInterest(Interest interest) {
+    advertised = interest;
+    if (!closed && !queue.isClosed()) {
+      queue.push(ADVERTISE);
+      schedule();
+    }
+  }
+
+  @Override
+  public Set<String> getPeerChannels() {
+    return peerChannels;
+  }
+
+  Set<String> getChannels() {
+    return channels;
+  }
+
+  /**
+   * Tells the server all the channels this client is a member of
+   */
+  void sendChannels(Set<String> channels) {
+    this.channels = channels;
+    if (!closed && !queue.isClosed()) {
+      queue.push(JOIN);
+      schedule();
+    }
+  }
+
+  @Override
+  public void sendRemote(OutboundEvent event) {
+    if (closed) {
+      return;
+    }
+    OutboundQueue.Offer offer;
+    if (blocking && NioLoop.inLoop()) {
+      // an I/O thread must never wait for a queue it might be the one to drain
+      if (queue.isClosed()) {
+        return;
+      }
+      queue.pushLast(event);
+      offer = OutboundQueue.Offer.QUEUED;
+    } else {
+      offer = queue.offer(event, event.key());
+    }
+    switch (offer) {
+      case QUEUED:
+        schedule();
+        break;
+      case OVERFLOWED:
+        abort(new IOException("Outbound queue full (" + queue.capacity() + " messages): disconnecting slow peer"));
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public long getRoundTripMicros() {
+    return heartbeat == null ? -1 : heartbeat.getRoundTripMicros();
+  }
+
+  @Override
+  public int getAvailableCredits() {
+    return credits.available();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queue.depth();
+  }
+
+  @Override
+  public long getDroppedEvents() {
+    return queue.dropped();
+  }
+
+  /**
+   * Closes the connection once the queued events are written, waiting for them to be written unless called by the loop
+   */
+  @Override
+  public void close() {
+    if (closed || queue.isClosed()) {
+      return;
+    }
+    queue.close();
+    loop.execute(new NioLoop.Task(NioConnection.this) {
+      @Override
+      public void run() {
+        draining = true;
+        try {
+          write();
+        } catch (IOException e) {
+          failed(e);
+        }
+      }
+    });
+    if (!NioLoop.inLoop()) {
+      try {
+        if (!closeLatch.await(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+          abort(null);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        abort(null);
+      }
+    }
+  }
+
+  /**
+   * Closes the connection without writing the queued events
+   *
+   * @param cause The reason, or null
+   */
+  void abort(final IOException cause) {
+    queue.close();
+    loop.execute(new NioLoop.Task(NioConnection.this) {
+      @Override
+      public void run() {
+        closeNow(cause);
+      }
+    });
+  }
+
+  @Override
+  public void ready(SelectionKey key) throws IOException {
+    if (key.isWritable()) {
+      write();
+    }
+    if (key.isValid() && key.isReadable()) {
+      read();
+    }
+  }
+
+  @Override
+  public void failed(IOException e) {
+    closeNow(e);
+  }
+
+  private void schedule() {
+    // the write task clears the flag before polling the queue
+    if (scheduled.compareAndSet(false, true)) {
+      loop.execute(new NioLoop.Task(NioConnection.this) {
+        @Override
+        public void run() {
+          scheduled.set(false);
+          try {
+            write();
+          } catch (IOException e) {
+            failed(e);
+          }
+        }
+      });
+    }
+  }
+
+  private void write() throws IOException {
+    if (closed || key == null) {
+      return;
+    }
+    while (true) {
+      // without credit, the events wait for the peer to grant some, but the control messages are still written
+      for (Object message = null; out.size() - written < batchBytes && (message = queue.poll(credits.ready())) != null; ) {
+        if (message == ADVERTISE) {
+          encodeInterest();
+        } else if (message == JOIN) {
+          encodeChannels();
+        } else if (message == ACK) {
+          encodeAck();
+        } else if (message == PING) {
+          encodeHeartbeat(Frames.PING, System.nanoTime());
+        } else if (message == PONG) {
+          encodeHeartbeat(Frames.PONG, pinged);
+        } else if (message == CREDIT) {
+          encodeCredit();
+        } else {
+          encode((OutboundEvent) message);
+        }
+      }
+      if (written == out.size()) {
+        break;
+      }
+      written += channel.write(ByteBuffer.wrap(out.buffer(), written, out.size() - written));
+      if (heartbeat != null) {
+        heartbeat.written();
+      }
+      if (written < out.size()) {
+        // the channel is full: wait for the peer to read
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        return;
+      }
+      out.reset();
+      written = 0;
+    }
+    key.interestOps(SelectionKey.OP_READ);
+    if (draining && queue.isEmpty()) {
+      closeNow(null);
+    }
+  }
+
+  private void encode(OutboundEvent message) throws IOException {
+    if (peerCodec == null) {
+      objects.send(message.event instanceof CallEvent ?
+          new DefaultEvent(id, Frames.CALL, Frames.callFrame(loop.scratch, (CallEvent) message.event)) :
+          new DefaultEvent(id, "eventbus.event", message.event));
+      objects.flush();
+      return;
+    }
+    switchToFrames();
+    if (message.shared) {
+      out.write(message.frame(peerCodec, loop.scratch));
+    } else {
+      message.encode(out, peerCodec, sentNames);
+    }
+    credits.consume();
+  }
+
+  /**
+   * Appends the last advertised interest, once the peer is known to read frames
+   */
+  private void encodeInterest() throws IOException {
+    Interest interest = advertised;
+    if (peerCodec == null || interest == writtenInterest) {
+      return;
+    }
+    switchToFrames();
+    Frames.writeInterest(out, interest);
+    writtenInterest = interest;
+  }
+
+  /**
+   * Appends the last channels joined, once the peer is known to read frames
+   */
+  private void encodeChannels() throws IOException {
+    Set<String> channels = this.channels;
+    if (peerCodec == null || channels == writtenChannels) {
+      return;
+    }
+    switchToFrames();
+    Frames.writeChannels(out, channels);
+    writtenChannels = channels;
+  }
+
+  private void encodeAck() throws IOException {
+    long last = session.last();
+    if (last > acked) {
+      switchToFrames();
+      Frames.writeAck(out, last);
+      acked = last;
+    }
+  }
+
+  /**
+   * Appends a credit frame granting the events dispatched since the last one
+   */
+  private void encodeCredit() throws IOException {
+    int events = credits.grant();
+    if (events > 0) {
+      switchToFrames();
+      Frames.writeCredit(out, events);
+    }
+  }
+
+  private void encodeHeartbeat(byte type, long nanos) throws IOException {
+    if (peerCodec != null) {
+      switchToFrames();
+      Frames.writeHeartbeat(out, type, nanos);
+    }
+  }
+
+  private void switchToFrames() throws IOException {
+    if (!framing) {
+      objects.send(new DefaultEvent(id, Frames.SWITCH, peerCodec.getName()));
+      objects.flush();
+      framing = true;
+    }
+  }
+
+  private void read() throws IOException {
+    if (channel.read(in) < 0) {
+      throw new EOFException("Connection closed by the peer");
+    }
+    if (heartbeat != null) {
+      heartbeat.read();
+    }
+    in.flip();
+    try {
+      if (peerEncoding == null) {
+        readPreamble();
+      }
+      if (peerEncoding != null) {
+        readFrames();
+      }
+    } finally {
+      in.compact();
+      if (in.position() == 0 && in.capacity() > Frames.RETAINED_BUFFER_BYTES) {
+        // the large frames read, no partial frame is waiting in the buffer
+        in = ByteBuffer.allocate(READ_BUFFER_BYTES);
+      }
+    }
+  }
+
+  /**
+   * Decodes the serialized events received so far, until the peer switches to binary frames
+   */
+  private void readPreamble() throws IOException {
+    preamble.write(in.array(), in.arrayOffset() + in.position(), in.remaining());
+    in.position(in.limit());
+    ByteArrayInputStream bytes = new ByteArrayInputStream(preamble.buffer(), 0, preamble.size());
+    try {
+      ObjectInputStream objects = new ObjectInputStream(bytes);
+      for (int i = 0; !closed; i++) {
+        Event event = (Event) objects.readObject();
+        if (i < preambleEvents) {
+          // already handled at a previous read
+          continue;
+        }
+        preambleEvents++;
+        if (i == 0 && !Frames.HELLO.equals(event.getName())) {
+          throw new StreamCorruptedException("Peer not announcing any codec: peers of previous versions are not supported by the NIO transport");
+        }
+        if ("eventbus.event".equals(event.getName())) {
+          peer.received(this, event.getData(Event.class));
+        } else if (Frames.CALL.equals(event.getName())) {
+          peer.received(this, Frames.readCall(event.getData(byte[].class), this));
+        } else if (Frames.HELLO.equals(event.getName())) {
+          // before the writer sees the codec: the frames it writes from then on consume the window of the peer
+          credits.limit(Frames.window(event.getData()));
+          peerCodec = Frames.negotiate(codec, event.getData());
+          sentNames = Frames.supports(event.getData(), Frames.DICTIONARY) ? new FrameDictionary() : null;
+          if (peerCodec == null) {
+            throw new StreamCorruptedException("Peer not sharing any codec: " + event.getData());
+          }
+          if (advertised != null) {
+            // the interest could not be sent before knowing that the peer reads frames
+            sendInterest(advertised);
+          }
+          if (!channels.isEmpty()) {
+            sendChannels(channels);
+          }
+        } else if (Frames.SWITCH.equals(event.getName())) {
+          peerEncoding = Frames.resolve(codec, event.getData());
+          // the bytes following the switch are frames
+          int consumed = preamble.size() - bytes.available();
+          int remaining = preamble.size() - consumed;
+          in.clear();
+          if (remaining > in.capacity()) {
+            in = ByteBuffer.allocate(remaining);
+          }
+          in.put(preamble.buffer(), consumed, remaining);
+          in.flip();
+          preamble = null;
+          return;
+        }
+      }
+    } catch (EOFException incomplete) {
+      if (preamble.size() > PREAMBLE_LIMIT) {
+        throw new StreamCorruptedException("Peer not switching to binary frames after " + preamble.size() + " bytes");
+      }
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private void readFrames() throws IOException {
+    while (!closed && in.remaining() >= 4) {
+      int length = Frames.checkLength(in.getInt(in.position()));
+      if (in.remaining() - 4 < length) {
+        if (4 + length > in.capacity()) {
+          // make room for the whole frame
+          ByteBuffer bigger = ByteBuffer.allocate(Math.max(4 + length, in.capacity() * 2));
+          bigger.put(in);
+          bigger.flip();
+          in = bigger;
+        }
+        break;
+      }
+      frame.reset(in.array(), in.arrayOffset() + in.position() + 4, length);
+      in.position(in.position() + 4 + length);
+      byte type = frame.readByte();
+      FrameDictionary names = (type & Frames.COMPACT) == 0 ? null : receivedNames;
+      type &= ~Frames.COMPACT;
+      if (type == Frames.EVENT) {
+        readEvent(names);
+      } else if (type == Frames.SEQUENCED_EVENT) {
+        if (session == null || session.accept(frame.readLong())) {
+          readEvent(names);
+        } else {
+          if (names != null) {
+            // an event received twice may still define its source and name
+            names.read(frame);
+            names.read(frame);
+          }
+          dispatched();
+        }
+        if (session != null) {
+          acknowledgements.received();
+        }
+      } else if (type == Frames.REQUEST || type == Frames.REPLY) {
+        readCall(type);
+      } else if (type == Frames.RESUME && sessions != null) {
+        session = sessions.resume(frame.readString());
+      } else if (type == Frames.PING) {
+        pinged = frame.readLong();
+        if (!queue.isClosed()) {
+          queue.push(PONG);
+          schedule();
+        }
+      } else if (type == Frames.PONG) {
+        if (heartbeat != null) {
+          heartbeat.pong(frame.readLong());
+        }
+      } else if (type == Frames.CREDIT) {
+        credits.granted(frame.readInt());
+        schedule();
+      } else if (type == Frames.INTEREST) {
+        peerInterest = Frames.readInterest(frame);
+        peer.interested(this);
+      } else if (type == Frames.CHANNELS) {
+        peerChannels = Frames.readChannels(frame);
+        peer.joined(this);
+      }
+    }
+    acknowledgements.idle();
+  }
+
+  // the event is granted again to the peer once dispatched
+  private void receive(Event event) {
+    if (credits.window() == 0) {
+      peer.received(this, event);
+    } else {
+      Dispatcher.receiving(granting);
+      try {
+        peer.received(this, event);
+      } finally {
+        Dispatcher.received();
+      }
+    }
+  }
+
+  // called once an event has been called by the listeners or discarded, possibly by a thread of the dispatcher
+  private void dispatched() {
+    if (credits.received() && !queue.isClosed()) {
+      queue.push(CREDIT);
+      schedule();
+    }
+  }
+
+  private void readEvent(FrameDictionary names) throws IOException {
+    try {
+      receive(relay ? Frames.readRelayed(frame, peerEncoding, names) : Frames.readEvent(frame, peerEncoding, names));
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private void readCall(byte type) throws IOException {
+    try {
+      receive(type == Frames.REQUEST ? Frames.readRequest(frame, peerEncoding, this) : Frames.readReply(frame, peerEncoding));
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Called by the loop
+   */
+  private void closeNow(IOException cause) {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    queue.close();
+    if (heartbeat != null) {
+      heartbeat.stop();
+    }
+    if (key != null) {
+      key.cancel();
+    }
+    try {
+      channel.close();
+    } catch (IOException ignored) {
+    }
+    try {
+      peer.closed(this, cause);
+    } finally {
+      closeLatch.countDown();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "NioConnection:" + id;
+  }
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+
+/**
+ * A client served by its own {@link NioLoop}
+ *
+ * @author Mathieu Carbou
+ */
+final class NioEventBusClient extends DefaultEventBus implements EventBusClient {
+
+  private final NioLoop loop;
+  private final NioConnection connection;
+  private Interest advertised;
+  private final SocketAddress server;
+
+  NioEventBusClient(String uuid, SocketChannel channel, ErrorListener errorListener, Listeners listeners, Dispatcher dispatcher, ConnectionOptions connectionOptions) throws IOException {
+    super(uuid, errorListener, listeners, dispatcher);
+    this.server = channel.getRemoteAddress();
+    this.loop = new NioLoop("nio@" + uuid);
+    try {
+      this.connection = new NioConnection(uuid, channel, loop, connectionOptions, null, new NioConnection.Peer() {
+        @Override
+        public void received(NioConnection connection, Event event) {
+          sendLocal(event);
+        }
+
+        @Override
+        public void interested(NioConnection connection) {
+        }
+
+        @Override
+        public void joined(NioConnection connection) {
+        }
+
+        @Override
+        public void closed(NioConnection connection, IOException cause) {
+          if (cause != null) {
+            sendLocal(new DefaultEvent(getId(), cause instanceof SocketTimeoutException ? "eventbus.client.timeout" : "eventbus.client.error", cause));
+          }
+          sendLocal(new DefaultEvent(getId(), "eventbus.client.disconnect"));
+          NioEventBusClient.this.dispatcher.close();
+          loop.close();
+        }
+      });
+    } catch (IOException e) {
+      loop.close();
+      throw e;
+    }
+    listenersChanged();
+  }
+
+  @Override
+  public void trigger(String name, Object data) {
+    Assert.legalEventName(name);
+    Assert.notInternalName(name);
+    Event event = new DefaultEvent(getId(), name, data);
+    sendLocal(event);
+    if (connection.wants(event.getName())) {
+      connection.sendRemote(new OutboundEvent(event, null, false));
+    }
+  }
+
+  @Override
+  void trigger(DefaultTopic topic, Object data) {
+    Event event = new DefaultEvent(getId(), topic.getName(), System.currentTimeMillis(), data);
+    sendLocal(event, topic.getListeners());
+    if (connection.wants(event.getName())) {
+      connection.sendRemote(new OutboundEvent(event, topic.getEncodedName(), false));
+    }
+  }
+
+  @Override
+  boolean sendRequest(Request request) {
+    if (isClosed() || !connection.wants(request.getName())) {
+      return false;
+    }
+    connection.sendRemote(new OutboundEvent(request, null, false));
+    return true;
+  }
+
+  @Override
+  synchronized void listenersChanged() {
+    Interest interest = listeners.interest();
+    if (!interest.equals(advertised)) {
+      advertised = interest;
+      connection.sendInterest(interest);
+    }
+  }
+
+  @Override
+  public synchronized void join(String channel) {
+    connection.sendChannels(Channels.with(connection.getChannels(), channel));
+  }
+
+  @Override
+  public synchronized void leave(String channel) {
+    connection.sendChannels(Channels.without(connection.getChannels(), channel));
+  }
+
+  @Override
+  public Set<String> getChannels() {
+    return connection.getChannels();
+  }
+
+  @Override
+  public int getServerPort() {
+    return server instanceof InetSocketAddress ? ((InetSocketAddress) server).getPort() : -1;
+  }
+
+  @Override
+  public String getServerHost() {
+    return server instanceof InetSocketAddress ? ((InetSocketAddress) server).getHostName() : "localhost";
+  }
+
+  @Override
+  public boolean isClosed() {
+    return connection.isClosed();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return connection.getQueueDepth();
+  }
+
+  @Override
+  public long getDroppedEvents() {
+    return connection.getDroppedEvents();
+  }
+
+  @Override
+  public long getRoundTripMicros() {
+    return connection.getRoundTripMicros();
+  }
+
+  @Override
+  public int getAvailableCredits() {
+    return connection.getAvailableCredits();
+  }
+
+  @Override
+  public void close() {
+    connection.close();
+  }
+
+  @Override
+  public String toString() {
+    return EventBusClient.class.getSimpleName() + ":" + getId();
+  }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A server serving all its clients with a fixed number of {@link NioLoop}s: the first loop also accepts the connections,
+ * which are spread over the loops. The server channel is either a TCP or a Unix domain socket one.
+ *
+ * @author Mathieu Carbou
+ */
+final class NioEventBusServer extends AbstractEventBusServer {
+
+  private final ServerSocketChannel serverChannel;
+  private final SocketAddress address;
+  private final ConnectionOptions connectionOptions;
+  private final NioLoop[] loops;
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private int next;
+  private long accepted;
+
+  NioEventBusServer(String uuid, final ServerSocketChannel serverChannel, ErrorListener errorListener, Listeners listeners, Dispatcher dispatcher, ConnectionOptions connectionOptions) throws IOException {
+    super(uuid, errorListener, listeners, dispatcher, connectionOptions.relay);
+    this.serverChannel = serverChannel;
+    this.address = serverChannel.getLocalAddress();
+    this.connectionOptions = connectionOptions;
+    this.loops = new NioLoop[connectionOptions.ioThreads];
+    try {
+      for (int i = 0; i < loops.length; i++) {
+        loops[i] = new NioLoop("nio-" + i + "@" + uuid);
+      }
+    } catch (IOException e) {
+      closeLoops();
+      throw e;
+    }
+    serverChannel.configureBlocking(false);
+    final CountDownLatch listening = new CountDownLatch(1);
+    final IOException[] failure = new IOException[1];
+    loops[0].execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          loops[0].register(serverChannel, SelectionKey.OP_ACCEPT, new NioLoop.Handler() {
+            @Override
+            public void ready(SelectionKey key) throws IOException {
+              accept();
+            }
+
+            @Override
+            public void failed(IOException e) {
+              close();
+            }
+          });
+        } catch (IOException e) {
+          failure[0] = e;
+        }
+        listening.countDown();
+      }
+    });
+    try {
+      listening.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+    if (failure[0] != null) {
+      close();
+      throw failure[0];
+    }
+  }
+
+  // called by the first loop
+  private void accept() throws IOException {
+    for (SocketChannel channel = serverChannel.accept(); channel != null; channel = serverChannel.accept()) {
+      SocketAddress peer = channel.getRemoteAddress();
+      // Unix domain socket clients are unnamed, and the host is not resolved: a reverse lookup would block the loop
+      String id = peer instanceof InetSocketAddress ?
+          ((InetSocketAddress) peer).getHostString() + ":" + ((InetSocketAddress) peer).getPort() :
+          getId() + "#" + ++accepted;
+      NioLoop loop = loops[next++ % loops.length];
+      final NioConnection connection;
+      try {
+        connection = new NioConnection(id, channel, loop, connectionOptions, getSessions(), new NioConnection.Peer() {
+          @Override
+          public void received(NioConnection connection, Event event) {
+            NioEventBusServer.this.received(connection, event);
+          }
+
+          @Override
+          public void interested(NioConnection connection) {
+            interestChanged();
+          }
+
+          @Override
+          public void joined(NioConnection connection) {
+            channelsChanged(connection);
+          }
+
+          @Override
+          public void closed(NioConnection connection, IOException cause) {
+            disconnected(connection);
+            if (cause != null) {
+              sendLocal(new DefaultEvent(connection.getId(), cause instanceof SocketTimeoutException ? "eventbus.client.timeout" : "eventbus.client.error", cause));
+            }
+            sendLocal(new DefaultEvent(connection.getId(), "eventbus.client.disconnect"));
+          }
+        });
+      } catch (IOException e) {
+        channel.close();
+        continue;
+      }
+      connected(connection);
+    }
+  }
+
+  @Override
+  public int getServerPort() {
+    return address instanceof InetSocketAddress ? ((InetSocketAddress) address).getPort() : -1;
+  }
+
+  @Override
+  public String getServerHost() {
+    return address instanceof InetSocketAddress ? ((InetSocketAddress) address).getAddress().getHostName() : "localhost";
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed.get();
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      try {
+        serverChannel.close();
+      } catch (IOException ignored) {
+      }
+      UnixSockets.unlink(address);
+      closeClients();
+      closeLoops();
+      sendLocal(new DefaultEvent(getId(), "eventbus.server.close"));
+      dispatcher.close();
+    }
+  }
+
+  private void closeLoops() {
+    for (NioLoop loop : loops) {
+      if (loop != null) {
+        loop.close();
+      }
+    }
+  }
+
+}
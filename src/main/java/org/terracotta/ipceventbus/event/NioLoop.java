@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An I/O thread of the NIO transport: it waits on a {@link Selector} for the channels registered with it to be ready
+ * and runs the tasks submitted by the other threads.
+ * <p>
+ * The channels are only touched by their loop, so handlers need no locking. Tasks are queued without locking and the
+ * selector is only woken up by the first task submitted since it last woke up.
+ *
+ * @author Mathieu Carbou
+ */
+final class NioLoop {
+
+  interface Handler {
+    /**
+     * Called by the loop when the channel is ready for the operations it is interested in
+     */
+    void ready(SelectionKey key) throws IOException;
+
+    /**
+     * Called by the loop when {@link #ready(SelectionKey)} failed
+     */
+    void failed(IOException e);
+  }
+
+  /**
+   * A task run on behalf of a handler, which fails if the task throws, instead of the other handlers of the loop
+   */
+  abstract static class Task implements Runnable {
+    private final Handler owner;
+
+    Task(Handler owner) {
+      this.owner = owner;
+    }
+  }
+
+  private static final ThreadLocal<NioLoop> CURRENT = new ThreadLocal<NioLoop>();
+
+  /**
+   * A buffer for the handlers of this loop to encode frames, only used by the loop thread
+   */
+  final FrameOutput scratch = new FrameOutput();
+
+  private final Selector selector;
+  private final Thread thread;
+  private final MpscQueue<Runnable> tasks = new MpscQueue<Runnable>();
+  private final AtomicBoolean wakingUp = new AtomicBoolean();
+  private volatile boolean closed;
+
+  NioLoop(String name) throws IOException {
+    this.selector = Selector.open();
+    this.thread = new Thread(name) {
+      @Override
+      public void run() {
+        CURRENT.set(NioLoop.this);
+        loop();
+      }
+    };
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /**
+   * @return true if the current thread is the thread of an I/O loop, which must never block
+   */
+  static boolean inLoop() {
+    return CURRENT.get() != null;
+  }
+
+  /**
+   * Runs a task on this loop. Can be called by any thread.
+   */
+  void execute(Runnable task) {
+    tasks.offer(task);
+    // the loop clears the flag before running the tasks
+    if (wakingUp.compareAndSet(false, true)) {
+      selector.wakeup();
+    }
+  }
+
+  /**
+   * Must be called by this loop
+   */
+  SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws IOException {
+    return channel.register(selector, ops, handler);
+  }
+
+  /**
+   * Stops the loop: the channels still registered with it are not closed
+   */
+  void close() {
+    if (!closed) {
+      closed = true;
+      selector.wakeup();
+    }
+  }
+
+  private void loop() {
+    try {
+      while (!closed) {
+        selector.select();
+        wakingUp.set(false);
+        for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+          try {
+            task.run();
+          } catch (CancelledKeyException ignored) {
+            // closed by a previous task of this loop
+          } catch (RuntimeException e) {
+            // i.e. a codec failing to encode an event: only the connection of the task is closed
+            if (task instanceof Task) {
+              ((Task) task).owner.failed(new IOException(e));
+            }
+          }
+        }
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          Handler handler = (Handler) key.attachment();
+          try {
+            handler.ready(key);
+          } catch (IOException e) {
+            handler.failed(e);
+          } catch (CancelledKeyException ignored) {
+            // closed by a task of this loop
+          } catch (RuntimeException e) {
+            // i.e. thrown by a listener: only the connection of the handler is closed, not all the connections of this loop
+            handler.failed(new IOException(e));
+          }
+        }
+      }
+    } catch (IOException ignored) {
+      // the selector is broken: the channels will not be served anymore
+    } finally {
+      try {
+        selector.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+
+/**
+ * An event waiting in the outbox of a remote bus.
+ * <p>
+ * An event broadcast by a server is shared by the outboxes of all its clients: its frame is encoded by the first writer
+ * needing it and the same bytes are then written to all the sockets using the same codec. An event relayed by a server
+ * reuses the frame it was received in.
+ *
+ * @author Mathieu Carbou
+ */
+final class OutboundEvent {
+
+  final Event event;
+  final byte[] encodedName;
+  final boolean shared;
+  // the sequence number of an event of a reconnecting client, or 0
+  final long seq;
+
+  // the peers use the configured codec, or the binary codec when they do not know it
+  private EventCodec codec;
+  private byte[] frame;
+  private EventCodec otherCodec;
+  private byte[] otherFrame;
+
+  /**
+   * @param encodedName The UTF-8 bytes of the event name if already known, or null
+   * @param shared      true if this event is sent to several peers
+   */
+  OutboundEvent(Event event, byte[] encodedName, boolean shared) {
+    this(event, encodedName, shared, 0);
+  }
+
+  /**
+   * Creates an event sent by a reconnecting client
+   *
+   * @param seq The sequence number of the event in the session of the client
+   */
+  OutboundEvent(Event event, byte[] encodedName, long seq) {
+    this(event, encodedName, false, seq);
+  }
+
+  private OutboundEvent(Event event, byte[] encodedName, boolean shared, long seq) {
+    this.event = event;
+    this.encodedName = encodedName;
+    this.shared = shared;
+    this.seq = seq;
+  }
+
+  /**
+   * Creates an event to forward to other peers, sharing the frame it was received in
+   */
+  OutboundEvent(RelayedEvent event) {
+    this(event, null, true);
+    this.codec = event.getCodec();
+    this.frame = event.getFrame();
+  }
+
+  /**
+   * @param scratch A buffer of the calling writer, used to encode the frame if needed
+   * @return The event frame encoded with the given codec. The frames of the first two codecs asked are kept.
+   */
+  synchronized byte[] frame(EventCodec codec, FrameOutput scratch) throws IOException {
+    if (this.codec == codec) {
+      return frame;
+    }
+    if (otherCodec == codec) {
+      return otherFrame;
+    }
+    scratch.reset();
+    encode(scratch, codec, null);
+    byte[] bytes = scratch.toByteArray();
+    if (this.codec == null) {
+      this.codec = codec;
+      this.frame = bytes;
+    } else if (otherCodec == null) {
+      otherCodec = codec;
+      otherFrame = bytes;
+    }
+    return bytes;
+  }
+
+  /**
+   * Appends the frame of this event
+   *
+   * @param names The dictionary of the strings sent to the peer, or null. The frames of the calls are never compact.
+   */
+  void encode(FrameOutput out, EventCodec codec, FrameDictionary names) throws IOException {
+    if (event instanceof Request) {
+      Frames.writeRequest(out, codec, (Request) event);
+    } else if (event instanceof Reply) {
+      Frames.writeReply(out, codec, (Reply) event);
+    } else {
+      Frames.writeEvent(out, codec, event, encodedName, seq, names);
+    }
+  }
+
+  /**
+   * @return The key of this event when coalescing: the events of a call are never replaced
+   */
+  Object key() {
+    return event instanceof CallEvent ? this : event.getName();
+  }
+
+}
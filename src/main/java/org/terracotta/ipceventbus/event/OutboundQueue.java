@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The bounded queue of the messages waiting to be written to a peer, filled by any number of producers and drained by
+ * a single consumer.
+ * <p>
+ * When the queue is full, the {@link RemoteEventBus.SlowPeerPolicy} decides what happens to the message being queued.
+ * The control messages are queued apart and polled first, so that they are not delayed by the events waiting for the
+ * peer to grant some credit. When coalescing, the messages are kept by key in a map until the consumer has caught up: a message replaces the
+ * waiting one having the same key, and the map is drained once the queue is empty, so that the messages of a producer
+ * stay in order.
+ *
+ * @author Mathieu Carbou
+ */
+final class OutboundQueue {
+
+  enum Offer {
+    QUEUED,
+    /**
+     * The queue is closed or the message was discarded
+     */
+    REJECTED,
+    /**
+     * The queue is full and the peer must be disconnected
+     */
+    OVERFLOWED
+  }
+
+  private static final long BLOCK_PARK_NANOS = 50_000;
+
+  private final MpscQueue<Object> queue = new MpscQueue<Object>();
+  private final MpscQueue<Object> controls = new MpscQueue<Object>();
+  private final AtomicInteger queued = new AtomicInteger();
+  private final AtomicLong dropped = new AtomicLong();
+  private final Map<Object, Object> coalesced = new LinkedHashMap<Object, Object>();
+  private final int capacity;
+  private final RemoteEventBus.SlowPeerPolicy overflow;
+  private volatile boolean coalescing;
+  private volatile boolean closed;
+
+  OutboundQueue(int capacity, RemoteEventBus.SlowPeerPolicy overflow) {
+    this.capacity = capacity;
+    this.overflow = overflow;
+  }
+
+  /**
+   * @param key The key of the message, used when coalescing
+   */
+  Offer offer(Object message, Object key) {
+    if (closed) {
+      return Offer.REJECTED;
+    }
+    if (coalescing && coalesce(message, key)) {
+      return Offer.QUEUED;
+    }
+    while (queued.incrementAndGet() > capacity) {
+      queued.decrementAndGet();
+      switch (overflow) {
+        case BLOCK:
+          if (closed) {
+            return Offer.REJECTED;
+          }
+          LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+          break;
+        case DROP_NEWEST:
+          dropped.incrementAndGet();
+          return Offer.REJECTED;
+        case COALESCE:
+          if (coalesce(message, key)) {
+            return Offer.QUEUED;
+          }
+          break;
+        case DISCONNECT:
+          dropped.incrementAndGet();
+          return Offer.OVERFLOWED;
+        default:
+          throw new AssertionError(overflow);
+      }
+    }
+    queue.offer(message);
+    return Offer.QUEUED;
+  }
+
+  /**
+   * Queues a control message, even if the queue is full or closed, to be polled before the other messages
+   */
+  void push(Object message) {
+    queued.incrementAndGet();
+    controls.offer(message);
+  }
+
+  /**
+   * Queues a message after the waiting ones, even if the queue is full or closed
+   */
+  void pushLast(Object message) {
+    queued.incrementAndGet();
+    queue.offer(message);
+  }
+
+  /**
+   * Called by the consumer
+   *
+   * @return The next message, or null
+   */
+  Object poll() {
+    return poll(true);
+  }
+
+  /**
+   * Called by the consumer
+   *
+   * @param all false to only poll the control messages
+   * @return The next message, or null
+   */
+  Object poll(boolean all) {
+    Object message = controls.poll();
+    if (message != null) {
+      queued.decrementAndGet();
+      return message;
+    }
+    if (!all) {
+      return null;
+    }
+    message = queue.poll();
+    if (message != null) {
+      queued.decrementAndGet();
+      return message;
+    }
+    if (coalescing) {
+      synchronized (coalesced) {
+        Iterator<Object> it = coalesced.values().iterator();
+        if (it.hasNext()) {
+          message = it.next();
+          it.remove();
+        } else {
+          coalescing = false;
+        }
+      }
+    }
+    return message;
+  }
+
+  /**
+   * Called by the consumer
+   */
+  boolean isEmpty() {
+    return controls.isEmpty() && queue.isEmpty() && !coalescing;
+  }
+
+  /**
+   * Called by the consumer
+   */
+  boolean hasControls() {
+    return !controls.isEmpty();
+  }
+
+  /**
+   * Rejects the messages offered from now on and releases the blocked producers
+   */
+  void close() {
+    closed = true;
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * @return The number of messages waiting
+   */
+  int depth() {
+    int depth = queued.get();
+    if (coalescing) {
+      synchronized (coalesced) {
+        depth += coalesced.size();
+      }
+    }
+    return depth;
+  }
+
+  /**
+   * @return The number of messages discarded because the queue was full
+   */
+  long dropped() {
+    return dropped.get();
+  }
+
+  /**
+   * @return false if the consumer has just emptied the map: the message must be queued instead
+   */
+  private boolean coalesce(Object message, Object key) {
+    synchronized (coalesced) {
+      if (!coalescing && queued.get() < capacity) {
+        return false;
+      }
+      coalescing = true;
+      if (coalesced.put(key, message) != null) {
+        dropped.incrementAndGet();
+      }
+    }
+    return true;
+  }
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import org.terracotta.ipceventbus.Daemons;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The outbound pipeline of a connection.
+ * <p>
+ * Producers queue the messages in a lock-free {@link OutboundQueue} and a single writer thread writes them to a
+ * buffered stream, so that producers never block on the socket and never interleave their frames. The stream is
+ * flushed once no more messages are waiting or, with a linger time, once this time has elapsed since the first
+ * buffered message. The stream is also written to the socket when its buffer is full. The writer parks when idle and
+ * is only unparked by the producers in that case. While the peer grants no credit, the events wait in the queue and
+ * only the control messages are written.
+ *
+ * @author Mathieu Carbou
+ */
+final class Outbox {
+
+  interface Writer {
+    /**
+     * @return false while the events must wait, i.e. for the peer to grant some credit
+     */
+    boolean ready();
+
+    void write(Object message) throws IOException;
+
+    void flush() throws IOException;
+
+    /**
+     * Called by the writer thread when it cannot write anymore: the socket failed, or a message could not be encoded,
+     * in which case a frame might have been partly written
+     */
+    void failed(Exception e);
+
+    /**
+     * Called by a producer when the queue is full and the peer is to be disconnected: the writer thread might be
+     * blocked writing to the peer and must be released
+     */
+    void overflowed(IOException e);
+  }
+
+  private static final Object STOP = new Object();
+
+  private final OutboundQueue queue;
+  private final Writer writer;
+  private final long lingerNanos;
+  private final Thread thread;
+  private volatile boolean waiting;
+  private volatile boolean aborted;
+  private volatile IOException failure;
+
+  Outbox(String name, long lingerNanos, int capacity, RemoteEventBus.SlowPeerPolicy overflow, Writer writer) {
+    this.queue = new OutboundQueue(capacity, overflow);
+    this.writer = writer;
+    this.lingerNanos = lingerNanos;
+    this.thread = Daemons.newThread(name, new Runnable() {
+      @Override
+      public void run() {
+        drain();
+      }
+    });
+    this.thread.start();
+  }
+
+  /**
+   * @param key The key of the message, used when coalescing
+   * @return false if the outbox is closed or if the message was discarded
+   */
+  boolean offer(Object message, Object key) {
+    switch (queue.offer(message, key)) {
+      case QUEUED:
+        if (waiting) {
+          LockSupport.unpark(thread);
+        }
+        return true;
+      case OVERFLOWED:
+        failure = new IOException("Outbound queue full (" + queue.capacity() + " messages): disconnecting slow peer");
+        abort();
+        writer.overflowed(failure);
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Queues a control message, even if the queue is full
+   */
+  void push(Object message) {
+    if (!queue.isClosed()) {
+      queue.push(message);
+      if (waiting) {
+        LockSupport.unpark(thread);
+      }
+    }
+  }
+
+  /**
+   * Wakes the writer up once it can write the waiting events again
+   */
+  void wake() {
+    if (waiting) {
+      LockSupport.unpark(thread);
+    }
+  }
+
+  /**
+   * @return The number of messages waiting to be written
+   */
+  int depth() {
+    return queue.depth();
+  }
+
+  /**
+   * @return The number of messages discarded because the queue was full
+   */
+  long dropped() {
+    return queue.dropped();
+  }
+
+  /**
+   * Stops accepting messages and waits for the queued ones to be written
+   *
+   * @param timeoutMillis The maximum time to wait
+   */
+  void close(long timeoutMillis) {
+    if (!queue.isClosed()) {
+      queue.close();
+      queue.pushLast(STOP);
+      LockSupport.unpark(thread);
+      if (Thread.currentThread() != thread) {
+        try {
+          thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+          // still waiting for some credit, or for the socket
+          abort();
+        }
+      }
+    }
+  }
+
+  /**
+   * Stops accepting messages and discards the queued ones
+   */
+  void abort() {
+    queue.close();
+    aborted = true;
+    LockSupport.unpark(thread);
+  }
+
+  private void drain() {
+    try {
+      while (true) {
+        Object message = await(false, 0);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (message != null) {
+          if (message == STOP) {
+            // nothing can be queued anymore, but some messages might still be waiting to be coalesced
+            for (Object last = queue.poll(); last != null; last = queue.poll()) {
+              writer.write(last);
+            }
+            writer.flush();
+            return;
+          }
+          writer.write(message);
+          message = queue.poll(writer.ready());
+          if (message == null && lingerNanos > 0) {
+            message = await(true, deadline);
+          }
+        }
+        if (aborted) {
+          break;
+        }
+        writer.flush();
+      }
+    } catch (IOException e) {
+      if (!aborted) {
+        writer.failed(e);
+        return;
+      }
+    } catch (RuntimeException e) {
+      // i.e. a codec failing to encode an event, or its data being modified meanwhile
+      if (!aborted) {
+        writer.failed(e);
+        return;
+      }
+    }
+    if (failure != null) {
+      writer.failed(failure);
+    }
+  }
+
+  /**
+   * @return The next message, or null if the deadline has passed or if the outbox is aborted
+   */
+  private Object await(boolean timed, long deadline) {
+    while (true) {
+      if (aborted || Thread.currentThread().isInterrupted()) {
+        aborted = true;
+        return null;
+      }
+      Object message = queue.poll(writer.ready());
+      if (message != null) {
+        return message;
+      }
+      waiting = true;
+      // a producer queuing a message, or the peer granting some credit, from now on sees the writer waiting and unparks it
+      if (queue.isEmpty() || !queue.hasControls() && !writer.ready()) {
+        if (!timed) {
+          LockSupport.park(this);
+        } else {
+          long wait = deadline - System.nanoTime();
+          if (wait <= 0) {
+            waiting = false;
+            return null;
+          }
+          LockSupport.parkNanos(this, wait);
+        }
+      }
+      waiting = false;
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.function.Function;
+
+/**
+ * Dispatches events on several single-threaded lanes, chosen by hashing a key of the event.
+ * Events having the same key are called in order, on the same lane.
+ *
+ * @author Mathieu Carbou
+ */
+final class PartitionedDispatcher extends Dispatcher {
+
+  private final QueuedDispatcher[] lanes;
+  private final Function<? super Event, ?> key;
+
+  PartitionedDispatcher(int lanes, int capacity, Overflow overflow, Function<? super Event, ?> key) {
+    if (lanes <= 0) throw new IllegalArgumentException("Bad lane count: " + lanes);
+    if (key == null) throw new NullPointerException("Key function is null");
+    this.key = key;
+    this.lanes = new QueuedDispatcher[lanes];
+    for (int i = 0; i < lanes; i++) {
+      this.lanes[i] = new QueuedDispatcher(capacity, overflow, 1);
+    }
+  }
+
+  @Override
+  void dispatch(DefaultEventBus eventBus, Event event, EventListener[] listeners) {
+    lanes[lane(key.apply(event))].dispatch(eventBus, event, listeners);
+  }
+
+  int lane(Object k) {
+    if (k == null) {
+      return 0;
+    }
+    int h = k.hashCode();
+    h ^= h >>> 16;
+    return (h & Integer.MAX_VALUE) % lanes.length;
+  }
+
+  @Override
+  public int getQueueDepth() {
+    int depth = 0;
+    for (QueuedDispatcher lane : lanes) {
+      depth += lane.getQueueDepth();
+    }
+    return depth;
+  }
+
+  @Override
+  public long getDroppedEvents() {
+    long dropped = 0;
+    for (QueuedDispatcher lane : lanes) {
+      dropped += lane.getDroppedEvents();
+    }
+    return dropped;
+  }
+
+  @Override
+  public void close() {
+    for (QueuedDispatcher lane : lanes) {
+      lane.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Dispatcher.class.getSimpleName() + ":partitioned(" + lanes.length + ")";
+  }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatches events through a bounded queue drained by a pool of daemon threads.
+ *
+ * @author Mathieu Carbou
+ */
+final class QueuedDispatcher extends Dispatcher {
+
+  private static final AtomicInteger IDS = new AtomicInteger();
+  private static final Delivery STOP = new Delivery(null, null, null, null);
+  // how often a producer blocked on a full queue checks whether the dispatcher was closed
+  private static final long CLOSE_CHECK_MILLIS = 100;
+
+  private final BlockingQueue<Delivery> queue;
+  private final int capacity;
+  private final Overflow overflow;
+  private final Thread[] threads;
+  private final AtomicLong dropped = new AtomicLong();
+  // the stop signals not queued yet because the queue was full, queued by the threads as they take the events
+  private final AtomicInteger pendingStops = new AtomicInteger();
+  private volatile boolean closed;
+
+  QueuedDispatcher(int capacity, Overflow overflow, int threads) {
+    if (capacity <= 0) throw new IllegalArgumentException("Bad capacity: " + capacity);
+    if (threads <= 0) throw new IllegalArgumentException("Bad thread count: " + threads);
+    if (overflow == null) throw new NullPointerException("Overflow policy is null");
+    this.queue = new ArrayBlockingQueue<Delivery>(capacity);
+    this.capacity = capacity;
+    this.overflow = overflow;
+    this.threads = new Thread[threads];
+    int id = IDS.incrementAndGet();
+    for (int i = 0; i < threads; i++) {
+      this.threads[i] = new Thread("dispatcher-" + id + "-" + i) {
+        @Override
+        public void run() {
+          drain();
+        }
+      };
+      this.threads[i].setDaemon(true);
+      this.threads[i].start();
+    }
+  }
+
+  @Override
+  void dispatch(DefaultEventBus eventBus, Event event, EventListener[] listeners) {
+    // granted again to the peer having sent the event once called or discarded
+    Runnable dispatched = takeDispatched();
+    if (closed) {
+      discard(dispatched);
+      return;
+    }
+    Delivery delivery = new Delivery(eventBus, event, listeners, dispatched);
+    switch (overflow) {
+      case BLOCK:
+        try {
+          // a blocked producer gives up once closed: its event could be queued after the stop signals
+          while (!queue.offer(delivery, CLOSE_CHECK_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (closed) {
+              discard(dispatched);
+              return;
+            }
+          }
+          if (closed && queue.remove(delivery)) {
+            discard(dispatched);
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          discard(dispatched);
+        }
+        break;
+      case DROP_NEWEST:
+        if (!queue.offer(delivery)) {
+          discard(dispatched);
+        }
+        break;
+      case DROP_OLDEST:
+        while (!queue.offer(delivery)) {
+          Delivery oldest = queue.poll();
+          if (oldest == STOP) {
+            // closing: give the stop signal back and discard this event instead
+            queue.offer(STOP);
+            discard(dispatched);
+            return;
+          }
+          if (oldest != null) {
+            discard(oldest.dispatched);
+          }
+        }
+        break;
+      case FAIL:
+        if (!queue.offer(delivery)) {
+          discard(dispatched);
+          throw new EventBusException("Dispatch queue is full (" + capacity + " events): cannot dispatch " + event);
+        }
+        break;
+      default:
+        throw new AssertionError(overflow);
+    }
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  @Override
+  public long getDroppedEvents() {
+    return dropped.get();
+  }
+
+  @Override
+  public void close() {
+    if (!closed) {
+      closed = true;
+      // queued after the events: they are dispatched before the threads stop
+      pendingStops.addAndGet(threads.length);
+      offerStops();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return Dispatcher.class.getSimpleName() + ":queued(" + capacity + "," + overflow + "," + threads.length + ")";
+  }
+
+  private void drain() {
+    while (true) {
+      Delivery delivery;
+      try {
+        delivery = queue.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      if (delivery == STOP) {
+        return;
+      }
+      if (closed) {
+        // there is now room for a stop signal that did not fit in the queue
+        offerStops();
+      }
+      try {
+        delivery.eventBus.deliver(delivery.event, delivery.listeners);
+      } catch (Throwable e) {
+        // the error listener rethrew: report it without killing the dispatcher thread
+        Thread current = Thread.currentThread();
+        current.getUncaughtExceptionHandler().uncaughtException(current, e);
+      }
+      if (delivery.dispatched != null) {
+        delivery.dispatched.run();
+      }
+    }
+  }
+
+  private void discard(Runnable dispatched) {
+    dropped.incrementAndGet();
+    if (dispatched != null) {
+      dispatched.run();
+    }
+  }
+
+  // never blocks: the closing thread might be a dispatcher thread
+  private void offerStops() {
+    for (int pending = pendingStops.get(); pending > 0; pending = pendingStops.get()) {
+      if (pendingStops.compareAndSet(pending, pending - 1) && !queue.offer(STOP)) {
+        pendingStops.incrementAndGet();
+        if (queue.remainingCapacity() == 0) {
+          // still full: the threads taking the next events will queue it
+          return;
+        }
+      }
+    }
+  }
+
+  private static final class Delivery {
+    final DefaultEventBus eventBus;
+    final Event event;
+    final EventListener[] listeners;
+    // the callback of an event received from a peer, or null
+    final Runnable dispatched;
+
+    Delivery(DefaultEventBus eventBus, Event event, EventListener[] listeners, Runnable dispatched) {
+      this.eventBus = eventBus;
+      this.event = event;
+      this.listeners = listeners;
+      this.dispatched = dispatched;
+    }
+  }
+
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import org.terracotta.ipceventbus.Daemons;
+
+import javax.net.SocketFactory;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * A client connecting again to its server when the connection is lost, with an exponential backoff.
+ * <p>
+ * The events are sent through a {@link DefaultEventBusClient} connection, replaced at each reconnection. Each event sent
+ * is numbered and kept in a bounded replay window until the server acknowledges it. While disconnected, the triggered
+ * events accumulate in the window. Once reconnected, the client resumes its session and sends the window again: the
+ * server skips the events it had already received (see {@link Sessions}). When the window is full, its oldest event is
+ * discarded and counted as dropped.
+ * <p>
+ * The events triggered with {@link #triggerAcknowledged(String, Object)} keep a future in the window, completed when
+ * the server acknowledges them, or failed when they leave the window otherwise.
+ * <p>
+ * A server of a previous version does not acknowledge anything: the events are then sent as by a plain client, and
+ * the ones triggered while disconnected are sent once reconnected.
+ *
+ * @author Mathieu Carbou
+ */
+final class ReconnectingEventBusClient extends DefaultEventBus implements EventBusClient {
+
+  private static final long HANDSHAKE_TIMEOUT_MILLIS = 5000;
+
+  private final InetSocketAddress endpoint;
+  private final ErrorListener errorListener;
+  private final ConnectionOptions options;
+  private final String session = UUID.randomUUID().toString();
+  private final AtomicBoolean reconnecting = new AtomicBoolean();
+  private final AtomicLong dropped = new AtomicLong();
+  private volatile DefaultEventBusClient connection;
+  private volatile boolean closed;
+  private volatile Thread reconnector;
+
+  // orders the events written to the connections, so that their sequence numbers increase. Held while a producer waits
+  // for room in the outbound queue, so never taken by the reader thread, which must go on reading the credits.
+  private final Object sending = new Object();
+
+  // guarded by itself, and never held while writing to the connection
+  private final Deque<Pending> window = new ArrayDeque<Pending>();
+  private long seq;
+  private boolean acking;
+
+  // guarded by this
+  private Interest advertised;
+  private volatile Set<String> channels;
+
+  ReconnectingEventBusClient(String uuid, Socket socket, InetSocketAddress endpoint, ErrorListener errorListener, Listeners listeners, Dispatcher dispatcher, ConnectionOptions options) {
+    super(uuid, errorListener, listeners, dispatcher);
+    this.endpoint = endpoint;
+    this.errorListener = errorListener;
+    this.options = options;
+    this.channels = options.channels;
+    try {
+      attach(open(socket));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      close();
+      throw new EventBusException("Interrupted while connecting to " + endpoint, e);
+    }
+  }
+
+  @Override
+  public void trigger(String name, Object data) {
+    Assert.legalEventName(name);
+    Assert.notInternalName(name);
+    Event event = new DefaultEvent(getId(), name, data);
+    sendLocal(event);
+    sendRemote(event, null, null);
+  }
+
+  @Override
+  public CompletableFuture<Void> triggerAcknowledged(String name, Object data) {
+    Assert.legalEventName(name);
+    Assert.notInternalName(name);
+    Event event = new DefaultEvent(getId(), name, data);
+    CompletableFuture<Void> acknowledged = new CompletableFuture<Void>();
+    sendLocal(event);
+    sendRemote(event, null, acknowledged);
+    return acknowledged;
+  }
+
+  @Override
+  void trigger(DefaultTopic topic, Object data) {
+    Event event = new DefaultEvent(getId(), topic.getName(), System.currentTimeMillis(), data);
+    sendLocal(event, topic.getListeners());
+    sendRemote(event, topic.getEncodedName(), null);
+  }
+
+  /**
+   * @param acknowledged The future to complete once the server has acknowledged the event, or null
+   */
+  private void sendRemote(Event event, byte[] encodedName, CompletableFuture<Void> acknowledged) {
+    if (closed) {
+      fail(acknowledged, "Client closed: event " + event.getName() + " not sent");
+      return;
+    }
+    Pending discarded = null;
+    boolean unacknowledged = false;
+    synchronized (sending) {
+      DefaultEventBusClient connection;
+      OutboundEvent outbound = null;
+      synchronized (window) {
+        connection = this.connection;
+        if (connection != null && !connection.wants(event.getName())) {
+          if (acknowledged != null) {
+            acknowledged.complete(null);
+          }
+          return;
+        }
+        if (connection != null && !acking) {
+          outbound = new OutboundEvent(event, encodedName, false);
+          unacknowledged = true;
+        } else {
+          if (window.size() == options.outboundCapacity) {
+            discarded = window.poll();
+            dropped.incrementAndGet();
+          }
+          Pending pending = new Pending(++seq, event, encodedName, acknowledged);
+          window.add(pending);
+          if (connection != null) {
+            outbound = pending.outbound();
+          }
+        }
+      }
+      // outside of the window: the reader acknowledging events must not wait for a producer blocked on a full queue
+      if (outbound != null) {
+        connection.sendRemote(outbound);
+      }
+    }
+    if (unacknowledged) {
+      fail(acknowledged, "Server not acknowledging events: event " + event.getName() + " sent without acknowledgement");
+    }
+    if (discarded != null) {
+      fail(discarded.acknowledged, "Event " + discarded.event.getName() + " discarded: more than " + options.outboundCapacity + " events waiting for an acknowledgement");
+    }
+  }
+
+  /**
+   * Requests are not kept while disconnected: a request lost with the connection times out
+   */
+  @Override
+  boolean sendRequest(Request request) {
+    DefaultEventBusClient connection = this.connection;
+    return connection != null && connection.sendRequest(request);
+  }
+
+  @Override
+  synchronized void listenersChanged() {
+    Interest interest = listeners.interest();
+    if (!interest.equals(advertised)) {
+      advertised = interest;
+      DefaultEventBusClient connection = this.connection;
+      if (connection != null) {
+        connection.sendInterest(interest);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void join(String channel) {
+    channels = Channels.with(channels, channel);
+    DefaultEventBusClient connection = this.connection;
+    if (connection != null) {
+      connection.sendChannels(channels);
+    }
+  }
+
+  @Override
+  public synchronized void leave(String channel) {
+    channels = Channels.without(channels, channel);
+    DefaultEventBusClient connection = this.connection;
+    if (connection != null) {
+      connection.sendChannels(channels);
+    }
+  }
+
+  @Override
+  public Set<String> getChannels() {
+    return channels;
+  }
+
+  private DefaultEventBusClient open(Socket socket) {
+    final DefaultEventBusClient connection = new DefaultEventBusClient(getId(), socket, errorListener, options, null);
+    connection.onAck(new LongConsumer() {
+      @Override
+      public void accept(long seq) {
+        acknowledged(seq);
+      }
+    });
+    connection.on(new EventListener() {
+      @Override
+      public void onEvent(Event e) {
+        if (e.isUserEvent() || "eventbus.client.error".equals(e.getName()) || "eventbus.client.timeout".equals(e.getName())) {
+          sendLocal(e);
+        } else if ("eventbus.client.disconnect".equals(e.getName())) {
+          disconnected(connection);
+        }
+      }
+    });
+    connection.start();
+    return connection;
+  }
+
+  /**
+   * Resumes the session on a new connection and sends it the events not acknowledged yet
+   */
+  private void attach(DefaultEventBusClient connection) throws InterruptedException {
+    boolean framing = connection.awaitHandshake(HANDSHAKE_TIMEOUT_MILLIS);
+    List<Pending> unacknowledged = null;
+    List<Pending> resent;
+    synchronized (sending) {
+      synchronized (this) {
+        synchronized (window) {
+          acking = framing;
+          if (framing) {
+            connection.resume(session);
+          }
+          resent = new ArrayList<Pending>(window);
+          if (!framing) {
+            unacknowledged = resent;
+            window.clear();
+          }
+          this.connection = connection;
+        }
+        advertised = listeners.interest();
+        connection.sendInterest(advertised);
+        connection.sendChannels(channels);
+      }
+      // the producers wait for the events not acknowledged to be sent first
+      for (Pending pending : resent) {
+        connection.sendRemote(framing ? pending.outbound() : new OutboundEvent(pending.event, pending.encodedName, false));
+      }
+    }
+    if (unacknowledged != null) {
+      for (Pending pending : unacknowledged) {
+        fail(pending.acknowledged, "Server not acknowledging events: event " + pending.event.getName() + " sent without acknowledgement");
+      }
+    }
+  }
+
+  private void acknowledged(long seq) {
+    List<CompletableFuture<Void>> completed = null;
+    synchronized (window) {
+      while (!window.isEmpty() && window.peek().seq <= seq) {
+        Pending pending = window.poll();
+        if (pending.acknowledged != null) {
+          if (completed == null) {
+            completed = new ArrayList<CompletableFuture<Void>>();
+          }
+          completed.add(pending.acknowledged);
+        }
+      }
+    }
+    // outside of the lock: the futures run the actions of the producers
+    if (completed != null) {
+      for (CompletableFuture<Void> acknowledged : completed) {
+        acknowledged.complete(null);
+      }
+    }
+  }
+
+  private static void fail(CompletableFuture<Void> acknowledged, String message) {
+    if (acknowledged != null) {
+      acknowledged.completeExceptionally(new EventBusException(message));
+    }
+  }
+
+  private void disconnected(DefaultEventBusClient connection) {
+    dropped.addAndGet(connection.getDroppedEvents());
+    synchronized (window) {
+      if (this.connection == connection) {
+        this.connection = null;
+      }
+    }
+    scheduleReconnect();
+  }
+
+  private void scheduleReconnect() {
+    if (!closed && reconnecting.compareAndSet(false, true)) {
+      reconnector = Daemons.newThread("reconnect@" + getId(), new Runnable() {
+        @Override
+        public void run() {
+          reconnect();
+        }
+      });
+      reconnector.start();
+    }
+  }
+
+  // called by the reconnecting thread
+  private void reconnect() {
+    try {
+      long delay = options.reconnectMillis;
+      while (!closed && connection == null) {
+        Thread.sleep(delay);
+        delay = Math.min(delay * 2, options.maxReconnectMillis);
+        Socket socket = SocketFactory.getDefault().createSocket();
+        try {
+          socket.connect(endpoint);
+        } catch (IOException e) {
+          socket.close();
+          continue;
+        }
+        if (socket.getLocalSocketAddress().equals(socket.getRemoteSocketAddress())) {
+          // the port of the server is free and was picked as the local port: connected to itself
+          socket.close();
+          continue;
+        }
+        DefaultEventBusClient replacement;
+        try {
+          replacement = open(socket);
+        } catch (EventBusException e) {
+          continue;
+        }
+        attach(replacement);
+        if (closed) {
+          replacement.close();
+        } else if (replacement.isClosed()) {
+          // lost before being attached
+          disconnected(replacement);
+        } else {
+          sendLocal(new DefaultEvent(getId(), "eventbus.client.reconnect", endpoint.getHostName() + ":" + endpoint.getPort()));
+        }
+      }
+    } catch (InterruptedException | IOException ignored) {
+    } finally {
+      reconnecting.set(false);
+    }
+    // the new connection may have been lost while this thread was finishing
+    if (connection == null) {
+      scheduleReconnect();
+    }
+  }
+
+  @Override
+  public int getServerPort() {
+    return endpoint.getPort();
+  }
+
+  @Override
+  public String getServerHost() {
+    return endpoint.getHostName();
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * @return The number of events not acknowledged by the server yet, including the ones waiting for a reconnection
+   */
+  @Override
+  public int getQueueDepth() {
+    DefaultEventBusClient connection = this.connection;
+    synchronized (window) {
+      return connection == null || acking ? window.size() : connection.getQueueDepth();
+    }
+  }
+
+  @Override
+  public long getDroppedEvents() {
+    DefaultEventBusClient connection = this.connection;
+    return dropped.get() + (connection == null ? 0 : connection.getDroppedEvents());
+  }
+
+  @Override
+  public long getRoundTripMicros() {
+    DefaultEventBusClient connection = this.connection;
+    return connection == null ? -1 : connection.getRoundTripMicros();
+  }
+
+  /**
+   * @return The credits of the current connection, or 0 while reconnecting
+   */
+  @Override
+  public int getAvailableCredits() {
+    DefaultEventBusClient connection = this.connection;
+    return connection == null ? 0 : connection.getAvailableCredits();
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    Thread reconnector = this.reconnector;
+    if (reconnector != null) {
+      reconnector.interrupt();
+    }
+    DefaultEventBusClient connection = this.connection;
+    if (connection != null) {
+      connection.close();
+    }
+    List<Pending> unacknowledged;
+    synchronized (window) {
+      unacknowledged = new ArrayList<Pending>(window);
+      window.clear();
+    }
+    for (Pending pending : unacknowledged) {
+      fail(pending.acknowledged, "Client closed: event " + pending.event.getName() + " not acknowledged");
+    }
+    sendLocal(new DefaultEvent(getId(), "eventbus.client.disconnect"));
+    dispatcher.close();
+  }
+
+  @Override
+  public String toString() {
+    return EventBusClient.class.getSimpleName() + ":" + getId();
+  }
+
+  private static final class Pending {
+    final long seq;
+    final Event event;
+    final byte[] encodedName;
+    // the future of an event triggered with triggerAcknowledged, or null
+    final CompletableFuture<Void> acknowledged;
+
+    Pending(long seq, Event event, byte[] encodedName, CompletableFuture<Void> acknowledged) {
+      this.seq = seq;
+      this.event = event;
+      this.encodedName = encodedName;
+      this.acknowledged = acknowledged;
+    }
+
+    OutboundEvent outbound() {
+      return new OutboundEvent(event, encodedName, seq);
+    }
+  }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+/**
+ * An event received by a relaying server, keeping the frame it was received in so that it can be forwarded to the
+ * other clients as is. Its data is only decoded when asked for, i.e. by a listener of the server or when the event is
+ * sent to a client using another codec.
+ *
+ * @author Mathieu Carbou
+ */
+final class RelayedEvent implements Serializable, Event {
+
+  private static final long serialVersionUID = 1L;
+
+  private final String source;
+  private final String name;
+  private final long timestamp;
+  // the whole frame, length included, and where the data starts in it
+  private final transient byte[] frame;
+  private final transient int dataOffset;
+  private final transient EventCodec codec;
+  private transient Object data;
+  private transient boolean decoded;
+
+  RelayedEvent(String source, String name, long timestamp, byte[] frame, int dataOffset, EventCodec codec) {
+    this.source = source;
+    this.name = name;
+    this.timestamp = timestamp;
+    this.frame = frame;
+    this.dataOffset = dataOffset;
+    this.codec = codec;
+  }
+
+  /**
+   * @return The codec the frame was encoded with
+   */
+  EventCodec getCodec() {
+    return codec;
+  }
+
+  byte[] getFrame() {
+    return frame;
+  }
+
+  @Override
+  public boolean isUserEvent() {
+    return !name.startsWith("eventbus.");
+  }
+
+  @Override
+  public String getSource() {
+    return source;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public synchronized Object getData() {
+    if (!decoded) {
+      try {
+        data = codec.decode(new FrameInput(frame, dataOffset, frame.length - dataOffset));
+      } catch (IOException | ClassNotFoundException e) {
+        throw new EventBusIOException("Unable to decode the data of event " + name + " from " + source + " : " + e.getMessage(), e);
+      }
+      decoded = true;
+    }
+    return data;
+  }
+
+  @Override
+  public <T> T getData(Class<T> type) {
+    return type.cast(getData());
+  }
+
+  @Override
+  public <T> T getData(Class<T> type, T defaultValue) {
+    T t = getData(type);
+    return t == null ? defaultValue : t;
+  }
+
+  // peers of previous versions get a plain event
+  private Object writeReplace() throws ObjectStreamException {
+    return new DefaultEvent(source, name, timestamp, getData());
+  }
+
+  @Override
+  public String toString() {
+    return "Event{name='" + name + "', source=" + source + ", data=" + getData() + '}';
+  }
+
+}
@@ -24,7 +24,49 @@ import java.io.Closeable;
 public interface RemoteEventBus extends EventBus, Closeable {
 
   /**
-   * @return The listen port
+   * What to do when an event is sent to a remote peer and its outbound queue is full, i.e. because the peer does not
+   * read its socket fast enough. The constants shared with {@link Dispatcher.Overflow} have the same meaning.
+   */
+  enum SlowPeerPolicy {
+    /**
+     * Block the producer until there is some room in the queue
+     */
+    BLOCK,
+    /**
+     * Discard the event being sent
+     */
+    DROP_NEWEST,
+    /**
+     * Keep only the last event of each name until the queue has been written: an event replaces the waiting one
+     * having the same name
+     */
+    COALESCE,
+    /**
+     * Close the connection to the slow peer
+     */
+    DISCONNECT
+  }
+
+  /**
+   * How the thread reading a shared memory ring waits for events, trading latency for CPU usage
+   */
+  enum WaitStrategy {
+    /**
+     * Poll the ring without ever pausing: the lowest latency, but the reader keeps a core busy
+     */
+    SPIN,
+    /**
+     * Poll the ring, yielding the processor between polls once idle
+     */
+    YIELD,
+    /**
+     * Poll the ring, then yield, then park for a few tens of microseconds between polls once idle
+     */
+    PARK
+  }
+
+  /**
+   * @return The listen port, or -1 when listening on a Unix domain socket or on shared memory
    */
   int getServerPort();
 
@@ -32,4 +74,18 @@ public interface RemoteEventBus extends EventBus, Closeable {
 
   boolean isClosed();
 
+  /**
+   * @return The number of events waiting to be sent to the remote peers, or 0 for the buses not queuing them
+   */
+  default int getQueueDepth() {
+    return 0;
+  }
+
+  /**
+   * @return The number of events not sent to the remote peers because their outbound queue was full
+   */
+  default long getDroppedEvents() {
+    return 0;
+  }
+
 }
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+/**
+ * The answer to a {@link Request}, named after it. Its data is the value returned by the {@link RequestHandler}, or
+ * the description of its failure.
+ *
+ * @author Mathieu Carbou
+ */
+final class Reply extends CallEvent {
+
+  private static final long serialVersionUID = 2263154468731981707L;
+
+  final boolean failed;
+
+  Reply(String source, String name, long timestamp, Object data, long call, boolean failed) {
+    super(source, name, timestamp, data, call);
+    this.failed = failed;
+  }
+
+}
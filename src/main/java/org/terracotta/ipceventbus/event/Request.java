@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+/**
+ * A request sent with {@link EventBus#request(String, Object, long)}, delivered to the listeners of its name. The
+ * listeners registered with {@link EventBus#reply(String, RequestHandler)} answer it to the bus it comes from.
+ *
+ * @author Mathieu Carbou
+ */
+final class Request extends CallEvent {
+
+  private static final long serialVersionUID = -3960617001468553587L;
+
+  // where to send the reply: the connection the request was received from, or the calls of the local bus
+  private final transient Connection from;
+  private final transient Calls calls;
+
+  /**
+   * Creates a request received from a remote peer
+   */
+  Request(String source, String name, long timestamp, Object data, long call, Connection from) {
+    super(source, name, timestamp, data, call);
+    this.from = from;
+    this.calls = null;
+  }
+
+  /**
+   * Creates a request sent by a bus, answered to its calls when handled locally
+   */
+  Request(String source, String name, long timestamp, Object data, long call, Calls calls) {
+    super(source, name, timestamp, data, call);
+    this.from = null;
+    this.calls = calls;
+  }
+
+  /**
+   * Calls the handler and sends back its answer, or its failure
+   *
+   * @param source The ID of the bus replying
+   */
+  void answer(String source, RequestHandler handler) {
+    Reply reply;
+    try {
+      reply = new Reply(source, getName(), System.currentTimeMillis(), handler.onRequest(this), call, false);
+    } catch (Throwable e) {
+      reply = new Reply(source, getName(), System.currentTimeMillis(), e.toString(), call, true);
+    }
+    if (from != null) {
+      from.sendRemote(new OutboundEvent(reply, null, false));
+    } else if (calls != null) {
+      calls.complete(reply);
+    }
+  }
+
+}
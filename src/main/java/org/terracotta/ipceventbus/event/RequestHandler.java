@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+/**
+ * Answers the requests sent with {@link EventBus#request(String, Object, long)}.
+ *
+ * @author Mathieu Carbou
+ * @see EventBus#reply(String, RequestHandler)
+ */
+public interface RequestHandler {
+
+  /**
+   * Called by the thread chosen by the {@link Dispatcher} of the bus, as a listener would be
+   *
+   * @param request The request, whose data is the argument of the call
+   * @return The data of the reply, encoded with the codec of the connection when the caller is remote
+   * @throws Exception To fail the call: the caller gets an {@link EventBusException} holding its description
+   */
+  Object onRequest(Event request) throws Exception;
+
+}
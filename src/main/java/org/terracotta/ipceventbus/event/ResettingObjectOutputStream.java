@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+
+/**
+ * An object stream which is reset once enough objects or bytes have been written since the last reset, so that the
+ * objects already sent are no longer retained by the handle tables of the writer and of the reader.
+ *
+ * @author Mathieu Carbou
+ */
+final class ResettingObjectOutputStream extends ObjectOutputStream {
+
+  static final int RESET_OBJECTS = 1024;
+  static final long RESET_BYTES = 1024 * 1024;
+
+  private final ByteCounter counter;
+  private final int maxObjects;
+  private final long maxBytes;
+  private int objects;
+
+  ResettingObjectOutputStream(OutputStream out) throws IOException {
+    this(new ByteCounter(out), RESET_OBJECTS, RESET_BYTES);
+  }
+
+  ResettingObjectOutputStream(OutputStream out, int maxObjects, long maxBytes) throws IOException {
+    this(new ByteCounter(out), maxObjects, maxBytes);
+  }
+
+  private ResettingObjectOutputStream(ByteCounter counter, int maxObjects, long maxBytes) throws IOException {
+    super(counter);
+    this.counter = counter;
+    this.maxObjects = maxObjects;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Writes an object and resets the stream if needed. The stream is not flushed.
+   */
+  void send(Object o) throws IOException {
+    writeObject(o);
+    if (++objects >= maxObjects || counter.bytes >= maxBytes) {
+      reset();
+      objects = 0;
+      counter.bytes = 0;
+    }
+  }
+
+  private static final class ByteCounter extends FilterOutputStream {
+    long bytes;
+
+    ByteCounter(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      bytes++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      bytes += len;
+    }
+  }
+
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The sessions of the reconnecting clients of a server, remembering the last event received from each of them so that
+ * the events resent after a reconnection are only delivered once. The least recently resumed sessions are forgotten
+ * past {@link #MAX_SESSIONS}.
+ *
+ * @author Mathieu Carbou
+ */
+final class Sessions {
+
+  static final int MAX_SESSIONS = 4096;
+
+  private final Map<String, Session> sessions = new LinkedHashMap<String, Session>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+      return size() > MAX_SESSIONS;
+    }
+  };
+
+  /**
+   * @return The session of this ID, created if unknown
+   */
+  synchronized Session resume(String id) {
+    Session session = sessions.get(id);
+    if (session == null) {
+      session = new Session();
+      sessions.put(id, session);
+    }
+    return session;
+  }
+
+  static final class Session {
+
+    private long last;
+
+    /**
+     * @return true if the event of this sequence number is received for the first time
+     */
+    synchronized boolean accept(long seq) {
+      if (seq <= last) {
+        return false;
+      }
+      last = seq;
+      return true;
+    }
+
+    /**
+     * @return The sequence number of the last event received
+     */
+    synchronized long last() {
+      return last;
+    }
+  }
+
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A connection through a {@link ShmFile}.
+ * <p>
+ * Producers encode the events and copy them into the outbound ring themselves, one at a time, so that an event is
+ * readable by the peer as soon as the trigger returns: the ring is the outbound queue of the connection. A reader thread
+ * polls the inbound ring with the configured {@link RemoteEventBus.WaitStrategy}, which is also used by the producers
+ * waiting for room in a full ring with the {@link RemoteEventBus.SlowPeerPolicy#BLOCK} policy. Since the events
+ * written to the ring cannot be replaced, the {@link RemoteEventBus.SlowPeerPolicy#COALESCE} policy drops the events
+ * like {@link RemoteEventBus.SlowPeerPolicy#DROP_NEWEST}.
+ * <p>
+ * Both sides use their codec if they have the same one, and the {@link EventCodec#binary()} codec otherwise.
+ *
+ * @author Mathieu Carbou
+ */
+final class ShmConnection implements Connection {
+
+  interface Peer {
+    /**
+     * Called by the reader thread once the other side is attached, before any event is received or can be sent
+     */
+    void attached(ShmConnection connection);
+
+    /**
+     * Called by the reader thread for each event received
+     */
+    void received(Event event);
+
+    /**
+     * Called by the reader thread once the connection is closed
+     *
+     * @param cause The failure having closed the connection, or null if it was closed by either side
+     */
+    void closed(ShmConnection connection, IOException cause);
+  }
+
+  private static final int SPINS = 100;
+  private static final int YIELDS = 200;
+  private static final long PARK_NANOS = 50_000;
+  private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+  private final String id;
+  private final ShmFile file;
+  private final ShmRing outbound;
+  private final ShmRing inbound;
+  private final Peer peer;
+  private final EventCodec codec;
+  private final RemoteEventBus.SlowPeerPolicy overflow;
+  private final RemoteEventBus.WaitStrategy wait;
+  private final Thread reader;
+  private final CountDownLatch closeLatch = new CountDownLatch(1);
+  private final AtomicLong dropped = new AtomicLong();
+  private volatile EventCodec wire;
+  private volatile boolean closing;
+  private volatile boolean closed;
+  private volatile IOException failure;
+  private volatile Interest peerInterest = Interest.ALL;
+
+  // guarded by out
+  private final FrameOutput out = new FrameOutput();
+  private final FrameDictionary sentNames = new FrameDictionary();
+  // only used by the reader thread
+  private final FrameDictionary receivedNames = new FrameDictionary();
+
+  ShmConnection(String id, ShmFile file, ConnectionOptions options, Peer peer) {
+    this.id = id;
+    this.file = file;
+    this.outbound = file.outbound();
+    this.inbound = file.inbound();
+    this.peer = peer;
+    this.codec = options.codec;
+    this.overflow = options.overflow;
+    this.wait = options.waitStrategy;
+    if (file.peerState() == ShmFile.ATTACHED) {
+      // a client can send as soon as connected
+      this.wire = negotiate();
+    }
+    // a platform thread even where the socket readers are virtual: spinning or yielding on the ring would pin a carrier
+    // thread and starve the other virtual threads
+    this.reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        read();
+      }
+    }, "shm-reader@" + id);
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public boolean wants(String event) {
+    return peerInterest.wants(event);
+  }
+
+  @Override
+  public Interest getPeerInterest() {
+    return peerInterest;
+  }
+
+  @Override
+  public Set<String> getPeerChannels() {
+    return Collections.emptySet();
+  }
+
+  /**
+   * Writes the interest to the ring, waiting for room whatever the overflow policy since it must not be lost
+   */
+  @Override
+  public void sendInterest(Interest interest) {
+    if (closing) {
+      return;
+    }
+    synchronized (out) {
+      out.reset();
+      Frames.writeInterest(out, interest);
+      if (!outbound.fits(out.size())) {
+        abort(new IOException("Interest of " + out.size() + " bytes larger than the shared memory ring of " + outbound.capacity() + " bytes"));
+        return;
+      }
+      int idle = 0;
+      while (!closing && !outbound.offer(out.buffer(), out.size())) {
+        idle = idle(idle);
+      }
+    }
+  }
+
+  @Override
+  public void sendRemote(OutboundEvent event) {
+    if (closing) {
+      return;
+    }
+    synchronized (out) {
+      // both sides of a shared memory file read compact frames
+      int mark = sentNames.mark();
+      boolean offered = false;
+      try {
+        try {
+          out.reset();
+          event.encode(out, wire, sentNames);
+          if (!outbound.fits(out.size())) {
+            throw new IOException("Event " + event.event.getName() + " of " + out.size() + " bytes larger than the shared memory ring of " + outbound.capacity() + " bytes");
+          }
+        } catch (IOException e) {
+          abort(e);
+          return;
+        }
+        int idle = 0;
+        while (!(offered = outbound.offer(out.buffer(), out.size()))) {
+          switch (overflow) {
+            case BLOCK:
+              if (closing) {
+                return;
+              }
+              idle = idle(idle);
+              break;
+            case DISCONNECT:
+              abort(new IOException("Outbound queue full (" + outbound.depth() + " messages): disconnecting slow peer"));
+              return;
+            default:
+              dropped.incrementAndGet();
+              return;
+          }
+        }
+      } finally {
+        if (!offered) {
+          // the peer never sees the strings this event defined, also when the codec failed to encode it
+          sentNames.rollback(mark);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return The number of events written to the ring and not yet read by the peer, approximately
+   */
+  @Override
+  public int getQueueDepth() {
+    return outbound.depth();
+  }
+
+  @Override
+  public long getDroppedEvents() {
+    return dropped.get();
+  }
+
+  /**
+   * @return -1: the peers of a shared memory file do not exchange heartbeats
+   */
+  @Override
+  public long getRoundTripMicros() {
+    return -1;
+  }
+
+  /**
+   * @return -1: the ring bounds the events in flight, the peers of a shared memory file do not grant credits
+   */
+  @Override
+  public int getAvailableCredits() {
+    return -1;
+  }
+
+  /**
+   * Closes the connection once the reader thread notices it. The events already written to the ring are still read by
+   * the peer. Unless called by the reader thread, waits for the connection to be closed.
+   */
+  @Override
+  public void close() {
+    closing = true;
+    if (Thread.currentThread() != reader) {
+      try {
+        closeLatch.await(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private void abort(IOException cause) {
+    if (failure == null) {
+      failure = cause;
+    }
+    closing = true;
+  }
+
+  private void read() {
+    FrameInput frame = new FrameInput();
+    IOException cause = null;
+    try {
+      boolean attached = false;
+      int idle = 0;
+      while (!closing) {
+        if (!attached) {
+          long state = file.peerState();
+          if (state == ShmFile.ATTACHED) {
+            if (wire == null) {
+              wire = negotiate();
+            }
+            attached = true;
+            peer.attached(this);
+            continue;
+          }
+          if (state == ShmFile.CLOSED) {
+            break;
+          }
+        } else if (inbound.poll(frame)) {
+          received(frame);
+          idle = 0;
+          continue;
+        } else if (file.peerState() == ShmFile.CLOSED) {
+          // the frames written by the peer before closing are visible now
+          while (!closing && inbound.poll(frame)) {
+            received(frame);
+          }
+          break;
+        }
+        idle = idle(idle);
+      }
+    } catch (IOException e) {
+      cause = e;
+    } catch (RuntimeException e) {
+      cause = new IOException(e);
+    }
+    closeNow(cause != null ? cause : failure);
+  }
+
+  private EventCodec negotiate() {
+    return codec != null && codec.getName().equals(file.peerCodec()) ? codec : EventCodec.binary();
+  }
+
+  private void received(FrameInput frame) throws IOException {
+    byte type = frame.readByte();
+    FrameDictionary names = (type & Frames.COMPACT) == 0 ? null : receivedNames;
+    type &= ~Frames.COMPACT;
+    try {
+      if (type == Frames.EVENT) {
+        peer.received(Frames.readEvent(frame, wire, names));
+      } else if (type == Frames.REQUEST) {
+        peer.received(Frames.readRequest(frame, wire, this));
+      } else if (type == Frames.REPLY) {
+        peer.received(Frames.readReply(frame, wire));
+      } else if (type == Frames.INTEREST) {
+        peerInterest = Frames.readInterest(frame);
+      }
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private int idle(int idle) {
+    switch (wait) {
+      case SPIN:
+        return idle;
+      case YIELD:
+        if (idle >= SPINS) {
+          Thread.yield();
+          return idle;
+        }
+        return idle + 1;
+      default:
+        if (idle >= YIELDS) {
+          LockSupport.parkNanos(PARK_NANOS);
+          return idle;
+        }
+        if (idle >= SPINS) {
+          Thread.yield();
+        }
+        return idle + 1;
+    }
+  }
+
+  /**
+   * Called by the reader thread
+   */
+  private void closeNow(IOException cause) {
+    closing = true;
+    closed = true;
+    file.detach();
+    try {
+      peer.closed(this, cause);
+    } finally {
+      closeLatch.countDown();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ShmConnection:" + id;
+  }
+
+}
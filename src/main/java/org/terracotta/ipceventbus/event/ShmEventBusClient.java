@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+
+/**
+ * A client exchanging events with its server through a {@link ShmFile}
+ *
+ * @author Mathieu Carbou
+ */
+final class ShmEventBusClient extends DefaultEventBus implements EventBusClient {
+
+  private final ShmConnection connection;
+  private Interest advertised;
+
+  ShmEventBusClient(String uuid, ShmFile file, ErrorListener errorListener, Listeners listeners, Dispatcher dispatcher, ConnectionOptions connectionOptions) {
+    super(uuid, errorListener, listeners, dispatcher);
+    this.connection = new ShmConnection(uuid, file, connectionOptions, new ShmConnection.Peer() {
+      @Override
+      public void attached(ShmConnection connection) {
+      }
+
+      @Override
+      public void received(Event event) {
+        sendLocal(event);
+      }
+
+      @Override
+      public void closed(ShmConnection connection, IOException cause) {
+        if (cause != null) {
+          sendLocal(new DefaultEvent(getId(), "eventbus.client.error", cause));
+        }
+        sendLocal(new DefaultEvent(getId(), "eventbus.client.disconnect"));
+        ShmEventBusClient.this.dispatcher.close();
+      }
+    });
+    listenersChanged();
+  }
+
+  @Override
+  public void trigger(String name, Object data) {
+    Assert.legalEventName(name);
+    Assert.notInternalName(name);
+    Event event = new DefaultEvent(getId(), name, data);
+    sendLocal(event);
+    if (connection.wants(event.getName())) {
+      connection.sendRemote(new OutboundEvent(event, null, false));
+    }
+  }
+
+  @Override
+  void trigger(DefaultTopic topic, Object data) {
+    Event event = new DefaultEvent(getId(), topic.getName(), System.currentTimeMillis(), data);
+    sendLocal(event, topic.getListeners());
+    if (connection.wants(event.getName())) {
+      connection.sendRemote(new OutboundEvent(event, topic.getEncodedName(), false));
+    }
+  }
+
+  @Override
+  boolean sendRequest(Request request) {
+    if (isClosed() || !connection.wants(request.getName())) {
+      return false;
+    }
+    connection.sendRemote(new OutboundEvent(request, null, false));
+    return true;
+  }
+
+  @Override
+  synchronized void listenersChanged() {
+    Interest interest = listeners.interest();
+    if (!interest.equals(advertised)) {
+      advertised = interest;
+      connection.sendInterest(interest);
+    }
+  }
+
+  @Override
+  public int getServerPort() {
+    return -1;
+  }
+
+  @Override
+  public String getServerHost() {
+    return "localhost";
+  }
+
+  @Override
+  public boolean isClosed() {
+    return connection.isClosed();
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return connection.getQueueDepth();
+  }
+
+  @Override
+  public long getDroppedEvents() {
+    return connection.getDroppedEvents();
+  }
+
+  @Override
+  public long getRoundTripMicros() {
+    return connection.getRoundTripMicros();
+  }
+
+  @Override
+  public int getAvailableCredits() {
+    return connection.getAvailableCredits();
+  }
+
+  @Override
+  public void close() {
+    connection.close();
+  }
+
+  @Override
+  public String toString() {
+    return EventBusClient.class.getSimpleName() + ":" + getId();
+  }
+
+}
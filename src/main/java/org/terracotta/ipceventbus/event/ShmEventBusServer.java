@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A server exchanging events with a single client, i.e. a child process, through a {@link ShmFile}. The client is
+ * connected once it has attached to the file. The file is deleted when the server is closed.
+ *
+ * @author Mathieu Carbou
+ */
+final class ShmEventBusServer extends AbstractEventBusServer {
+
+  private final ShmFile file;
+  private final ShmConnection connection;
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  ShmEventBusServer(String uuid, ShmFile file, ErrorListener errorListener, Listeners listeners, Dispatcher dispatcher, ConnectionOptions connectionOptions) {
+    super(uuid, errorListener, listeners, dispatcher, false);
+    this.file = file;
+    this.connection = new ShmConnection(file.getPath().toString(), file, connectionOptions, new ShmConnection.Peer() {
+      @Override
+      public void attached(ShmConnection connection) {
+        connected(connection);
+      }
+
+      @Override
+      public void received(Event event) {
+        sendLocal(event);
+      }
+
+      @Override
+      public void closed(ShmConnection connection, IOException cause) {
+        disconnected(connection);
+        if (cause != null) {
+          sendLocal(new DefaultEvent(connection.getId(), "eventbus.client.error", cause));
+        }
+        sendLocal(new DefaultEvent(connection.getId(), "eventbus.client.disconnect"));
+      }
+    });
+  }
+
+  @Override
+  public int getServerPort() {
+    return -1;
+  }
+
+  @Override
+  public String getServerHost() {
+    return "localhost";
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed.get();
+  }
+
+  @Override
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      connection.close();
+      file.delete();
+      sendLocal(new DefaultEvent(getId(), "eventbus.server.close"));
+      dispatcher.close();
+    }
+  }
+
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A memory-mapped file shared by a server and its client, holding a {@link ShmRing} in each direction.
+ * <p>
+ * The file starts with a header: a magic number, the ring capacity, then for each side its state and the name of its
+ * codec. The server creates the file and is attached from the start. The client attaches by writing its codec and its
+ * state. Each side then writes to its own ring and reads the ring of the other side. A side closing writes its state
+ * after its last frame, so that the other side reads all the frames before noticing it.
+ *
+ * @author Mathieu Carbou
+ */
+final class ShmFile {
+
+  static final long DETACHED = 0;
+  static final long ATTACHED = 1;
+  static final long CLOSED = 2;
+
+  private static final int MAGIC = 0x49504342;
+  private static final int CAPACITY = 8;
+  private static final int SERVER = 64;
+  private static final int CLIENT = 128;
+  private static final int CODEC = 8;
+  private static final int CODEC_BYTES = 55;
+  private static final int HEADER_BYTES = 192;
+
+  private final Path path;
+  private final boolean server;
+  private final MappedByteBuffer buffer;
+  private final ShmRing toClient;
+  private final ShmRing toServer;
+
+  private ShmFile(Path path, boolean server, MappedByteBuffer buffer, int capacity) {
+    this.path = path;
+    this.server = server;
+    this.buffer = buffer;
+    this.toClient = new ShmRing(buffer, HEADER_BYTES, capacity);
+    this.toServer = new ShmRing(buffer, HEADER_BYTES + ShmRing.size(capacity), capacity);
+  }
+
+  static boolean isSupported() {
+    return ShmRing.isSupported();
+  }
+
+  /**
+   * Creates the file of a server, which must not exist
+   *
+   * @param capacity The size of each ring, rounded up to a power of 2
+   */
+  static ShmFile create(Path path, int capacity, EventCodec codec) throws IOException {
+    checkSupported();
+    capacity = Integer.highestOneBit(capacity - 1) << 1;
+    int size = HEADER_BYTES + 2 * ShmRing.size(capacity);
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      buffer.putInt(0, MAGIC);
+      buffer.putInt(CAPACITY, capacity);
+      ShmFile file = new ShmFile(path, true, buffer, capacity);
+      file.attach(codec);
+      return file;
+    }
+  }
+
+  /**
+   * Opens the file of a server and attaches to it as its client
+   */
+  static ShmFile open(Path path, EventCodec codec) throws IOException {
+    checkSupported();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      if (channel.size() < HEADER_BYTES) {
+        throw new StreamCorruptedException("Not a shared memory bus: " + path);
+      }
+      MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+      int capacity = header.getInt(CAPACITY);
+      if (header.getInt(0) != MAGIC || Integer.bitCount(capacity) != 1 || channel.size() != HEADER_BYTES + 2L * ShmRing.size(capacity)) {
+        throw new StreamCorruptedException("Not a shared memory bus: " + path);
+      }
+      ShmFile file = new ShmFile(path, false, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()), capacity);
+      if (file.peerState() != ATTACHED || file.state(CLIENT) != DETACHED) {
+        throw new IOException("Shared memory bus not accepting any client: " + path);
+      }
+      file.attach(codec);
+      return file;
+    }
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  boolean isServer() {
+    return server;
+  }
+
+  ShmRing outbound() {
+    return server ? toClient : toServer;
+  }
+
+  ShmRing inbound() {
+    return server ? toServer : toClient;
+  }
+
+  /**
+   * @return The codec name written by the other side when attaching, or null if none
+   */
+  String peerCodec() {
+    int offset = (server ? CLIENT : SERVER) + CODEC;
+    int length = buffer.get(offset);
+    if (length <= 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(offset + 1 + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  long peerState() {
+    return state(server ? CLIENT : SERVER);
+  }
+
+  /**
+   * Tells the other side that this side will not write nor read anymore
+   */
+  void detach() {
+    ShmRing.setRelease(buffer, server ? SERVER : CLIENT, CLOSED);
+  }
+
+  void delete() {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException ignored) {
+    }
+  }
+
+  private void attach(EventCodec codec) {
+    int offset = (server ? SERVER : CLIENT) + CODEC;
+    byte[] name = codec == null ? new byte[0] : codec.getName().getBytes(StandardCharsets.UTF_8);
+    if (name.length <= CODEC_BYTES) {
+      buffer.put(offset, (byte) name.length);
+      for (int i = 0; i < name.length; i++) {
+        buffer.put(offset + 1 + i, name[i]);
+      }
+    }
+    ShmRing.setRelease(buffer, server ? SERVER : CLIENT, ATTACHED);
+  }
+
+  private long state(int offset) {
+    return ShmRing.getAcquire(buffer, offset);
+  }
+
+  private static void checkSupported() {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("The shared memory transport needs Java 9 or later");
+    }
+  }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A single-producer, single-consumer ring of frames in a shared {@link ByteBuffer}, i.e. a memory-mapped file shared
+ * by two processes.
+ * <p>
+ * The ring starts with the producer and the consumer positions, on their own cache lines, followed by the data. The
+ * positions only grow: each side caches the position of the other one and only reads it again when the ring looks
+ * full or empty. A frame is stored as is ({@code int length, bytes}) at an 8-byte aligned position. A frame never
+ * wraps: when it does not fit before the end of the ring, the rest of the ring is skipped with a padding length.
+ * <p>
+ * Positions are published with release stores and read with acquire loads, through the {@code VarHandle} API of Java 9,
+ * which is reached reflectively so that the library still runs on Java 8 without this transport.
+ *
+ * @author Mathieu Carbou
+ */
+final class ShmRing {
+
+  static final int HEADER_BYTES = 128;
+
+  private static final int PRODUCER = 0;
+  private static final int CONSUMER = 64;
+  private static final int CONSUMED_FRAMES = 72;
+  private static final int PADDING = -1;
+
+  private static final MethodHandle GET_ACQUIRE;
+  private static final MethodHandle SET_RELEASE;
+
+  static {
+    MethodHandle getAcquire = null;
+    MethodHandle setRelease = null;
+    try {
+      Class<?> varHandleClass = Class.forName("java.lang.invoke.VarHandle");
+      Class<?> accessModeClass = Class.forName("java.lang.invoke.VarHandle$AccessMode");
+      Method view = MethodHandles.class.getMethod("byteBufferViewVarHandle", Class.class, ByteOrder.class);
+      Method toMethodHandle = varHandleClass.getMethod("toMethodHandle", accessModeClass);
+      Object longs = view.invoke(null, long[].class, ByteOrder.nativeOrder());
+      getAcquire = (MethodHandle) toMethodHandle.invoke(longs, accessMode(accessModeClass, "GET_ACQUIRE"));
+      setRelease = (MethodHandle) toMethodHandle.invoke(longs, accessMode(accessModeClass, "SET_RELEASE"));
+    } catch (ReflectiveOperationException ignored) {
+      getAcquire = null;
+    }
+    GET_ACQUIRE = getAcquire;
+    SET_RELEASE = setRelease;
+  }
+
+  private final ByteBuffer shared;
+  private final ByteBuffer data;
+  private final int base;
+  private final int capacity;
+  private final int mask;
+
+  // producer side
+  private long produced;
+  private long consumedCache;
+  private long producedFrames;
+
+  // consumer side
+  private long consumed;
+  private long producedCache;
+  private long consumedFrames;
+  private byte[] scratch = new byte[256];
+
+  /**
+   * @param shared   The shared buffer, which must be direct
+   * @param base     The 64-byte aligned offset of the ring in the buffer
+   * @param capacity The number of data bytes, a power of 2
+   */
+  ShmRing(ByteBuffer shared, int base, int capacity) {
+    this.shared = shared;
+    this.data = shared.duplicate();
+    this.base = base;
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.produced = getAcquire(shared, base + PRODUCER);
+    this.consumed = getAcquire(shared, base + CONSUMER);
+    this.consumedCache = consumed;
+    this.producedCache = produced;
+  }
+
+  static boolean isSupported() {
+    return GET_ACQUIRE != null;
+  }
+
+  static int size(int capacity) {
+    return HEADER_BYTES + capacity;
+  }
+
+  int capacity() {
+    return capacity;
+  }
+
+  /**
+   * @return true if a frame of this size can ever be written to the ring
+   */
+  boolean fits(int length) {
+    return align(length) <= capacity;
+  }
+
+  /**
+   * @return The number of frames written by the producer of this ring and not yet read by the consumer
+   */
+  int depth() {
+    return (int) (producedFrames - getAcquire(shared, base + CONSUMED_FRAMES));
+  }
+
+  /**
+   * Called by the producer only
+   *
+   * @param frame  A frame, starting with its length
+   * @param length The frame size, including its length
+   * @return false if the ring has no room for the frame at the moment
+   */
+  boolean offer(byte[] frame, int length) {
+    int record = align(length);
+    if (record > capacity) {
+      throw new IllegalArgumentException("Frame of " + length + " bytes larger than the ring of " + capacity + " bytes");
+    }
+    int index = (int) produced & mask;
+    int contiguous = capacity - index;
+    if (record > contiguous) {
+      if (!hasRoom(contiguous)) {
+        return false;
+      }
+      data.putInt(base + HEADER_BYTES + index, PADDING);
+      produced += contiguous;
+      setRelease(shared, base + PRODUCER, produced);
+      index = 0;
+    }
+    if (!hasRoom(record)) {
+      return false;
+    }
+    data.position(base + HEADER_BYTES + index);
+    data.put(frame, 0, length);
+    produced += record;
+    producedFrames++;
+    setRelease(shared, base + PRODUCER, produced);
+    return true;
+  }
+
+  /**
+   * Reads the next frame, if any. Called by the consumer only.
+   *
+   * @param frame Where to read the frame body, without its length. It is only valid until the next poll.
+   * @return false if the ring is empty
+   */
+  boolean poll(FrameInput frame) throws StreamCorruptedException {
+    while (true) {
+      if (consumed == producedCache) {
+        producedCache = getAcquire(shared, base + PRODUCER);
+        if (consumed == producedCache) {
+          return false;
+        }
+      }
+      int index = (int) consumed & mask;
+      int length = data.getInt(base + HEADER_BYTES + index);
+      if (length == PADDING) {
+        consumed += capacity - index;
+        setRelease(shared, base + CONSUMER, consumed);
+        continue;
+      }
+      if (length < 1 || length > capacity - index - 4) {
+        throw new StreamCorruptedException("Bad frame length: " + length);
+      }
+      if (scratch.length < length) {
+        scratch = new byte[Math.max(length, scratch.length * 2)];
+      }
+      data.position(base + HEADER_BYTES + index + 4);
+      data.get(scratch, 0, length);
+      frame.reset(scratch, 0, length);
+      consumed += align(4 + length);
+      consumedFrames++;
+      setRelease(shared, base + CONSUMED_FRAMES, consumedFrames);
+      setRelease(shared, base + CONSUMER, consumed);
+      return true;
+    }
+  }
+
+  private boolean hasRoom(int bytes) {
+    if (capacity - (produced - consumedCache) >= bytes) {
+      return true;
+    }
+    consumedCache = getAcquire(shared, base + CONSUMER);
+    return capacity - (produced - consumedCache) >= bytes;
+  }
+
+  private static int align(int length) {
+    return (length + 7) & ~7;
+  }
+
+  static long getAcquire(ByteBuffer buffer, int index) {
+    try {
+      return (long) GET_ACQUIRE.invokeExact(buffer, index);
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static void setRelease(ByteBuffer buffer, int index, long value) {
+    try {
+      SET_RELEASE.invokeExact(buffer, index, value);
+    } catch (Throwable e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static Object accessMode(Class<?> accessModeClass, String name) {
+    return Enum.valueOf((Class) accessModeClass, name);
+  }
+
+}
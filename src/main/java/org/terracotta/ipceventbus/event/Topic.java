@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.ipceventbus.event;
+
+/**
+ * A pre-resolved handle to trigger one event name on a bus.
+ * <p>
+ * The name is validated once when the topic is created, and the topic points straight to the live listeners of this
+ * name, so triggering through a topic does not validate nor look up anything. Get one with {@link EventBus#topic(String)}.
+ *
+ * @author Mathieu Carbou
+ */
+public interface Topic {
+
+  /**
+   * @return The event name triggered by this topic
+   */
+  String getName();
+
+  /**
+   * Trigger the event
+   */
+  void trigger();
+
+  /**
+   * Trigger the event with some data, which must not be modified afterwards (see {@link EventSender#trigger(String, Object)})
+   *
+   * @param data data
+   */
+  void trigger(Object data);
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Opens Unix domain socket channels, available on Java 16 and later.
+ * <p>
+ * The Java 16 API is called reflectively rather than from a multi-release layer: a process launched by
+ * {@link org.terracotta.ipceventbus.proc.EventJavaProcessBuilder} often gets the class directories of its parent
+ * instead of the jar, and the versioned classes are only seen in jars.
+ *
+ * @author Mathieu Carbou
+ */
+final class UnixSockets {
+
+  private static final ProtocolFamily UNIX;
+  private static final Method OPEN_SERVER;
+  private static final Method ADDRESS_OF;
+  private static final Method ADDRESS_PATH;
+
+  static {
+    ProtocolFamily unix = null;
+    Method openServer = null;
+    Method addressOf = null;
+    Method addressPath = null;
+    try {
+      unix = StandardProtocolFamily.valueOf("UNIX");
+      openServer = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+      Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+      addressOf = addressClass.getMethod("of", Path.class);
+      addressPath = addressClass.getMethod("getPath");
+    } catch (IllegalArgumentException | ReflectiveOperationException ignored) {
+      unix = null;
+    }
+    UNIX = unix;
+    OPEN_SERVER = openServer;
+    ADDRESS_OF = addressOf;
+    ADDRESS_PATH = addressPath;
+  }
+
+  private UnixSockets() {
+  }
+
+  static boolean isSupported() {
+    return UNIX != null;
+  }
+
+  static ServerSocketChannel bind(Path path) throws IOException {
+    ServerSocketChannel channel = (ServerSocketChannel) invoke(OPEN_SERVER, null, UNIX);
+    try {
+      channel.bind(address(path));
+      return channel;
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  static SocketChannel connect(Path path) throws IOException {
+    return SocketChannel.open(address(path));
+  }
+
+  /**
+   * @return The path of a Unix domain socket address, or null for other addresses
+   */
+  static Path path(SocketAddress address) {
+    if (!isSupported() || !ADDRESS_PATH.getDeclaringClass().isInstance(address)) {
+      return null;
+    }
+    try {
+      Path path = (Path) invoke(ADDRESS_PATH, address);
+      return path.toString().isEmpty() ? null : path;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Deletes the file of a bound Unix domain socket
+   */
+  static void unlink(SocketAddress address) {
+    Path path = path(address);
+    if (path != null) {
+      try {
+        Files.deleteIfExists(path);
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  private static SocketAddress address(Path path) throws IOException {
+    return (SocketAddress) invoke(ADDRESS_OF, null, path);
+  }
+
+  private static Object invoke(Method method, Object target, Object... args) throws IOException {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("Unix domain sockets need Java 16 or later");
+    }
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      throw new IOException(cause);
+    } catch (IllegalAccessException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -17,6 +17,8 @@
 
 package org.terracotta.ipceventbus.io;
 
+import org.terracotta.ipceventbus.Daemons;
+
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
@@ -36,7 +38,7 @@ public final class Pipe implements Closeable {
   }
 
   public Pipe(String name, final InputStream in, final OutputStream out, final int bufferSize) {
-    this.pipe = new Thread(name) {
+    this.pipe = Daemons.newThread(name, new Runnable() {
       @Override
       public void run() {
         byte[] buffer = new byte[bufferSize];
@@ -53,8 +55,7 @@ public final class Pipe implements Closeable {
           close();
         }
       }
-    };
-    pipe.setDaemon(true);
+    });
     pipe.start();
   }
 
@@ -19,6 +19,7 @@ package org.terracotta.ipceventbus.proc;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import org.terracotta.ipceventbus.Daemons;
 import org.terracotta.ipceventbus.io.MultiplexOutputStream;
 import org.terracotta.ipceventbus.io.Pipe;
 
@@ -138,9 +139,7 @@ public class AnyProcess extends Process {
           }
         }
       };
-      Thread thread = new Thread(future, "Process future@" + this.pid);
-      thread.setDaemon(true);
-      thread.start();
+      Daemons.newThread("Process future@" + this.pid, future).start();
     }
   }
 
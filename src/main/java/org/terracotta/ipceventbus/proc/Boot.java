@@ -21,6 +21,7 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import org.terracotta.ipceventbus.event.Event;
 import org.terracotta.ipceventbus.event.EventListener;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -59,6 +60,11 @@ public final class Boot {
         if (firedExiting.compareAndSet(false, true)) {
           Bus.get().trigger("process.exiting", Bus.getCurrentPid());
         }
+        // events are sent by a daemon thread: write the pending ones before the JVM halts
+        try {
+          Bus.get().close();
+        } catch (IOException ignored) {
+        }
       }
     });
 
@@ -19,8 +19,10 @@ package org.terracotta.ipceventbus.proc;
 
 import org.terracotta.ipceventbus.event.EventBusClient;
 import org.terracotta.ipceventbus.event.EventListenerSniffer;
+import org.terracotta.ipceventbus.event.RemoteEventBus;
 
 import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
 
 /**
  * @author Mathieu Carbou
@@ -30,18 +32,29 @@ public final class Bus {
   private static final EventBusClient bus;
 
   static {
+    String shm = System.getProperty("ipc.bus.shm");
+    String path = System.getProperty("ipc.bus.path");
     String host = System.getProperty("ipc.bus.host");
-    int port = Integer.parseInt(System.getProperty("ipc.bus.port"));
     String pid = getCurrentPid();
+    EventBusClient.Builder builder = new EventBusClient.Builder().id(pid);
+    String endpoint;
+    if (shm != null) {
+      builder.sharedMemory(Paths.get(shm), RemoteEventBus.WaitStrategy.valueOf(System.getProperty("ipc.bus.shm.wait", "PARK")));
+      endpoint = shm;
+    } else if (path != null) {
+      builder.connect(Paths.get(path));
+      endpoint = path;
+    } else {
+      int port = Integer.parseInt(System.getProperty("ipc.bus.port"));
+      builder.connect(host, port);
+      endpoint = host + ":" + port;
+    }
 
     if (isDebug()) {
       System.out.println("[" + Boot.class.getSimpleName() + "] Child PID: " + pid);
-      System.out.println("[" + Boot.class.getSimpleName() + "] Connecting EventBus Client " + pid + " to " + host + ":" + port + "...");
+      System.out.println("[" + Boot.class.getSimpleName() + "] Connecting EventBus Client " + pid + " to " + endpoint + "...");
     }
-    bus = new EventBusClient.Builder()
-        .connect(host, port)
-        .id(pid)
-        .build();
+    bus = builder.build();
     if (isDebug()) {
       bus.on(new EventListenerSniffer(pid));
     }
@@ -17,10 +17,10 @@
 
 package org.terracotta.ipceventbus.proc;
 
-import org.terracotta.ipceventbus.event.EventBusClient;
 import org.terracotta.ipceventbus.event.EventBusServer;
 import org.terracotta.ipceventbus.event.EventListener;
 import org.terracotta.ipceventbus.event.EventListenerSniffer;
+import org.terracotta.ipceventbus.event.Topic;
 
 import java.io.File;
 import java.io.IOException;
@@ -69,8 +69,8 @@ public final class EventJavaProcess extends JavaProcess {
 
   private void close() {
     try {
-      if (eventBus != null && eventBus instanceof EventBusClient && !((EventBusClient) eventBus).isClosed()) {
-        ((EventBusClient) eventBus).close();
+      if (eventBus != null && !eventBus.isClosed()) {
+        eventBus.close();
       }
     } catch (IOException ignored) {
     }
@@ -120,6 +120,10 @@ public final class EventJavaProcess extends JavaProcess {
     eventBus.trigger(name, data);
   }
 
+  public final Topic topic(String name) {
+    return eventBus.topic(name);
+  }
+
   public static EventJavaProcessBuilder<? extends EventJavaProcess> newBuilder() {
     return new EventJavaProcessBuilder<EventJavaProcess>();
   }
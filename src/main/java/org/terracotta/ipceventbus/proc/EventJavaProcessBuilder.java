@@ -19,6 +19,12 @@ package org.terracotta.ipceventbus.proc;
 
 import org.terracotta.ipceventbus.event.EventBusServer;
 import org.terracotta.ipceventbus.event.EventListener;
+import org.terracotta.ipceventbus.event.RemoteEventBus;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.UUID;
 
 /**
  * @author Mathieu Carbou
@@ -26,14 +32,85 @@ import org.terracotta.ipceventbus.event.EventListener;
 public class EventJavaProcessBuilder<T extends EventJavaProcess> extends JavaProcessBuilder<T> {
 
   final EventBusServer.Builder eventBusBuilder = new EventBusServer.Builder();
+  Path unixSocket;
+  Path sharedMemory;
+  RemoteEventBus.WaitStrategy waitStrategy;
 
   public EventJavaProcessBuilder<T> port(int port) {
     eventBusBuilder.listen(port);
+    unixSocket = null;
+    sharedMemory = null;
     return this;
   }
 
   public EventJavaProcessBuilder<T> randomPort() {
     eventBusBuilder.listenRandom();
+    unixSocket = null;
+    sharedMemory = null;
+    return this;
+  }
+
+  /**
+   * Connects the child process with a Unix domain socket created in the temporary directory instead of a TCP port.
+   * Both the parent and the child must run on Java 16 or later.
+   */
+  public EventJavaProcessBuilder<T> unixSocket() {
+    return unixSocket(Paths.get(System.getProperty("java.io.tmpdir"), "ipc-bus-" + UUID.randomUUID().toString().substring(0, 8) + ".sock"));
+  }
+
+  /**
+   * Connects the child process with a Unix domain socket instead of a TCP port.
+   * Both the parent and the child must run on Java 16 or later.
+   *
+   * @param socket The path of the socket file, which must not exist. It is deleted when the event bus is closed.
+   */
+  public EventJavaProcessBuilder<T> unixSocket(Path socket) {
+    eventBusBuilder.listen(socket);
+    unixSocket = socket;
+    sharedMemory = null;
+    return this;
+  }
+
+  /**
+   * Exchanges the events with the child process through a memory-mapped file, created in {@code /dev/shm} if it exists
+   * or in the temporary directory otherwise, instead of a TCP port. Both the parent and the child must run on Java 9
+   * or later.
+   *
+   * @param wait How the reader threads of both processes wait for events: {@link RemoteEventBus.WaitStrategy#SPIN}
+   *             gives the lowest latency but keeps a core busy in each process
+   */
+  public EventJavaProcessBuilder<T> sharedMemory(RemoteEventBus.WaitStrategy wait) {
+    Path dir = Paths.get("/dev/shm");
+    if (!Files.isDirectory(dir) || !Files.isWritable(dir)) {
+      dir = Paths.get(System.getProperty("java.io.tmpdir"));
+    }
+    Path file = dir.resolve("ipc-bus-" + UUID.randomUUID().toString().substring(0, 8) + ".shm");
+    eventBusBuilder.sharedMemory(file, 1024 * 1024, wait);
+    sharedMemory = file;
+    waitStrategy = wait;
+    unixSocket = null;
+    return this;
+  }
+
+  /**
+   * Exchanges the events with the child process through a memory-mapped file, with the {@link RemoteEventBus.WaitStrategy#PARK}
+   * strategy.
+   *
+   * @see #sharedMemory(RemoteEventBus.WaitStrategy)
+   */
+  public EventJavaProcessBuilder<T> sharedMemory() {
+    return sharedMemory(RemoteEventBus.WaitStrategy.PARK);
+  }
+
+  /**
+   * Detects a child process which is hung while its connection looks open: the connection to a child not answering
+   * the heartbeats for the timeout is closed, so that {@link EventJavaProcess#isEventBusConnected()} becomes false.
+   * Not supported with {@link #sharedMemory()}.
+   *
+   * @see org.terracotta.ipceventbus.event.BaseBuilder#heartbeat(long, long)
+   */
+  public EventJavaProcessBuilder<T> heartbeat(long intervalMillis, long timeoutMillis) {
+    eventBusBuilder.heartbeat(intervalMillis, timeoutMillis);
     return this;
   }
 
@@ -62,8 +139,15 @@ public class EventJavaProcessBuilder<T extends EventJavaProcess> extends JavaPro
   public T build() {
     EventBusServer eventBusServer = eventBusBuilder.build();
 
-    addJvmProp("ipc.bus.host", "localhost");
-    addJvmProp("ipc.bus.port", Integer.toString(eventBusServer.getServerPort()));
+    if (sharedMemory != null) {
+      addJvmProp("ipc.bus.shm", sharedMemory.toAbsolutePath().toString());
+      addJvmProp("ipc.bus.shm.wait", waitStrategy.name());
+    } else if (unixSocket != null) {
+      addJvmProp("ipc.bus.path", unixSocket.toAbsolutePath().toString());
+    } else {
+      addJvmProp("ipc.bus.host", "localhost");
+      addJvmProp("ipc.bus.port", Integer.toString(eventBusServer.getServerPort()));
+    }
     addClasspath(Bus.class);
     if (debug) {
       addJvmProp("ipc.bus.debug", "true");
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus;
+
+/**
+ * Creates the daemon threads running the blocking loops of this library: socket readers and acceptors, process
+ * futures and pipes.
+ * <p>
+ * These threads also call the listeners of the buses using the direct dispatcher, which is the default one: a socket
+ * reader calls the listeners of the events it reads, and the threads closing a connection call the listeners of the
+ * disconnection. When these threads are virtual, so are the threads running such listeners. A listener blocking while
+ * holding a monitor, or in a native call, then pins the carrier thread it runs on: such listeners should be given a
+ * {@link org.terracotta.ipceventbus.event.Dispatcher#queued(int, org.terracotta.ipceventbus.event.Dispatcher.Overflow) queued}
+ * dispatcher, whose threads are platform threads.
+ * <p>
+ * This implementation, used on Java 21 and later, creates virtual threads so that a process can hold thousands of
+ * connections and child processes without as many platform threads. Set the system property
+ * {@code ipc.bus.virtualThreads} to {@code false} to get platform threads instead.
+ *
+ * @author Mathieu Carbou
+ */
+public final class Daemons {
+
+  private static final boolean VIRTUAL = !"false".equalsIgnoreCase(System.getProperty("ipc.bus.virtualThreads"));
+
+  private Daemons() {
+  }
+
+  /**
+   * @return true if the threads created are virtual threads
+   */
+  public static boolean isVirtual() {
+    return VIRTUAL;
+  }
+
+  /**
+   * @param name The thread name
+   * @param task The loop to run
+   * @return an unstarted daemon thread
+   */
+  public static Thread newThread(String name, Runnable task) {
+    if (VIRTUAL) {
+      return Thread.ofVirtual().name(name).unstarted(task);
+    }
+    Thread thread = new Thread(task, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+}
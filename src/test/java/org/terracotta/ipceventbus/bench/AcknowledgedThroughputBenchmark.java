@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.terracotta.ipceventbus.event.EventBusClient;
+import org.terracotta.ipceventbus.event.EventBusServer;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Events per second streamed by a client to a server, depending on the delivery guarantee: a plain client, a
+ * reconnecting client numbering its events and keeping them until acknowledged, and the same client waiting for the
+ * futures of the events.
+ * <p>
+ * Each invocation sends a burst of events and waits for the server to have received them all, or for the last event of
+ * the previous burst to be acknowledged, so that the acknowledgements of a burst are awaited while sending the next one.
+ *
+ * @author Mathieu Carbou
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AcknowledgedThroughputBenchmark {
+
+  static final int BURST = 1000;
+
+  @Param({"plain", "sequenced", "acknowledged"})
+  String delivery;
+
+  EventBusServer server;
+  EventBusClient client;
+  final AtomicLong received = new AtomicLong();
+  long sent;
+  CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
+
+  @Setup
+  public void setup() throws InterruptedException {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.on("telemetry", e -> received.incrementAndGet());
+    EventBusClient.Builder builder = new EventBusClient.Builder().connect(server.getServerPort());
+    if (!delivery.equals("plain")) {
+      builder.reconnect();
+    }
+    client = builder.build();
+    while (server.getClientCount() < 1) {
+      Thread.sleep(10);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BURST)
+  public void stream() {
+    if (delivery.equals("acknowledged")) {
+      CompletableFuture<Void> last = null;
+      for (int i = 0; i < BURST; i++) {
+        last = client.triggerAcknowledged("telemetry", "cpu=0.42");
+      }
+      previous.join();
+      previous = last;
+      return;
+    }
+    for (int i = 0; i < BURST; i++) {
+      client.trigger("telemetry", "cpu=0.42");
+    }
+    sent += BURST;
+    while (received.get() < sent) {
+      Thread.yield();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(AcknowledgedThroughputBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
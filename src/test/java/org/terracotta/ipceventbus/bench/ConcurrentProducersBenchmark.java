@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.terracotta.ipceventbus.event.EventBusClient;
+import org.terracotta.ipceventbus.event.EventBusServer;
+import org.terracotta.ipceventbus.event.Topic;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Events per second sent by 32 threads through one connection: from the client, where producers queue their events
+ * without locking, and from the server, where triggers are synchronized.
+ * <p>
+ * Each invocation sends a burst of events and waits for the peer to have received all the events sent so far.
+ *
+ * @author Mathieu Carbou
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class ConcurrentProducersBenchmark {
+
+  static final int BURST = 100;
+
+  EventBusServer server;
+  EventBusClient client;
+  Topic fromClient;
+  Topic fromServer;
+  final AtomicLong sentByClient = new AtomicLong();
+  final AtomicLong sentByServer = new AtomicLong();
+  final AtomicLong receivedByServer = new AtomicLong();
+  final AtomicLong receivedByClient = new AtomicLong();
+
+  @Setup
+  public void setup() throws InterruptedException {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.on("event", e -> {
+      if (!e.getSource().equals(server.getId())) receivedByServer.incrementAndGet();
+    });
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    client.on("event", e -> {
+      if (!e.getSource().equals(client.getId())) receivedByClient.incrementAndGet();
+    });
+    fromClient = client.topic("event");
+    fromServer = server.topic("event");
+    while (server.getClientCount() < 1) {
+      Thread.sleep(10);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BURST)
+  public void client() {
+    burst(fromClient, sentByClient, receivedByServer);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BURST)
+  public void server() {
+    burst(fromServer, sentByServer, receivedByClient);
+  }
+
+  private static void burst(Topic topic, AtomicLong sent, AtomicLong received) {
+    for (int i = 0; i < BURST; i++) {
+      topic.trigger("data");
+    }
+    long target = sent.addAndGet(BURST);
+    while (received.get() < target) {
+      LockSupport.parkNanos(10_000);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(ConcurrentProducersBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.bench;
+
+import org.terracotta.ipceventbus.Daemons;
+import org.terracotta.ipceventbus.event.EventBusClient;
+import org.terracotta.ipceventbus.event.EventBusServer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Connects many clients to one server in this JVM, then reports the live thread count, the resident memory and the
+ * latency of a broadcast from the server to all the clients.
+ * <p>
+ * Run it from the packaged jar, so that the Java 21 layer is used, and compare with {@code -Dipc.bus.virtualThreads=false}:
+ * <pre>
+ * java -cp target/ipc-eventbus-VERSION.jar:target/test-classes org.terracotta.ipceventbus.bench.ConnectedClientsBenchmark 1000
+ * </pre>
+ * Each connection needs 2 file descriptors, so the open files limit might need to be raised.
+ *
+ * @author Mathieu Carbou
+ */
+public class ConnectedClientsBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+    EventBusServer server = new EventBusServer.Builder().listenRandom().build();
+    final AtomicReference<CountDownLatch> pongs = new AtomicReference<>();
+    List<EventBusClient> clients = new ArrayList<>(clientCount);
+    for (int i = 0; i < clientCount; i++) {
+      EventBusClient client = new EventBusClient.Builder()
+          .id("client-" + i)
+          .connect(server.getServerPort())
+          .build();
+      client.on("ping", e -> pongs.get().countDown());
+      clients.add(client);
+    }
+    while (server.getClientCount() < clientCount) {
+      Thread.sleep(10);
+    }
+
+    long[] latencies = new long[rounds];
+    for (int i = 0; i < rounds; i++) {
+      CountDownLatch latch = new CountDownLatch(clientCount);
+      pongs.set(latch);
+      long start = System.nanoTime();
+      server.trigger("ping");
+      if (!latch.await(1, TimeUnit.MINUTES)) {
+        throw new IllegalStateException("Broadcast not received by " + latch.getCount() + " clients");
+      }
+      latencies[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(latencies);
+
+    System.out.println("Virtual threads:      " + Daemons.isVirtual());
+    System.out.println("Connected clients:    " + clientCount);
+    System.out.println("Live platform threads " + ManagementFactory.getThreadMXBean().getThreadCount());
+    System.out.println("Resident memory:      " + residentMemory());
+    System.out.println("Broadcast latency:    p50=" + micros(latencies[rounds / 2])
+        + " p99=" + micros(latencies[rounds * 99 / 100])
+        + " max=" + micros(latencies[rounds - 1]));
+
+    for (EventBusClient client : clients) {
+      client.close();
+    }
+    server.close();
+  }
+
+  private static String micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+  }
+
+  // Linux only
+  private static String residentMemory() {
+    try {
+      for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+        if (line.startsWith("VmRSS:")) {
+          return line.substring(6).trim();
+        }
+      }
+    } catch (IOException ignored) {
+    }
+    return "n/a";
+  }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.terracotta.ipceventbus.event.EventBusClient;
+import org.terracotta.ipceventbus.event.EventBusServer;
+import org.terracotta.ipceventbus.event.Topic;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Events per second broadcast by a server, such as a parent process sending commands to its children, depending on
+ * the number of clients and of the transport. Each event has a payload of about 4KB.
+ *
+ * @author Mathieu Carbou
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanOutBenchmark {
+
+  static final int BURST = 100;
+
+  @Param({"1", "10", "50"})
+  int clientCount;
+
+  @Param({"false", "true"})
+  boolean nio;
+
+  EventBusServer server;
+  final List<EventBusClient> clients = new ArrayList<>();
+  final AtomicLong received = new AtomicLong();
+  Topic topic;
+  Map<String, String> payload;
+  long expected;
+
+  @Setup
+  public void setup() throws InterruptedException {
+    EventBusServer.Builder serverBuilder = new EventBusServer.Builder().listenRandom();
+    server = (nio ? serverBuilder.nio(2) : serverBuilder).build();
+    for (int i = 0; i < clientCount; i++) {
+      EventBusClient.Builder clientBuilder = new EventBusClient.Builder().connect(server.getServerPort());
+      EventBusClient client = (nio ? clientBuilder.nio() : clientBuilder).build();
+      client.on("command", e -> received.incrementAndGet());
+      clients.add(client);
+    }
+    while (server.getClientCount() < clientCount) {
+      Thread.sleep(10);
+    }
+    topic = server.topic("command");
+    payload = new HashMap<>();
+    for (int i = 0; i < 64; i++) {
+      payload.put("key-" + i, "value-value-value-value-value-value-value-value-value-" + i);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    for (EventBusClient client : clients) {
+      client.close();
+    }
+    server.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BURST)
+  public void broadcast() {
+    for (int i = 0; i < BURST; i++) {
+      topic.trigger(payload);
+    }
+    expected += (long) BURST * clientCount;
+    while (received.get() < expected) {
+      LockSupport.parkNanos(10_000);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(FanOutBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.terracotta.ipceventbus.event.Dispatcher;
+import org.terracotta.ipceventbus.event.EventBus;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of a bus using a partitioned dispatcher, depending on its number of lanes.
+ * <p>
+ * Producers trigger events spread over 64 keys, and each listener call burns some CPU. The dispatcher blocks the
+ * producers when a lane is full, so the measured throughput is the one of the lanes.
+ *
+ * @author Mathieu Carbou
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class PartitionedDispatcherBenchmark {
+
+  @Param({"1", "2", "4", "8"})
+  int lanes;
+
+  @Param({"500"})
+  int work;
+
+  Dispatcher dispatcher;
+  EventBus eventBus;
+
+  @Setup
+  public void setup() {
+    dispatcher = Dispatcher.partitioned(lanes, 4096, Dispatcher.Overflow.BLOCK, e -> e.getData());
+    eventBus = new EventBus.Builder()
+        .dispatcher(dispatcher)
+        .on("tick", e -> Blackhole.consumeCPU(work))
+        .build();
+  }
+
+  @TearDown
+  public void tearDown() {
+    dispatcher.close();
+  }
+
+  @State(Scope.Thread)
+  public static class Keys {
+    int next;
+  }
+
+  @Benchmark
+  public void trigger(Keys keys) {
+    eventBus.trigger("tick", keys.next++ & 63);
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(PartitionedDispatcherBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
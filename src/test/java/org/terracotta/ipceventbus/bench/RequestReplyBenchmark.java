@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.terracotta.ipceventbus.event.Event;
+import org.terracotta.ipceventbus.event.EventBusClient;
+import org.terracotta.ipceventbus.event.EventBusServer;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls from a server to its client, such as a parent process calling into its child: the time of a single call
+ * waiting for its reply, and of a call among a batch of calls waiting for their replies together.
+ *
+ * @author Mathieu Carbou
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RequestReplyBenchmark {
+
+  static final int BATCH = 100;
+
+  @Param({"blocking", "nio"})
+  String transport;
+
+  EventBusServer server;
+  EventBusClient client;
+  @SuppressWarnings("unchecked")
+  final CompletableFuture<Event>[] calls = new CompletableFuture[BATCH];
+
+  @Setup
+  public void setup() throws InterruptedException {
+    EventBusServer.Builder serverBuilder = new EventBusServer.Builder().listenRandom();
+    EventBusClient.Builder clientBuilder = new EventBusClient.Builder();
+    if (transport.equals("nio")) {
+      serverBuilder.nio(1);
+      clientBuilder.nio();
+    }
+    server = serverBuilder.build();
+    client = clientBuilder.connect(server.getServerPort()).build();
+    client.reply("load", request -> 0.42);
+    while (server.getClientCount() < 1) {
+      Thread.sleep(10);
+    }
+    // lets the client advertise its handler
+    Thread.sleep(200);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+  }
+
+  @Benchmark
+  public Object call() {
+    return server.request("load", null, 5000).join().getData();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public Object batch() {
+    for (int i = 0; i < BATCH; i++) {
+      calls[i] = server.request("load", null, 5000);
+    }
+    Object last = null;
+    for (CompletableFuture<Event> call : calls) {
+      last = call.join().getData();
+    }
+    return last;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(RequestReplyBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.ipceventbus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.terracotta.ipceventbus.event.EventBusClient;
+import org.terracotta.ipceventbus.event.EventBusServer;
+import org.terracotta.ipceventbus.event.RemoteEventBus;
+import org.terracotta.ipceventbus.event.Topic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the shared memory transport with loopback TCP: round-trip time of an event answered by the server, sampled
+ * so that JMH reports its percentiles (p50, p99, p99.9...), and events per second streamed by a client to its server.
+ * <p>
+ * Run it with {@code -p wait=SPIN} on a machine with spare cores to get the lowest latency: the default
+ * {@link RemoteEventBus.WaitStrategy#YIELD} strategy leaves the cores to the other threads when idle.
+ *
+ * @author Mathieu Carbou
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SharedMemoryBenchmark {
+
+  static final int BURST = 1000;
+
+  @Param({"tcp", "shm"})
+  String transport;
+
+  @Param({"YIELD"})
+  RemoteEventBus.WaitStrategy wait;
+
+  Path dir;
+  EventBusServer server;
+  EventBusClient client;
+  Topic telemetry;
+  Topic ping;
+  final AtomicLong received = new AtomicLong();
+  volatile long pongs;
+  long sent;
+  long pinged;
+
+  @Setup
+  public void setup() throws IOException, InterruptedException {
+    if ("shm".equals(transport)) {
+      dir = Files.createTempDirectory("ipc-bus");
+      Path file = dir.resolve("bench.shm");
+      server = new EventBusServer.Builder().sharedMemory(file, 1024 * 1024, wait).build();
+      client = new EventBusClient.Builder().sharedMemory(file, wait).build();
+    } else {
+      server = new EventBusServer.Builder().listenRandom().build();
+      client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    }
+    server.on("telemetry", e -> received.incrementAndGet());
+    server.on("ping", e -> server.trigger("pong", e.getData()));
+    client.on("pong", e -> pongs = e.getData(Long.class));
+    telemetry = client.topic("telemetry");
+    ping = client.topic("ping");
+    while (server.getClientCount() < 1) {
+      Thread.sleep(10);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+    if (dir != null) {
+      Files.delete(dir);
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void roundTrip() {
+    ping.trigger(++pinged);
+    while (pongs != pinged) {
+      if (wait != RemoteEventBus.WaitStrategy.SPIN) {
+        Thread.yield();
+      }
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(BURST)
+  public void stream() {
+    for (int i = 0; i < BURST; i++) {
+      telemetry.trigger("cpu=0.42");
+    }
+    sent += BURST;
+    while (received.get() < sent) {
+      Thread.yield();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(SharedMemoryBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terracotta.ipceventbus.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.terracotta.ipceventbus.event.EventBusClient;
+import org.terracotta.ipceventbus.event.EventBusServer;
+import org.terracotta.ipceventbus.event.Topic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Compares a loopback TCP connection with a Unix domain socket, both served by the NIO transport, as used between a
+ * parent process and its children: events per second streamed by a client to its server, and round-trip time of an
+ * event answered by the server. Needs Java 16 or later.
+ *
+ * @author Mathieu Carbou
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UnixSocketBenchmark {
+
+  static final int BURST = 1000;
+
+  @Param({"tcp", "unix"})
+  String transport;
+
+  Path socket;
+  EventBusServer server;
+  EventBusClient client;
+  Topic telemetry;
+  Topic ping;
+  final AtomicLong received = new AtomicLong();
+  final AtomicLong pongs = new AtomicLong();
+  long sent;
+  long pinged;
+
+  @Setup
+  public void setup() throws IOException, InterruptedException {
+    EventBusServer.Builder serverBuilder = new EventBusServer.Builder().nio(1);
+    EventBusClient.Builder clientBuilder = new EventBusClient.Builder().nio();
+    if ("unix".equals(transport)) {
+      socket = Files.createTempDirectory("ipc-bus").resolve("bench.sock");
+      server = serverBuilder.listen(socket).build();
+      clientBuilder.connect(socket);
+    } else {
+      server = serverBuilder.listenRandom().build();
+      clientBuilder.connect(server.getServerPort());
+    }
+    server.on("telemetry", e -> received.incrementAndGet());
+    server.on("ping", e -> server.trigger("pong", e.getData()));
+    client = clientBuilder.build();
+    client.on("pong", e -> pongs.incrementAndGet());
+    telemetry = client.topic("telemetry");
+    ping = client.topic("ping");
+    while (server.getClientCount() < 1) {
+      Thread.sleep(10);
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    client.close();
+    server.close();
+    if (socket != null) {
+      Files.deleteIfExists(socket.getParent());
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(BURST)
+  public void stream() {
+    for (int i = 0; i < BURST; i++) {
+      telemetry.trigger("cpu=0.42");
+    }
+    sent += BURST;
+    while (received.get() < sent) {
+      LockSupport.parkNanos(10_000);
+    }
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void roundTrip() {
+    ping.trigger(++pinged);
+    while (pongs.get() < pinged) {
+      Thread.yield();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    new Runner(new OptionsBuilder().include(UnixSocketBenchmark.class.getSimpleName()).build()).run();
+  }
+
+}
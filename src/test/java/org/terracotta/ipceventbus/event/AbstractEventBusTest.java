@@ -155,6 +155,35 @@ public abstract class AbstractEventBusTest<T extends EventBus> {
     assertEquals(1, listener.events);
   }
 
+  @Test
+  public void topic_triggers_live_listeners() {
+    Topic topic = eventBus.topic("action1");
+    assertEquals("action1", topic.getName());
+
+    RecordingEventListener listener = new RecordingEventListener();
+    eventBus.on("action1", listener);
+    topic.trigger("data");
+    assertEquals(1, listener.events);
+    assertEquals("action1", listener.names.get(0));
+    assertEquals(eventBus.getId(), listener.sources.get(0));
+
+    RecordingEventListener all = new RecordingEventListener();
+    eventBus.on(all);
+    topic.trigger();
+    assertEquals(2, listener.events);
+    assertEquals(1, all.events);
+
+    eventBus.unbind("action1");
+    topic.trigger();
+    assertEquals(2, listener.events);
+    assertEquals(2, all.events);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void error_topic_internal_event_name() {
+    eventBus.topic("eventbus.something");
+  }
+
   @Test(expected = NullPointerException.class)
   public void error_trigger_null_event_name() {
     eventBus.trigger(null);
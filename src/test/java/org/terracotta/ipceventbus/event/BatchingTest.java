@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class BatchingTest {
+
+  private final AtomicInteger received = new AtomicInteger();
+  private EventBusServer server;
+  private EventBusClient client;
+
+  @After
+  public void close() throws IOException {
+    if (client != null) client.close();
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void events_are_held_for_the_linger_time() throws Exception {
+    connect(new EventBusClient.Builder().batch(8192, TimeUnit.MILLISECONDS.toMicros(500)));
+
+    client.trigger("event");
+    Thread.sleep(100);
+    assertEquals(0, received.get());
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.get() == 1);
+  }
+
+  @Test
+  public void full_batch_is_sent_before_the_linger_time() throws Exception {
+    connect(new EventBusClient.Builder().batch(128, TimeUnit.MINUTES.toMicros(1)));
+
+    for (int i = 0; i < 20; i++) {
+      client.trigger("event", "0123456789");
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.get() > 0);
+  }
+
+  @Test
+  public void events_of_all_producers_are_sent_in_order() throws Exception {
+    connect(new EventBusClient.Builder().batch(1024, 50));
+    final Map<String, List<Integer>> perThread = new ConcurrentHashMap<String, List<Integer>>();
+    server.on("event", e -> {
+      String[] data = e.getData(String.class).split(":");
+      perThread.computeIfAbsent(data[0], k -> new ArrayList<Integer>()).add(Integer.parseInt(data[1]));
+    });
+
+    final int producers = 8;
+    final int events = 5000;
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < producers; t++) {
+      final String name = "producer-" + t;
+      threads.add(new Thread(() -> {
+        for (int i = 0; i < events; i++) {
+          client.trigger("event", name + ":" + i);
+        }
+      }));
+    }
+    for (Thread thread : threads) thread.start();
+    for (Thread thread : threads) thread.join();
+
+    Awaitility.waitAtMost(30, TimeUnit.SECONDS).until(() -> received.get() == producers * events);
+    assertEquals(producers, perThread.size());
+    for (List<Integer> sequence : perThread.values()) {
+      for (int i = 0; i < events; i++) {
+        assertEquals(i, sequence.get(i).intValue());
+      }
+    }
+  }
+
+  @Test
+  public void pending_events_are_sent_on_close() throws Exception {
+    connect(new EventBusClient.Builder().batch(8192, TimeUnit.MINUTES.toMicros(1)));
+
+    for (int i = 0; i < 10; i++) {
+      client.trigger("event");
+    }
+    client.close();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.get() == 10);
+  }
+
+  private void connect(EventBusClient.Builder builder) throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.on("event", e -> received.incrementAndGet());
+    client = builder.connect(server.getServerPort()).build();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+  }
+
+}
@@ -0,0 +1,291 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class BinaryEventCodecTest {
+
+  private final EventCodec codec = EventCodec.binary();
+
+  @Test
+  public void round_trips_common_types() throws Exception {
+    assertNull(roundTrip(null));
+    assertEquals("", roundTrip(""));
+    assertEquals("ascii", roundTrip("ascii"));
+    assertEquals("été 東京 😀", roundTrip("été 東京 😀"));
+    assertEquals(Integer.MIN_VALUE, roundTrip(Integer.MIN_VALUE));
+    assertEquals(Long.MAX_VALUE, roundTrip(Long.MAX_VALUE));
+    assertEquals(true, roundTrip(true));
+    assertEquals(Math.PI, roundTrip(Math.PI));
+    assertEquals(1.5f, roundTrip(1.5f));
+    assertEquals((short) -3, roundTrip((short) -3));
+    assertEquals((byte) 7, roundTrip((byte) 7));
+    assertEquals('c', roundTrip('c'));
+    assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) roundTrip(new byte[]{1, 2, 3}));
+  }
+
+  @Test
+  public void round_trips_string_maps_keeping_their_type() throws Exception {
+    Map<String, String> hashMap = new HashMap<String, String>();
+    hashMap.put("a", "1");
+    hashMap.put("b", null);
+    hashMap.put(null, "2");
+    Object copy = roundTrip(hashMap);
+    assertEquals(HashMap.class, copy.getClass());
+    assertEquals(hashMap, copy);
+
+    Map<String, String> linkedMap = new LinkedHashMap<String, String>();
+    for (int i = 20; i > 0; i--) {
+      linkedMap.put("key" + i, "value" + i);
+    }
+    copy = roundTrip(linkedMap);
+    assertEquals(LinkedHashMap.class, copy.getClass());
+    assertEquals(Arrays.asList(linkedMap.keySet().toArray()), Arrays.asList(((Map<?, ?>) copy).keySet().toArray()));
+  }
+
+  @Test
+  public void serializes_other_types() throws Exception {
+    Map<String, Object> notStrings = new HashMap<String, Object>();
+    notStrings.put("a", 1);
+    assertEquals(notStrings, roundTrip(notStrings));
+    TreeMap<String, String> treeMap = new TreeMap<String, String>(Collections.reverseOrder());
+    treeMap.put("a", "1");
+    treeMap.put("b", "2");
+    assertEquals("b", ((TreeMap<?, ?>) roundTrip(treeMap)).firstKey());
+    assertEquals(new BigDecimal("1.25"), roundTrip(new BigDecimal("1.25")));
+    assertEquals(Arrays.asList(1, "2"), roundTrip(Arrays.asList(1, "2")));
+  }
+
+  @Test
+  public void encodes_with_any_data_output() throws Exception {
+    char[] chars = new char[70000];
+    Arrays.fill(chars, 'é');
+    String longString = new String(chars);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    codec.encode(longString, out);
+    codec.encode(Collections.singletonMap("k", "v"), out);
+    codec.encode(42, out);
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    assertEquals(longString, codec.decode(in));
+    assertEquals(Collections.singletonMap("k", "v"), codec.decode(in));
+    assertEquals(42, codec.decode(in));
+  }
+
+  @Test
+  public void frames_carry_event_header() throws Exception {
+    FrameOutput out = new FrameOutput(4);
+    Frames.writeEvent(out, codec, new DefaultEvent("source", "name", 123L, "data"), null);
+    Frames.writeEvent(out, codec, new DefaultEvent("source", "événement", 456L, null), "événement".getBytes("UTF-8"));
+
+    FrameInput in = new FrameInput(out.buffer(), 0, out.size());
+    int length = in.readInt();
+    assertEquals(Frames.EVENT, in.readByte());
+    Event event = Frames.readEvent(in, codec);
+    assertEquals(4 + length, in.position());
+    assertEquals("source", event.getSource());
+    assertEquals("name", event.getName());
+    assertEquals(123L, event.getTimestamp());
+    assertEquals("data", event.getData());
+
+    in.readInt();
+    assertEquals(Frames.EVENT, in.readByte());
+    event = Frames.readEvent(in, codec);
+    assertEquals("événement", event.getName());
+    assertEquals(456L, event.getTimestamp());
+    assertNull(event.getData());
+    assertEquals(0, in.remaining());
+  }
+
+  @Test
+  public void compact_frames_only_define_their_strings_once() throws Exception {
+    FrameDictionary sent = new FrameDictionary();
+    FrameOutput plain = new FrameOutput();
+    Frames.writeEvent(plain, codec, new DefaultEvent("source", "name", 1L, "data"), null);
+    FrameOutput first = new FrameOutput();
+    Frames.writeEvent(first, codec, new DefaultEvent("source", "name", 1L, "data"), null, 0, sent);
+    FrameOutput next = new FrameOutput();
+    Frames.writeEvent(next, codec, new DefaultEvent(new String("source"), new String("name"), 2L, "data"), null, 7, sent);
+    assertEquals(plain.size() + 2, first.size());
+    assertEquals(plain.size() - "source".length() - "name".length() + 8, next.size());
+
+    FrameDictionary received = new FrameDictionary();
+    FrameInput in = new FrameInput(first.buffer(), 4, first.size() - 4);
+    assertEquals(Frames.EVENT | Frames.COMPACT, in.readByte());
+    Event event1 = Frames.readEvent(in, codec, received);
+    in = new FrameInput(next.buffer(), 4, next.size() - 4);
+    assertEquals(Frames.SEQUENCED_EVENT | Frames.COMPACT, in.readByte());
+    assertEquals(7L, in.readLong());
+    RelayedEvent event2 = Frames.readRelayed(in, codec, received);
+    assertEquals("source", event2.getSource());
+    assertEquals(2L, event2.getTimestamp());
+    assertEquals("data", event2.getData());
+    assertSame(event1.getName(), event2.getName());
+    assertSame("source", event1.getSource());
+
+    // a relayed frame is a plain frame, readable by any peer
+    in = new FrameInput(event2.getFrame(), 4, event2.getFrame().length - 4);
+    assertEquals(Frames.EVENT, in.readByte());
+    Event copy = Frames.readEvent(in, codec);
+    assertEquals("name", copy.getName());
+    assertEquals(2L, copy.getTimestamp());
+    assertEquals("data", copy.getData());
+  }
+
+  @Test
+  public void dictionary_writes_strings_inline_once_full() throws Exception {
+    FrameDictionary sent = new FrameDictionary();
+    FrameDictionary received = new FrameDictionary();
+    FrameOutput out = new FrameOutput();
+    for (int i = 0; i < FrameDictionary.MAX_ENTRIES + 10; i++) {
+      sent.write(out, "event-" + i);
+    }
+    sent.write(out, null);
+    sent.write(out, "event-0");
+    sent.write(out, "event-" + (FrameDictionary.MAX_ENTRIES + 5));
+    int size = out.size();
+    sent.write(out, "event-" + (FrameDictionary.MAX_ENTRIES + 5));
+    assertTrue(out.size() - size > 10);
+
+    FrameInput in = new FrameInput(out.buffer(), 0, out.size());
+    for (int i = 0; i < FrameDictionary.MAX_ENTRIES + 10; i++) {
+      assertEquals("event-" + i, received.read(in));
+    }
+    assertNull(received.read(in));
+    assertEquals("event-0", received.read(in));
+    assertEquals("event-" + (FrameDictionary.MAX_ENTRIES + 5), received.read(in));
+    assertEquals("event-" + (FrameDictionary.MAX_ENTRIES + 5), received.read(in));
+    assertEquals(0, in.remaining());
+  }
+
+  @Test
+  public void dictionary_forgets_the_strings_of_unsent_frames() throws Exception {
+    FrameDictionary sent = new FrameDictionary();
+    FrameOutput out = new FrameOutput();
+    sent.write(out, "a");
+    int mark = sent.mark();
+    sent.write(new FrameOutput(), "b");
+    sent.rollback(mark);
+    sent.write(out, "b");
+    sent.write(out, "b");
+
+    FrameDictionary received = new FrameDictionary();
+    FrameInput in = new FrameInput(out.buffer(), 0, out.size());
+    assertEquals("a", received.read(in));
+    assertEquals("b", received.read(in));
+    assertEquals("b", received.read(in));
+  }
+
+  @Test
+  public void unknown_string_reference_is_detected() throws Exception {
+    FrameOutput out = new FrameOutput();
+    out.writeVarInt(3 << 1);
+    try {
+      new FrameDictionary().read(new FrameInput(out.buffer(), 0, out.size()));
+      fail();
+    } catch (StreamCorruptedException e) {
+      assertEquals("Unknown string: 3", e.getMessage());
+    }
+  }
+
+  @Test
+  public void lengths_larger_than_the_frame_are_detected() throws Exception {
+    for (int tag : new int[]{10, 11, 12, 127}) {
+      for (int length : new int[]{-1, Integer.MAX_VALUE, 2}) {
+        FrameOutput out = new FrameOutput();
+        out.writeByte(tag);
+        out.writeVarInt(length);
+        out.writeByte(0);
+        try {
+          codec.decode(new FrameInput(out.buffer(), 0, out.size()));
+          fail();
+        } catch (EventBusIOException e) {
+          assertEquals("Bad length: " + length, e.getMessage());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void truncated_frame_is_detected() throws Exception {
+    FrameOutput out = new FrameOutput();
+    Frames.writeEvent(out, codec, new DefaultEvent("source", "name", 123L, "data"), null);
+    FrameInput in = new FrameInput(out.buffer(), 5, out.size() - 6);
+    try {
+      Frames.readEvent(in, codec);
+      fail();
+    } catch (EOFException e) {
+      assertTrue(e.getMessage().startsWith("Frame truncated"));
+    }
+  }
+
+  @Test
+  public void negotiates_a_codec_known_by_the_peer() throws Exception {
+    EventCodec custom = new CountingCodec("custom");
+    assertSame(custom, Frames.negotiate(custom, Frames.decodable(custom)));
+    assertSame(codec, Frames.negotiate(custom, Frames.decodable(codec)));
+    assertSame(codec, Frames.negotiate(codec, Frames.decodable(custom)));
+    assertNull(Frames.negotiate(codec, new String[]{"other"}));
+    assertNull(Frames.negotiate(codec, "garbage"));
+    assertSame(custom, Frames.resolve(custom, "custom"));
+    assertSame(codec, Frames.resolve(custom, "binary"));
+    assertTrue(Frames.supports(Frames.decodable(custom), Frames.DICTIONARY));
+    assertFalse(Frames.supports(new String[]{"binary"}, Frames.DICTIONARY));
+  }
+
+  private Object roundTrip(Object data) throws Exception {
+    FrameOutput out = new FrameOutput(1);
+    codec.encode(data, out);
+    FrameInput in = new FrameInput(out.toByteArray(), 0, out.size());
+    Object copy = codec.decode(in);
+    assertEquals(0, in.remaining());
+    return copy;
+  }
+
+}
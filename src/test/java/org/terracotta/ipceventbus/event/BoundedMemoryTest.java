@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a connection does not retain the events it has sent or received.
+ * <p>
+ * The soak tests send {@code ipc.bus.soak.events} events (200000 by default): run them with
+ * {@code -Dipc.bus.soak.events=10000000} for a long run.
+ *
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class BoundedMemoryTest {
+
+  private static final int EVENTS = Integer.getInteger("ipc.bus.soak.events", 200000);
+  private static final long MAX_HEAP_GROWTH = 16 * 1024 * 1024;
+
+  private EventBusServer server;
+  private EventBusClient client;
+
+  @After
+  public void close() throws IOException {
+    if (client != null) client.close();
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void object_stream_is_reset_after_some_objects() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ResettingObjectOutputStream out = new ResettingObjectOutputStream(bytes, 2, Long.MAX_VALUE);
+    String data = "data";
+    out.send(data);
+    out.send(data);
+    out.send(data);
+
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    Object first = in.readObject();
+    assertSame(first, in.readObject());
+    assertNotSame(first, in.readObject());
+  }
+
+  @Test
+  public void object_stream_is_reset_after_some_bytes() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ResettingObjectOutputStream out = new ResettingObjectOutputStream(bytes, Integer.MAX_VALUE, 1);
+    String data = "data";
+    out.send(data);
+    out.send(data);
+    out.send(data);
+
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    Object first = in.readObject();
+    Object second = in.readObject();
+    assertNotSame(first, second);
+    assertNotSame(second, in.readObject());
+  }
+
+  @Test
+  public void binary_connection_has_flat_heap() throws Exception {
+    soak(EventCodec.binary());
+  }
+
+  @Test
+  public void serialized_connection_has_flat_heap() throws Exception {
+    soak(null);
+  }
+
+  private void soak(EventCodec clientCodec) throws Exception {
+    ServerSocket serverSocket = new ServerSocket();
+    serverSocket.bind(new InetSocketAddress("localhost", 0));
+    server = new DefaultEventBusServer("server", serverSocket, new RethrowingErrorListener(), new Listeners(), Dispatcher.direct(), new ConnectionOptions());
+    final AtomicLong received = new AtomicLong();
+    server.on("soak", e -> received.incrementAndGet());
+    client = new DefaultEventBusClient("client", new Socket("localhost", server.getServerPort()), new RethrowingErrorListener(), new Listeners(), Dispatcher.direct(), WireProtocolTest.options(clientCodec));
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+
+    Topic topic = client.topic("soak");
+    int warmup = EVENTS / 10;
+    send(topic, 0, warmup, received);
+    long before = usedHeap();
+    send(topic, warmup, EVENTS, received);
+    long after = usedHeap();
+
+    assertEquals(EVENTS, received.get());
+    assertTrue("Heap grew by " + (after - before) + " bytes", after - before < MAX_HEAP_GROWTH);
+  }
+
+  private static void send(Topic topic, int from, int to, AtomicLong received) throws Exception {
+    for (int i = from; i < to; i++) {
+      topic.trigger("event-" + i);
+    }
+    Awaitility.waitAtMost(5, TimeUnit.MINUTES).until(() -> received.get() == to);
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+}
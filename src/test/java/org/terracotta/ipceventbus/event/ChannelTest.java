@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class ChannelTest {
+
+  private final List<EventBusClient> clients = new ArrayList<EventBusClient>();
+  private final List<BlockingQueue<Event>> received = new ArrayList<BlockingQueue<Event>>();
+  private EventBusServer server;
+
+  @After
+  public void close() throws IOException {
+    for (EventBusClient client : clients) {
+      client.close();
+    }
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void channel_events_only_reach_the_members() throws Exception {
+    channel_events_only_reach_the_members(new EventBusServer.Builder().listenRandom().build(), false);
+  }
+
+  @Test
+  public void channel_events_only_reach_the_members_over_nio() throws Exception {
+    channel_events_only_reach_the_members(new EventBusServer.Builder().listenRandom().nio(2).build(), true);
+  }
+
+  private void channel_events_only_reach_the_members(EventBusServer server, boolean nio) throws Exception {
+    this.server = server;
+    server.on("data", e -> {
+    });
+    EventBusClient first = connect(nio, "workers");
+    EventBusClient second = connect(nio);
+    EventBusClient third = connect(nio, "observers");
+    second.join("workers");
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getChannelMembers("workers").size() == 2 && server.getChannelMembers("observers").size() == 1);
+    assertEquals(new HashSet<String>(Arrays.asList("workers")), first.getChannels());
+    assertEquals(new HashSet<String>(Arrays.asList("workers")), second.getChannels());
+
+    assertEquals(2, server.triggerChannel("workers", "data", "work"));
+    assertEquals(1, server.triggerChannel("observers", "data", "watch"));
+    assertEquals(0, server.triggerChannel("nobody", "data", "lost"));
+    server.trigger("data", "end");
+
+    assertEquals("work", received.get(0).poll(10, TimeUnit.SECONDS).getData());
+    assertEquals("work", received.get(1).poll(10, TimeUnit.SECONDS).getData());
+    assertEquals("watch", received.get(2).poll(10, TimeUnit.SECONDS).getData());
+    for (BlockingQueue<Event> queue : received) {
+      assertEquals("end", queue.poll(10, TimeUnit.SECONDS).getData());
+      assertNull(queue.poll());
+    }
+
+    // leaving and disconnecting remove the members
+    second.leave("workers");
+    third.close();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getChannelMembers("workers").size() == 1 && server.getChannelMembers("observers").isEmpty());
+    assertEquals(1, server.triggerChannel("workers", "data", "again"));
+    assertEquals("again", received.get(0).poll(10, TimeUnit.SECONDS).getData());
+    assertTrue(second.getChannels().isEmpty());
+  }
+
+  @Test
+  public void channel_events_only_reach_the_members_listening_to_them() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    EventBusClient client = new EventBusClient.Builder().connect(server.getServerPort()).join("workers").build();
+    clients.add(client);
+    client.on("data", e -> {
+    });
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getChannelMembers("workers").size() == 1);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.triggerChannel("workers", "data", 1) == 1);
+    assertEquals(0, server.triggerChannel("workers", "other", 1));
+  }
+
+  @Test
+  public void channels_need_a_socket_transport() throws Exception {
+    Path file = Files.createTempFile("channels", ".shm");
+    Files.delete(file);
+    try {
+      new EventBusClient.Builder().sharedMemory(file).join("workers").build();
+      fail();
+    } catch (EventBusException e) {
+      assertTrue(e.getMessage().contains("socket transports"));
+    }
+  }
+
+  private EventBusClient connect(boolean nio, String... channels) {
+    EventBusClient.Builder builder = new EventBusClient.Builder().connect(server.getServerPort()).join(channels);
+    EventBusClient client = nio ? builder.nio().build() : builder.build();
+    BlockingQueue<Event> queue = new LinkedBlockingQueue<Event>();
+    client.on("data", queue::add);
+    clients.add(client);
+    received.add(queue);
+    return client;
+  }
+
+}
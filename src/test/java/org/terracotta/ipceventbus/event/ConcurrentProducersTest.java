@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Many threads triggering events on the same client: no frame must be corrupted and the order of the events of each
+ * thread must be kept.
+ *
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class ConcurrentProducersTest {
+
+  private static final int PRODUCERS = 32;
+  private static final int EVENTS = 10000;
+
+  private EventBusServer server;
+  private EventBusClient client;
+
+  @After
+  public void close() throws IOException {
+    if (client != null) client.close();
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void queue_keeps_the_order_of_each_producer() throws Exception {
+    final MpscQueue<long[]> queue = new MpscQueue<long[]>();
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < PRODUCERS; t++) {
+      final int producer = t;
+      threads.add(new Thread(() -> {
+        awaitQuietly(start);
+        for (int i = 0; i < EVENTS; i++) {
+          queue.offer(new long[]{producer, i});
+        }
+      }));
+    }
+    for (Thread thread : threads) thread.start();
+    start.countDown();
+
+    int[] next = new int[PRODUCERS];
+    int polled = 0;
+    while (polled < PRODUCERS * EVENTS) {
+      long[] e = queue.poll();
+      if (e != null) {
+        assertEquals(next[(int) e[0]]++, e[1]);
+        polled++;
+      }
+    }
+    for (Thread thread : threads) thread.join();
+    assertEquals(null, queue.poll());
+  }
+
+  @Test
+  public void client_is_safe_to_use_from_many_threads() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    final int[] next = new int[PRODUCERS];
+    final AtomicInteger outOfOrder = new AtomicInteger();
+    final AtomicInteger received = new AtomicInteger();
+    // called by the reader thread of the connection
+    server.on("event", e -> {
+      int[] data = e.getData(int[].class);
+      if (next[data[0]]++ != data[1]) {
+        outOfOrder.incrementAndGet();
+      }
+      received.incrementAndGet();
+    });
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+
+    final Topic topic = client.topic("event");
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < PRODUCERS; t++) {
+      final int producer = t;
+      threads.add(new Thread(() -> {
+        awaitQuietly(start);
+        for (int i = 0; i < EVENTS; i++) {
+          if (i % 2 == 0) {
+            topic.trigger(new int[]{producer, i});
+          } else {
+            client.trigger("event", new int[]{producer, i});
+          }
+        }
+      }));
+    }
+    for (Thread thread : threads) thread.start();
+    start.countDown();
+    for (Thread thread : threads) thread.join();
+
+    Awaitility.waitAtMost(2, TimeUnit.MINUTES).until(() -> received.get() == PRODUCERS * EVENTS);
+    assertEquals(0, outOfOrder.get());
+    assertFalse(client.isClosed());
+    assertEquals(1, server.getClientCount());
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
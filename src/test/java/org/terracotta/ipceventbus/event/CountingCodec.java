@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A codec delegating to the binary codec and counting its calls
+ *
+ * @author Mathieu Carbou
+ */
+class CountingCodec implements EventCodec {
+
+  final AtomicInteger encoded = new AtomicInteger();
+  final AtomicInteger decoded = new AtomicInteger();
+  private final String name;
+
+  CountingCodec(String name) {
+    this.name = name;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public void encode(Object data, DataOutput out) throws IOException {
+    encoded.incrementAndGet();
+    EventCodec.binary().encode(data, out);
+  }
+
+  @Override
+  public Object decode(DataInput in) throws IOException, ClassNotFoundException {
+    decoded.incrementAndGet();
+    return EventCodec.binary().decode(in);
+  }
+
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that a peer only sends the events the receiving side has granted, the other ones waiting in its queue.
+ *
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class CreditTest {
+
+  private final BlockingQueue<Integer> received = new LinkedBlockingQueue<Integer>();
+  private final CountDownLatch release = new CountDownLatch(1);
+  private EventBusServer server;
+  private EventBusClient client;
+
+  @After
+  public void close() throws IOException {
+    release.countDown();
+    if (client != null) client.close();
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void client_waits_for_the_server_to_dispatch() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().credits(10).build();
+    server.on("tick", this::slowListener);
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    clientIsLimited();
+  }
+
+  @Test
+  public void nio_client_waits_for_the_nio_server_to_dispatch() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().nio(1).credits(10).build();
+    server.on("tick", this::slowListener);
+    client = new EventBusClient.Builder().connect(server.getServerPort()).nio().build();
+    clientIsLimited();
+  }
+
+  @Test
+  public void client_waits_for_a_queued_dispatcher_to_drain() throws Exception {
+    // the dispatcher could hold all the events: the window keeps them in the client instead
+    server = new EventBusServer.Builder().listenRandom().credits(10).dispatcher(Dispatcher.queued(100, Dispatcher.Overflow.DROP_NEWEST)).build();
+    server.on("tick", this::slowListener);
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    clientIsLimited();
+    assertEquals(0, server.getDroppedEvents());
+  }
+
+  @Test
+  public void server_waits_for_a_client_to_dispatch() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    client = new EventBusClient.Builder().connect(server.getServerPort()).credits(10).build();
+    client.on("tick", this::slowListener);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCredits().values().contains(10) && server.getClientCount() == 1);
+    for (int i = 0; i < 100; i++) {
+      server.trigger("tick", i);
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCredits().values().iterator().next() == 0 && server.getQueueDepth() == 90);
+    Thread.sleep(200);
+    assertEquals(1, received.size());
+    assertEquals(90, server.getQueueDepth());
+    release.countDown();
+    allReceived();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCredits().values().iterator().next() > 0);
+  }
+
+  @Test
+  public void peers_not_granting_credits_are_not_limited() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.on("tick", e -> received.add(e.getData(Integer.class)));
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    release.countDown();
+    for (int i = 0; i < 100; i++) {
+      client.trigger("tick", i);
+    }
+    allReceived();
+    assertEquals(-1, client.getAvailableCredits());
+    assertEquals(Integer.valueOf(-1), server.getClientCredits().values().iterator().next());
+  }
+
+  @Test
+  public void credits_need_a_socket() throws Exception {
+    try {
+      new EventBusServer.Builder().credits(0);
+      fail();
+    } catch (IllegalArgumentException ignored) {
+    }
+    Path file = Files.createTempFile("eventbus", ".shm");
+    try {
+      new EventBusServer.Builder().sharedMemory(file).credits(10).build();
+      fail();
+    } catch (EventBusException e) {
+      assertTrue(e.getMessage().startsWith("Credits are only supported by the socket transports"));
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private void clientIsLimited() throws Exception {
+    // the window announced by the server limits the client from its first event
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> client.getAvailableCredits() == 10);
+    for (int i = 0; i < 100; i++) {
+      client.trigger("tick", i);
+    }
+    // the first event is being dispatched, the next nine are waiting in the server
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> client.getAvailableCredits() == 0 && client.getQueueDepth() == 90);
+    Thread.sleep(200);
+    assertEquals(1, received.size());
+    assertEquals(90, client.getQueueDepth());
+    release.countDown();
+    allReceived();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> client.getAvailableCredits() > 0);
+  }
+
+  private void allReceived() throws InterruptedException {
+    List<Integer> events = new ArrayList<Integer>();
+    for (int i = 0; i < 100; i++) {
+      Integer event = received.poll(10, TimeUnit.SECONDS);
+      assertNotNull("missing event " + i, event);
+      events.add(event);
+    }
+    for (int i = 0; i < 100; i++) {
+      assertEquals(Integer.valueOf(i), events.get(i));
+    }
+  }
+
+  private void slowListener(Event event) {
+    received.add(event.getData(Integer.class));
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class DispatcherTest {
+
+  final CountDownLatch release = new CountDownLatch(1);
+  final List<Object> received = Collections.synchronizedList(new ArrayList<Object>());
+  final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+
+  Dispatcher dispatcher;
+
+  @After
+  public void close() {
+    release.countDown();
+    if (dispatcher != null) {
+      dispatcher.close();
+    }
+  }
+
+  @Test
+  public void direct_dispatch_uses_caller_thread() {
+    EventBus eventBus = build(Dispatcher.direct());
+    eventBus.trigger("action", 1);
+    assertEquals(Collections.singletonList(1), received);
+    assertEquals(Thread.currentThread().getName(), threads.get(0));
+  }
+
+  @Test
+  public void queued_dispatch_keeps_order_with_one_thread() throws Exception {
+    EventBus eventBus = build(Dispatcher.queued(1000, Dispatcher.Overflow.BLOCK));
+    for (int i = 0; i < 100; i++) {
+      eventBus.trigger("action", i);
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.size() == 100);
+    for (int i = 0; i < 100; i++) {
+      assertEquals(i, received.get(i));
+    }
+    assertNotEquals(Thread.currentThread().getName(), threads.get(0));
+    assertEquals(0, dispatcher.getQueueDepth());
+    assertEquals(0, dispatcher.getDroppedEvents());
+  }
+
+  @Test
+  public void queued_dispatch_drops_newest() throws Exception {
+    EventBus eventBus = buildBlocked(Dispatcher.queued(2, Dispatcher.Overflow.DROP_NEWEST));
+    for (int i = 1; i <= 5; i++) {
+      eventBus.trigger("action", i);
+    }
+    assertEquals(2, dispatcher.getQueueDepth());
+    assertEquals(3, dispatcher.getDroppedEvents());
+    release.countDown();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.size() == 2);
+    assertEquals(asList(1, 2), received);
+  }
+
+  @Test
+  public void queued_dispatch_drops_oldest() throws Exception {
+    EventBus eventBus = buildBlocked(Dispatcher.queued(2, Dispatcher.Overflow.DROP_OLDEST));
+    for (int i = 1; i <= 5; i++) {
+      eventBus.trigger("action", i);
+    }
+    assertEquals(2, dispatcher.getQueueDepth());
+    assertEquals(3, dispatcher.getDroppedEvents());
+    release.countDown();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.size() == 2);
+    assertEquals(asList(4, 5), received);
+  }
+
+  @Test
+  public void queued_dispatch_fails_when_full() throws Exception {
+    EventBus eventBus = buildBlocked(Dispatcher.queued(2, Dispatcher.Overflow.FAIL));
+    eventBus.trigger("action", 1);
+    eventBus.trigger("action", 2);
+    try {
+      eventBus.trigger("action", 3);
+      fail();
+    } catch (EventBusException e) {
+      assertTrue(e.getMessage().startsWith("Dispatch queue is full"));
+    }
+    assertEquals(1, dispatcher.getDroppedEvents());
+  }
+
+  @Test
+  public void queued_dispatch_blocks_when_full() throws Exception {
+    final EventBus eventBus = buildBlocked(Dispatcher.queued(1, Dispatcher.Overflow.BLOCK));
+    eventBus.trigger("action", 1);
+    Thread producer = new Thread() {
+      @Override
+      public void run() {
+        eventBus.trigger("action", 2);
+      }
+    };
+    producer.start();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> producer.getState() == Thread.State.TIMED_WAITING);
+    release.countDown();
+    producer.join(10_000);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.size() == 2);
+    assertEquals(asList(1, 2), received);
+    assertEquals(0, dispatcher.getDroppedEvents());
+  }
+
+  @Test
+  public void queued_dispatch_survives_rethrowing_listeners() throws Exception {
+    EventBus eventBus = new EventBus.Builder()
+        .dispatcher(dispatcher = Dispatcher.queued(10, Dispatcher.Overflow.BLOCK))
+        .on("action", new EventListener() {
+          @Override
+          public void onEvent(Event e) {
+            if (e.getData(Integer.class) == 1) {
+              throw new IllegalStateException("expected");
+            }
+            received.add(e.getData());
+          }
+        })
+        .build();
+    eventBus.trigger("action", 1);
+    eventBus.trigger("action", 2);
+    // the rethrown exception is reported to the dispatcher thread uncaught exception handler
+    Awaitility.dontCatchUncaughtExceptions().atMost(10, TimeUnit.SECONDS).until(() -> received.size() == 1);
+  }
+
+  @Test
+  public void close_drains_queued_events() throws Exception {
+    EventBus eventBus = buildBlocked(Dispatcher.queued(10, Dispatcher.Overflow.BLOCK));
+    eventBus.trigger("action", 1);
+    eventBus.trigger("action", 2);
+    dispatcher.close();
+    eventBus.trigger("action", 3);
+    release.countDown();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.size() == 2);
+    assertEquals(1, dispatcher.getDroppedEvents());
+  }
+
+  @Test
+  public void close_dispatches_the_events_of_a_full_queue() throws Exception {
+    EventBus eventBus = buildBlocked(Dispatcher.queued(2, Dispatcher.Overflow.DROP_NEWEST));
+    eventBus.trigger("action", 1);
+    eventBus.trigger("action", 2);
+    dispatcher.close();
+    eventBus.trigger("action", 3);
+    release.countDown();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.size() == 2);
+    assertEquals(asList(1, 2), received);
+    assertEquals(1, dispatcher.getDroppedEvents());
+  }
+
+  @Test(timeout = 10_000)
+  public void close_releases_the_producers_blocked_on_a_full_queue() throws Exception {
+    EventBus eventBus = buildBlocked(Dispatcher.queued(1, Dispatcher.Overflow.BLOCK));
+    eventBus.trigger("action", 1);
+    Thread producer = new Thread(() -> eventBus.trigger("action", 2));
+    producer.start();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> producer.getState() == Thread.State.TIMED_WAITING);
+    dispatcher.close();
+    producer.join();
+    assertTrue(dispatcher.getDroppedEvents() >= 1);
+  }
+
+  @Test
+  public void closing_a_local_bus_closes_its_dispatcher() throws Exception {
+    EventBus eventBus = build(Dispatcher.queued(10, Dispatcher.Overflow.BLOCK));
+    eventBus.close();
+    eventBus.trigger("action", 1);
+    assertEquals(1, dispatcher.getDroppedEvents());
+  }
+
+  @Test
+  public void partitioned_dispatch_keeps_order_per_key() throws Exception {
+    final Map<Object, List<Integer>> perKey = new ConcurrentHashMap<Object, List<Integer>>();
+    final Map<Object, String> laneThreads = new ConcurrentHashMap<Object, String>();
+    EventBus eventBus = new EventBus.Builder()
+        .dispatcher(dispatcher = Dispatcher.partitioned(4, 1000, Dispatcher.Overflow.BLOCK, e -> e.getData(Integer.class) % 8))
+        .on("action", new EventListener() {
+          @Override
+          public void onEvent(Event e) {
+            int value = e.getData(Integer.class);
+            perKey.computeIfAbsent(value % 8, k -> Collections.synchronizedList(new ArrayList<Integer>())).add(value);
+            String previous = laneThreads.putIfAbsent(value % 8, Thread.currentThread().getName());
+            assertTrue(previous == null || previous.equals(Thread.currentThread().getName()));
+          }
+        })
+        .build();
+    for (int i = 0; i < 800; i++) {
+      eventBus.trigger("action", i);
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> perKey.values().stream().mapToInt(List::size).sum() == 800);
+    for (Map.Entry<Object, List<Integer>> entry : perKey.entrySet()) {
+      List<Integer> values = entry.getValue();
+      for (int i = 0; i < values.size(); i++) {
+        assertEquals((Integer) entry.getKey() + i * 8, (int) values.get(i));
+      }
+    }
+    assertTrue(new HashSet<String>(laneThreads.values()).size() > 1);
+    assertEquals(0, dispatcher.getDroppedEvents());
+  }
+
+  @Test
+  public void partitioned_dispatch_uses_source_by_default() throws Exception {
+    Dispatcher partitioned = Dispatcher.partitioned(8, 10, Dispatcher.Overflow.BLOCK);
+    try {
+      EventBus eventBus = build(partitioned);
+      eventBus.trigger("action", 1);
+      eventBus.trigger("action", 2);
+      Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.size() == 2);
+      assertEquals(threads.get(0), threads.get(1));
+      assertEquals(asList(1, 2), received);
+    } finally {
+      partitioned.close();
+    }
+  }
+
+  private EventBus build(Dispatcher dispatcher) {
+    this.dispatcher = dispatcher;
+    return new EventBus.Builder()
+        .dispatcher(dispatcher)
+        .on("action", new EventListener() {
+          @Override
+          public void onEvent(Event e) throws Throwable {
+            threads.add(Thread.currentThread().getName());
+            received.add(e.getData());
+          }
+        })
+        .build();
+  }
+
+  // the dispatcher thread is stuck in the listener of a first event until released
+  private EventBus buildBlocked(Dispatcher dispatcher) throws Exception {
+    final CountDownLatch blocked = new CountDownLatch(1);
+    this.dispatcher = dispatcher;
+    EventBus eventBus = new EventBus.Builder()
+        .dispatcher(dispatcher)
+        .on("action", new EventListener() {
+          @Override
+          public void onEvent(Event e) throws Throwable {
+            if (e.getData(Integer.class) == 0) {
+              blocked.countDown();
+              release.await();
+            } else {
+              received.add(e.getData());
+            }
+          }
+        })
+        .build();
+    eventBus.trigger("action", 0);
+    assertTrue(blocked.await(10, TimeUnit.SECONDS));
+    return eventBus;
+  }
+
+  private static List<Object> asList(Object... values) {
+    List<Object> list = new ArrayList<Object>();
+    Collections.addAll(list, values);
+    return list;
+  }
+
+}
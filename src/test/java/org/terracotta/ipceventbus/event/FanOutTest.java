@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that the events broadcast by a server are encoded once whatever the number of clients.
+ *
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class FanOutTest {
+
+  private final CountingCodec serverCodec = new CountingCodec("counting");
+  private final List<EventBusClient> clients = new ArrayList<EventBusClient>();
+  private final List<BlockingQueue<Event>> received = new ArrayList<BlockingQueue<Event>>();
+  private final List<Socket> sockets = new ArrayList<Socket>();
+  // the IDs of the clients on the server side
+  private final List<String> ids = new ArrayList<String>();
+  private EventBusServer server;
+
+  @After
+  public void close() throws IOException {
+    for (EventBusClient client : clients) {
+      client.close();
+    }
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void broadcast_events_are_encoded_once() throws Exception {
+    ServerSocket serverSocket = new ServerSocket();
+    serverSocket.bind(new InetSocketAddress("localhost", 0));
+    server = new DefaultEventBusServer("server", serverSocket, new RethrowingErrorListener(), new Listeners(), Dispatcher.direct(), WireProtocolTest.options(serverCodec));
+    for (int i = 0; i < 8; i++) {
+      connect(new CountingCodec("counting"));
+    }
+    // a client not knowing the server codec and an old client are still served
+    connect(new CountingCodec("other"));
+    connect(null);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == clients.size());
+
+    Topic topic = server.topic("broadcast");
+    for (int i = 0; i < 100; i++) {
+      topic.trigger("event-" + i);
+    }
+    for (BlockingQueue<Event> queue : received) {
+      for (int i = 0; i < 100; i++) {
+        Event event = queue.poll(10, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals("event-" + i, event.getData());
+      }
+    }
+    assertEquals(100, serverCodec.encoded.get());
+  }
+
+  @Test
+  public void targeted_events_only_reach_their_clients() throws Exception {
+    ServerSocket serverSocket = new ServerSocket();
+    serverSocket.bind(new InetSocketAddress("localhost", 0));
+    server = new DefaultEventBusServer("server", serverSocket, new RethrowingErrorListener(), new Listeners(), Dispatcher.direct(), WireProtocolTest.options(serverCodec));
+    BlockingQueue<Event> local = new LinkedBlockingQueue<Event>();
+    server.on("broadcast", local::add);
+    for (int i = 0; i < 4; i++) {
+      connect(new CountingCodec("counting"));
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == clients.size());
+    for (Socket socket : sockets) {
+      for (String id : server.getClientQueueDepths().keySet()) {
+        if (id.endsWith(":" + socket.getLocalPort())) {
+          ids.add(id);
+        }
+      }
+    }
+    assertEquals(clients.size(), ids.size());
+
+    assertTrue(server.triggerTo(ids.get(1), "broadcast", "unicast"));
+    // a client given twice gets the event once
+    assertEquals(2, server.triggerTo(Arrays.asList(ids.get(2), ids.get(3), "unknown", ids.get(2)), "broadcast", "multicast"));
+    assertFalse(server.triggerTo("unknown", "broadcast", "lost"));
+    server.trigger("broadcast", "end");
+
+    assertEquals("end", received.get(0).poll(10, TimeUnit.SECONDS).getData());
+    assertEquals("unicast", received.get(1).poll(10, TimeUnit.SECONDS).getData());
+    assertEquals("end", received.get(1).poll(10, TimeUnit.SECONDS).getData());
+    for (int i = 2; i < 4; i++) {
+      assertEquals("multicast", received.get(i).poll(10, TimeUnit.SECONDS).getData());
+      assertEquals("end", received.get(i).poll(10, TimeUnit.SECONDS).getData());
+    }
+    for (BlockingQueue<Event> queue : received) {
+      assertNull(queue.poll());
+    }
+    // the multicast event was encoded once, and the local listeners only got the broadcast one
+    assertEquals(3, serverCodec.encoded.get());
+    assertEquals(1, local.size());
+  }
+
+  private void connect(EventCodec codec) throws IOException {
+    Socket socket = new Socket("localhost", server.getServerPort());
+    sockets.add(socket);
+    EventBusClient client = new DefaultEventBusClient("client-" + clients.size(), socket, new RethrowingErrorListener(), new Listeners(), Dispatcher.direct(), WireProtocolTest.options(codec));
+    BlockingQueue<Event> queue = new LinkedBlockingQueue<Event>();
+    client.on("broadcast", queue::add);
+    clients.add(client);
+    received.add(queue);
+  }
+
+}
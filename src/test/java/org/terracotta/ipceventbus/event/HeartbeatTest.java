@@ -0,0 +1,162 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the peers which stop answering while keeping their connection open are detected.
+ *
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class HeartbeatTest {
+
+  private final BlockingQueue<Event> onServer = new LinkedBlockingQueue<Event>();
+  private EventBusServer server;
+  private EventBusClient client;
+  private Socket hung;
+
+  @After
+  public void close() throws IOException {
+    if (hung != null) hung.close();
+    if (client != null) client.close();
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void server_closes_the_connection_of_a_hung_client() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().heartbeat(50, 300).build();
+    hungClient(true);
+    serverTimesOut();
+  }
+
+  @Test
+  public void nio_server_closes_the_connection_of_a_hung_client() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().nio(1).heartbeat(50, 300).build();
+    hungClient(true);
+    serverTimesOut();
+  }
+
+  @Test
+  public void slow_timeout_listeners_do_not_stall_the_timer() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().heartbeat(50, 300).build();
+    CountDownLatch timedOut = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    server.on("eventbus.client.timeout", e -> {
+      timedOut.countDown();
+      release.await();
+    });
+    try {
+      hungClient(true);
+      assertTrue(timedOut.await(10, TimeUnit.SECONDS));
+      CountDownLatch ticked = new CountDownLatch(1);
+      Heartbeat.schedule(ticked::countDown, 0, TimeUnit.MILLISECONDS);
+      assertTrue(ticked.await(10, TimeUnit.SECONDS));
+    } finally {
+      release.countDown();
+    }
+    serverTimesOut();
+  }
+
+  @Test
+  public void clients_of_previous_versions_are_not_timed_out() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().heartbeat(50, 300).build();
+    hungClient(false);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    Thread.sleep(1000);
+    assertEquals(1, server.getClientCount());
+  }
+
+  @Test
+  public void idle_peers_answering_the_heartbeats_stay_connected() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().heartbeat(50, 300).build();
+    server.on("eventbus.client.timeout", onServer::add);
+    client = new EventBusClient.Builder().connect(server.getServerPort()).heartbeat(50, 300).build();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> client.getRoundTripMicros() >= 0);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientRoundTripMicros().values().iterator().next() >= 0);
+    Thread.sleep(1000);
+    assertTrue(onServer.isEmpty());
+    assertEquals(1, server.getClientCount());
+    assertTrue(!client.isClosed());
+  }
+
+  @Test
+  public void round_trip_is_unknown_without_heartbeats() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    assertEquals(-1, client.getRoundTripMicros());
+    assertEquals(Long.valueOf(-1), server.getClientRoundTripMicros().values().iterator().next());
+  }
+
+  @Test
+  public void timeout_must_be_longer_than_the_interval() throws Exception {
+    try {
+      new EventBusServer.Builder().heartbeat(100, 100);
+      fail();
+    } catch (IllegalArgumentException ignored) {
+    }
+  }
+
+  /**
+   * Connects a client which never reads its socket nor answers anything
+   *
+   * @param hello false to behave as a peer of a previous version, only knowing serialized events
+   */
+  private void hungClient(boolean hello) throws IOException {
+    server.on("eventbus.client.timeout", onServer::add);
+    server.on("eventbus.client.disconnect", onServer::add);
+    hung = new Socket("localhost", server.getServerPort());
+    ObjectOutputStream out = new ObjectOutputStream(hung.getOutputStream());
+    if (hello) {
+      out.writeObject(new DefaultEvent("hung", Frames.HELLO, Frames.decodable(EventCodec.binary())));
+    }
+    out.flush();
+  }
+
+  private void serverTimesOut() throws Exception {
+    Event timeout = onServer.poll(10, TimeUnit.SECONDS);
+    assertNotNull(timeout);
+    assertEquals("eventbus.client.timeout", timeout.getName());
+    assertTrue(timeout.getData() instanceof SocketTimeoutException);
+    Event disconnect = onServer.poll(10, TimeUnit.SECONDS);
+    assertNotNull(disconnect);
+    assertEquals("eventbus.client.disconnect", disconnect.getName());
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 0);
+  }
+
+}
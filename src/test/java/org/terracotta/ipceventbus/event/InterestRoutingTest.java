@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Checks that the events are only encoded and sent to the remote peers listening to them.
+ *
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class InterestRoutingTest {
+
+  private final CountingCodec serverCodec = new CountingCodec("counting");
+  private final CountingCodec clientCodec = new CountingCodec("counting");
+  private final BlockingQueue<Event> onServer = new LinkedBlockingQueue<Event>();
+  private final BlockingQueue<Event> onClient = new LinkedBlockingQueue<Event>();
+  private EventBusServer server;
+  private EventBusClient client;
+  private Path dir;
+
+  @After
+  public void close() throws IOException {
+    if (client != null) client.close();
+    if (server != null) server.close();
+    if (dir != null) {
+      Files.deleteIfExists(dir.resolve("bus.shm"));
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  public void blocking_transport_only_sends_wanted_events() throws Exception {
+    server = new EventBusServer.Builder().codec(serverCodec).listenRandom().build();
+    client = new EventBusClient.Builder().codec(clientCodec).connect(server.getServerPort()).build();
+    check();
+  }
+
+  @Test
+  public void nio_transport_only_sends_wanted_events() throws Exception {
+    server = new EventBusServer.Builder().codec(serverCodec).listenRandom().nio(1).build();
+    client = new EventBusClient.Builder().codec(clientCodec).connect(server.getServerPort()).nio().build();
+    check();
+  }
+
+  @Test
+  public void shared_memory_only_sends_wanted_events() throws Exception {
+    Assume.assumeTrue(ShmFile.isSupported());
+    dir = Files.createTempDirectory("ipc-bus");
+    server = new EventBusServer.Builder().codec(serverCodec).sharedMemory(dir.resolve("bus.shm")).build();
+    client = new EventBusClient.Builder().codec(clientCodec).sharedMemory(dir.resolve("bus.shm")).build();
+    check();
+  }
+
+  @Test
+  public void wildcard_listener_wants_all_the_events() throws Exception {
+    server = new EventBusServer.Builder().codec(serverCodec).listenRandom().build();
+    client = new EventBusClient.Builder().codec(clientCodec).connect(server.getServerPort()).build();
+    client.on(onClient::add);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> wanted("anything"));
+
+    server.trigger("anything", 1);
+    assertReceived(onClient, "anything");
+  }
+
+  @Test
+  public void builder_listeners_are_advertised_when_connected() throws Exception {
+    server = new EventBusServer.Builder().codec(serverCodec).listenRandom().build();
+    client = new EventBusClient.Builder().codec(clientCodec).on("loud", onClient::add).connect(server.getServerPort()).build();
+    // the server only sends the events the listeners of the builder want, from the start
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> wanted("loud") && !wanted("quiet"));
+
+    server.trigger("loud", 1);
+    assertReceived(onClient, "loud");
+  }
+
+  private void check() throws Exception {
+    server.on("loud", fromPeer(server, onServer));
+    client.on("loud", fromPeer(client, onClient));
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> wanted("loud"));
+    // the interest of the server is sent before its events, so the client knows it once it gets an event
+    server.trigger("loud", 0);
+    assertReceived(onClient, "loud");
+    int serverEncoded = serverCodec.encoded.get();
+    int clientEncoded = clientCodec.encoded.get();
+
+    for (int i = 0; i < 100; i++) {
+      server.trigger("quiet", i);
+      client.trigger("quiet", i);
+    }
+    server.trigger("loud", 1);
+    client.trigger("loud", 1);
+    assertReceived(onClient, "loud");
+    assertReceived(onServer, "loud");
+    assertEquals(serverEncoded + 1, serverCodec.encoded.get());
+    assertEquals(clientEncoded + 1, clientCodec.encoded.get());
+
+    // a new listener is advertised
+    client.on("quiet", fromPeer(client, onClient));
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> wanted("quiet"));
+    server.trigger("quiet", 2);
+    assertReceived(onClient, "quiet");
+
+    // and so is a removed one
+    client.unbind("quiet");
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> !wanted("quiet"));
+    serverEncoded = serverCodec.encoded.get();
+    server.trigger("quiet", 3);
+    server.trigger("loud", 2);
+    assertReceived(onClient, "loud");
+    assertEquals(serverEncoded + 1, serverCodec.encoded.get());
+  }
+
+  // the events triggered by a bus are also received by its own listeners
+  private static EventListener fromPeer(EventBus bus, BlockingQueue<Event> queue) {
+    return event -> {
+      if (!event.getSource().equals(bus.getId())) {
+        queue.add(event);
+      }
+    };
+  }
+
+  private boolean wanted(String event) {
+    for (Connection connection : ((AbstractEventBusServer) server).getClients()) {
+      if (connection.wants(event)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void assertReceived(BlockingQueue<Event> queue, String name) throws InterruptedException {
+    Event event = queue.poll(10, TimeUnit.SECONDS);
+    assertNotNull(event);
+    assertEquals(name, event.getName());
+  }
+
+}
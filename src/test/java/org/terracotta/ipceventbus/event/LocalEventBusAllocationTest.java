@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class LocalEventBusAllocationTest {
+
+  private static final int TRIGGERS = 1_000_000;
+
+  com.sun.management.ThreadMXBean threadMXBean;
+
+  @Before
+  public void init() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+    threadMXBean = (com.sun.management.ThreadMXBean) bean;
+    Assume.assumeTrue(threadMXBean.isThreadAllocatedMemorySupported());
+    threadMXBean.setThreadAllocatedMemoryEnabled(true);
+  }
+
+  @Test
+  public void trigger_without_listeners_does_not_allocate() {
+    EventBus eventBus = new EventBus.Builder().build();
+    eventBus.on("other", new EventListenerAdapter());
+
+    // warmup
+    triggerAll(eventBus);
+
+    long tid = Thread.currentThread().getId();
+    long before = threadMXBean.getThreadAllocatedBytes(tid);
+    triggerAll(eventBus);
+    long after = threadMXBean.getThreadAllocatedBytes(tid);
+
+    assertEquals(0, (after - before) / TRIGGERS);
+  }
+
+  @Test
+  public void unknown_names_resolve_to_wildcard_listeners() {
+    Listeners listeners = new Listeners();
+    EventListener[] none = listeners.get("unknown.1");
+    assertEquals(0, none.length);
+    listeners.add("known", new EventListenerAdapter());
+    assertEquals(1, listeners.get("known").length);
+    assertEquals(0, listeners.get("unknown.2").length);
+    listeners.add("", new EventListenerAdapter());
+    assertEquals(2, listeners.get("known").length);
+    assertEquals(1, listeners.get("unknown.3").length);
+  }
+
+  @Test
+  public void slots_of_unreferenced_topics_are_forgotten() throws Exception {
+    Listeners listeners = new Listeners();
+    Listeners.Slot kept = listeners.slot("kept");
+    for (int i = 0; i < 1000; i++) {
+      listeners.slot("dynamic." + i);
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> {
+      System.gc();
+      return listeners.slots() == 1;
+    });
+    listeners.add("kept", new EventListenerAdapter());
+    assertEquals(1, kept.listeners.length);
+    assertSame(kept, listeners.slot("kept"));
+  }
+
+  private static void triggerAll(EventBus eventBus) {
+    for (int i = 0; i < TRIGGERS; i++) {
+      eventBus.trigger("action", "data");
+    }
+  }
+
+}
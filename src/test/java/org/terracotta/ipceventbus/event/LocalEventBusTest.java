@@ -18,9 +18,18 @@
 package org.terracotta.ipceventbus.event;
 
 import org.junit.Before;
+import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.concurrent.ExecutionException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 /**
  * @author Mathieu Carbou
  */
@@ -35,4 +44,69 @@ public class LocalEventBusTest extends AbstractEventBusTest<EventBus> {
     eventBus.on(new EventListenerSniffer("eventBus"));
   }
 
+  @Test
+  public void buses_implemented_elsewhere_get_defaults_for_the_newer_methods() throws Exception {
+    final EventBus delegate = eventBus;
+    EventBus bus = new EventBus() {
+      @Override
+      public void on(String event, EventListener listener) {
+        delegate.on(event, listener);
+      }
+
+      @Override
+      public void on(EventListener listener) {
+        delegate.on(listener);
+      }
+
+      @Override
+      public void unbind(String event) {
+        delegate.unbind(event);
+      }
+
+      @Override
+      public void unbind(EventListener listener) {
+        delegate.unbind(listener);
+      }
+
+      @Override
+      public void unbind(String event, EventListener listener) {
+        delegate.unbind(event, listener);
+      }
+
+      @Override
+      public String getId() {
+        return delegate.getId();
+      }
+
+      @Override
+      public void trigger(String name) {
+        delegate.trigger(name);
+      }
+
+      @Override
+      public void trigger(String name, Object data) {
+        delegate.trigger(name, data);
+      }
+    };
+    RecordingEventListener listener = new RecordingEventListener();
+    bus.on("my.event", listener);
+    Topic topic = bus.topic("my.event");
+    assertThat(topic.getName(), equalTo("my.event"));
+    topic.trigger("data");
+    assertThat(listener.events, equalTo(1));
+
+    try {
+      bus.request("my.event", null, 1000).get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(EventBusException.class));
+    }
+    try {
+      bus.reply("my.event", event -> null);
+      fail();
+    } catch (EventBusException e) {
+      assertTrue(e.getMessage().contains("not supported"));
+    }
+  }
+
 }
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class NioTransportTest {
+
+  private final BlockingQueue<Event> onServer = new LinkedBlockingQueue<Event>();
+  private final BlockingQueue<Event> onClient = new LinkedBlockingQueue<Event>();
+  private final List<EventBusClient> clients = new ArrayList<EventBusClient>();
+  private EventBusServer server;
+
+  @After
+  public void close() throws IOException {
+    for (EventBusClient client : clients) {
+      client.close();
+    }
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void nio_server_serves_blocking_client() throws Exception {
+    server(new EventBusServer.Builder().nio(2));
+    exchange(client(new EventBusClient.Builder()));
+  }
+
+  @Test
+  public void blocking_server_serves_nio_client() throws Exception {
+    server(new EventBusServer.Builder());
+    exchange(client(new EventBusClient.Builder().nio()));
+  }
+
+  @Test
+  public void nio_server_serves_nio_client() throws Exception {
+    server(new EventBusServer.Builder().nio(2));
+    exchange(client(new EventBusClient.Builder().nio()));
+  }
+
+  @Test
+  public void nio_server_has_constant_thread_count() throws Exception {
+    server(new EventBusServer.Builder().id("nio-server").nio(2));
+    final AtomicInteger received = new AtomicInteger();
+    for (int i = 0; i < 100; i++) {
+      client(new EventBusClient.Builder().nio()).on("broadcast", e -> received.incrementAndGet());
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 100);
+    server.trigger("broadcast", "hello");
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.get() == 100);
+
+    int serverThreads = 0;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().endsWith("@nio-server")) {
+        serverThreads++;
+      }
+    }
+    assertEquals(2, serverThreads);
+  }
+
+  @Test
+  public void nio_server_disconnects_client_of_previous_version() throws Exception {
+    server(new EventBusServer.Builder().nio(1));
+    try (Socket socket = new Socket("localhost", server.getServerPort())) {
+      ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+      out.writeObject(new DefaultEvent("old", "eventbus.event", new DefaultEvent("old", "from.client", "data")));
+      out.flush();
+      Event error = onServer.poll(10, TimeUnit.SECONDS);
+      assertNotNull(error);
+      assertEquals("eventbus.client.error", error.getName());
+      assertTrue(error.getData(Throwable.class).getMessage().contains("previous versions"));
+    }
+  }
+
+  @Test
+  public void nio_server_disconnects_slow_client() throws Exception {
+    server(new EventBusServer.Builder().nio(1).outbound(16, RemoteEventBus.SlowPeerPolicy.DISCONNECT));
+    EventBusClient client = client(new EventBusClient.Builder().nio());
+    client.on("state", onClient::add);
+    try (Socket slow = new Socket()) {
+      slow.setReceiveBufferSize(4096);
+      slow.connect(new InetSocketAddress("localhost", server.getServerPort()));
+      ObjectOutputStream out = new ObjectOutputStream(slow.getOutputStream());
+      out.writeObject(new DefaultEvent("slow", Frames.HELLO, Frames.decodable(EventCodec.binary())));
+      out.flush();
+      Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 2);
+
+      byte[] payload = new byte[32 * 1024];
+      for (int i = 0; i < 1000 && server.getClientCount() == 2; i++) {
+        server.trigger("state", i);
+        server.trigger("payload", payload);
+        assertEquals(i, onClient.poll(10, TimeUnit.SECONDS).getData(Integer.class).intValue());
+      }
+      Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+      Event error = onServer.poll(10, TimeUnit.SECONDS);
+      assertNotNull(error);
+      assertTrue(error.getData(Throwable.class).getMessage().startsWith("Outbound queue full"));
+    }
+  }
+
+  @Test
+  public void encoding_failure_only_closes_its_connection() throws Exception {
+    server(new EventBusServer.Builder().nio(1).codec(new CountingCodec("poisoned") {
+      @Override
+      public void encode(Object data, DataOutput out) throws IOException {
+        if ("poison".equals(data)) {
+          throw new IllegalStateException("cannot encode poison");
+        }
+        super.encode(data, out);
+      }
+    }));
+    List<BlockingQueue<Event>> received = new ArrayList<BlockingQueue<Event>>();
+    for (int i = 0; i < 2; i++) {
+      BlockingQueue<Event> queue = new LinkedBlockingQueue<Event>();
+      client(new EventBusClient.Builder().nio().codec(new CountingCodec("poisoned"))).on("state", queue::add);
+      received.add(queue);
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 2);
+
+    // both connections are served by the same loop
+    assertTrue(server.triggerTo(server.getClientQueueDepths().keySet().iterator().next(), "state", "poison"));
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    Event error = onServer.poll(10, TimeUnit.SECONDS);
+    assertNotNull(error);
+    assertTrue(error.getData(Throwable.class).getCause() instanceof IllegalStateException);
+
+    server.trigger("state", "healthy");
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> received.get(0).size() + received.get(1).size() == 1);
+    assertEquals("healthy", (received.get(0).isEmpty() ? received.get(1) : received.get(0)).poll().getData());
+  }
+
+  @Test
+  public void oversized_frames_close_the_connection() throws Exception {
+    for (EventBusServer.Builder builder : Arrays.asList(new EventBusServer.Builder(), new EventBusServer.Builder().nio(1))) {
+      server(builder);
+      try (Socket socket = new Socket("localhost", server.getServerPort())) {
+        ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+        out.writeObject(new DefaultEvent("corrupt", Frames.HELLO, Frames.decodable(EventCodec.binary())));
+        out.writeObject(new DefaultEvent("corrupt", Frames.SWITCH, EventCodec.binary().getName()));
+        out.flush();
+        DataOutputStream frames = new DataOutputStream(socket.getOutputStream());
+        frames.writeInt(Frames.MAX_FRAME_BYTES + 1);
+        frames.flush();
+        Event error = onServer.poll(10, TimeUnit.SECONDS);
+        assertNotNull(error);
+        assertTrue(error.getData(Throwable.class).getMessage().startsWith("Frame of " + (Frames.MAX_FRAME_BYTES + 1) + " bytes"));
+        Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 0);
+      }
+      server.close();
+    }
+  }
+
+  @Test
+  public void unix_socket_server_serves_nio_client() throws Exception {
+    Assume.assumeTrue(UnixSockets.isSupported());
+    Path socket = Files.createTempDirectory("ipc-bus").resolve("bus.sock");
+    server = new EventBusServer.Builder().listen(socket).build();
+    server.on("from.client", onServer::add);
+    assertEquals(-1, server.getServerPort());
+    assertTrue(Files.exists(socket));
+    EventBusClient client = new EventBusClient.Builder().connect(socket).build();
+    clients.add(client);
+    exchange(client);
+    assertTrue(server.getClientQueueDepths().keySet().iterator().next().startsWith(server.getId() + "#"));
+
+    client.close();
+    server.close();
+    assertFalse(Files.exists(socket));
+    Files.delete(socket.getParent());
+  }
+
+  private void server(EventBusServer.Builder builder) {
+    server = builder.listenRandom().build();
+    server.on("from.client", onServer::add);
+    server.on("eventbus.client.error", onServer::add);
+  }
+
+  private EventBusClient client(EventBusClient.Builder builder) {
+    EventBusClient client = builder.connect(server.getServerPort()).build();
+    clients.add(client);
+    return client;
+  }
+
+  private void exchange(EventBusClient client) throws Exception {
+    client.on("from.server", onClient::add);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+
+    Map<String, String> map = new HashMap<String, String>();
+    map.put("key", "value");
+    Object[] data = {null, "été", 42L, new byte[100 * 1024], map, new BigDecimal("3.14")};
+    for (int round = 0; round < 3; round++) {
+      for (Object d : data) {
+        client.trigger("from.client", d);
+        server.trigger("from.server", d);
+      }
+    }
+    for (int i = 0; i < 3 * data.length; i++) {
+      check(data[i % data.length], onServer.poll(10, TimeUnit.SECONDS), client.getId());
+      check(data[i % data.length], onClient.poll(10, TimeUnit.SECONDS), server.getId());
+    }
+  }
+
+  private static void check(Object expected, Event event, String source) {
+    assertNotNull(event);
+    assertEquals(source, event.getSource());
+    if (expected instanceof byte[]) {
+      assertArrayEquals((byte[]) expected, (byte[]) event.getData());
+    } else {
+      assertEquals(expected, event.getData());
+    }
+  }
+
+}
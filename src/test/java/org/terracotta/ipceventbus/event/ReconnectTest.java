@@ -0,0 +1,288 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class ReconnectTest {
+
+  private final BlockingQueue<Event> onServer = new LinkedBlockingQueue<Event>();
+  private final BlockingQueue<Event> onClient = new LinkedBlockingQueue<Event>();
+  private EventBusServer server;
+  private EventBusClient client;
+
+  @After
+  public void close() throws IOException {
+    if (client != null) client.close();
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void client_sends_the_events_triggered_while_disconnected() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    int port = server.getServerPort();
+    server.on("data", onServer::add);
+    client = new EventBusClient.Builder().connect(port).reconnect(50, 200).build();
+    client.on("eventbus.client.reconnect", onClient::add);
+    client.on("eventbus.client.disconnect", onClient::add);
+    client.trigger("data", 0);
+    assertEquals(0, onServer.poll(10, TimeUnit.SECONDS).getData());
+
+    server.close();
+    for (int i = 1; i <= 10; i++) {
+      client.trigger("data", i);
+    }
+    assertFalse(client.isClosed());
+
+    BlockingQueue<Event> onNewServer = new LinkedBlockingQueue<Event>();
+    server = restart(port);
+    server.on("data", onNewServer::add);
+    Event reconnected = onClient.poll(10, TimeUnit.SECONDS);
+    assertNotNull(reconnected);
+    assertEquals("eventbus.client.reconnect", reconnected.getName());
+
+    // a new server does not know the session: the events not acknowledged by the previous one are sent again, in order
+    Set<Object> received = new HashSet<Object>();
+    received.add(0);
+    int last = -1;
+    while (last < 10) {
+      Event event = onNewServer.poll(10, TimeUnit.SECONDS);
+      assertNotNull(event);
+      assertEquals(client.getId(), event.getSource());
+      int i = event.getData(Integer.class);
+      assertTrue(i > last);
+      received.add(i);
+      last = i;
+    }
+    for (Event event : onServer) {
+      received.add(event.getData());
+    }
+    for (int i = 0; i <= 10; i++) {
+      assertTrue(received.contains(i));
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> client.getQueueDepth() == 0);
+
+    client.close();
+    assertEquals("eventbus.client.disconnect", onClient.poll(10, TimeUnit.SECONDS).getName());
+  }
+
+  @Test
+  public void server_skips_the_events_received_before_reconnecting() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.on("data", onServer::add);
+    DefaultEventBusClient first = resume("session");
+    first.sendRemote(new OutboundEvent(new DefaultEvent("client", "data", 1), null, 1));
+    first.sendRemote(new OutboundEvent(new DefaultEvent("client", "data", 2), null, 2));
+    assertEquals(1, onServer.poll(10, TimeUnit.SECONDS).getData());
+    assertEquals(2, onServer.poll(10, TimeUnit.SECONDS).getData());
+    first.close();
+
+    DefaultEventBusClient second = resume("session");
+    for (int i = 1; i <= 3; i++) {
+      second.sendRemote(new OutboundEvent(new DefaultEvent("client", "data", i), null, i));
+    }
+    assertEquals(3, onServer.poll(10, TimeUnit.SECONDS).getData());
+    assertNull(onServer.poll(500, TimeUnit.MILLISECONDS));
+    second.close();
+  }
+
+  @Test
+  public void server_acknowledges_the_events() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.on("data", onServer::add);
+    client = new EventBusClient.Builder().connect(server.getServerPort()).reconnect().build();
+    for (int i = 0; i < 1000; i++) {
+      client.trigger("data", i);
+    }
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, onServer.poll(10, TimeUnit.SECONDS).getData());
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> client.getQueueDepth() == 0);
+    assertEquals(0, client.getDroppedEvents());
+  }
+
+  @Test
+  public void acknowledged_events_complete_once_received_by_the_server() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    int port = server.getServerPort();
+    server.on("data", onServer::add);
+    client = new EventBusClient.Builder().connect(port).reconnect(50, 200).build();
+    client.on("eventbus.client.reconnect", onClient::add);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    client.triggerAcknowledged("data", 0).get(10, TimeUnit.SECONDS);
+    assertEquals(0, onServer.poll(10, TimeUnit.SECONDS).getData());
+
+    // the events triggered while disconnected complete once the new server has received them
+    server.close();
+    List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+    for (int i = 1; i <= 10; i++) {
+      futures.add(client.triggerAcknowledged("data", i));
+    }
+    Thread.sleep(200);
+    for (CompletableFuture<Void> future : futures) {
+      assertFalse(future.isDone());
+    }
+    BlockingQueue<Event> onNewServer = new LinkedBlockingQueue<Event>();
+    server = restart(port);
+    server.on("data", onNewServer::add);
+    for (CompletableFuture<Void> future : futures) {
+      future.get(10, TimeUnit.SECONDS);
+    }
+    assertNotNull(onClient.poll(10, TimeUnit.SECONDS));
+    Set<Object> received = new HashSet<Object>();
+    for (Event event : onNewServer) {
+      received.add(event.getData());
+    }
+    for (int i = 1; i <= 10; i++) {
+      assertTrue(received.contains(i));
+    }
+  }
+
+  @Test
+  public void client_joins_its_channels_again_after_reconnecting() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    int port = server.getServerPort();
+    client = new EventBusClient.Builder().connect(port).reconnect(50, 200).join("workers").build();
+    client.on("eventbus.client.reconnect", onClient::add);
+    client.join("observers");
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getChannelMembers("workers").size() == 1 && server.getChannelMembers("observers").size() == 1);
+
+    server.close();
+    client.leave("observers");
+    server = restart(port);
+    assertNotNull(onClient.poll(10, TimeUnit.SECONDS));
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getChannelMembers("workers").size() == 1);
+    assertTrue(server.getChannelMembers("observers").isEmpty());
+  }
+
+  @Test(timeout = 30_000)
+  public void blocked_producers_let_the_acknowledgements_and_credits_in() throws Exception {
+    // the server grants few events at once, so that the producer waits for room while acknowledgements arrive
+    server = new EventBusServer.Builder().listenRandom().credits(2).build();
+    server.on("data", e -> {
+      onServer.add(e);
+      Thread.sleep(1);
+    });
+    client = new EventBusClient.Builder().connect(server.getServerPort()).reconnect(50, 200).outbound(4, RemoteEventBus.SlowPeerPolicy.BLOCK).build();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    for (int i = 0; i < 500; i++) {
+      client.trigger("data", i);
+    }
+    for (int i = 0; i < 500; i++) {
+      assertEquals(i, onServer.poll(10, TimeUnit.SECONDS).getData());
+    }
+  }
+
+  @Test
+  public void acknowledged_events_fail_when_discarded() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.on("data", onServer::add);
+    client = new EventBusClient.Builder().connect(server.getServerPort()).reconnect(50, 200).outbound(2, RemoteEventBus.SlowPeerPolicy.DROP_NEWEST).build();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    server.close();
+    // no credit while reconnecting
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> client.getAvailableCredits() == 0);
+    CompletableFuture<Void> first = client.triggerAcknowledged("data", 1);
+    CompletableFuture<Void> second = client.triggerAcknowledged("data", 2);
+    CompletableFuture<Void> third = client.triggerAcknowledged("data", 3);
+    assertTrue(first.isCompletedExceptionally());
+    assertEquals(1, client.getDroppedEvents());
+    client.close();
+    for (CompletableFuture<Void> future : Arrays.asList(first, second, third)) {
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof EventBusException);
+      }
+    }
+  }
+
+  @Test
+  public void acknowledged_events_need_a_reconnecting_client() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    try {
+      client.triggerAcknowledged("data", 1);
+      fail();
+    } catch (EventBusException e) {
+      assertTrue(e.getMessage().contains("reconnecting clients"));
+    }
+  }
+
+  @Test
+  public void reconnection_needs_the_blocking_transport() throws Exception {
+    try {
+      new EventBusClient.Builder().connect(56789).reconnect().nio().build();
+      fail();
+    } catch (EventBusException e) {
+      assertTrue(e.getMessage().contains("blocking TCP transport"));
+    }
+  }
+
+  private DefaultEventBusClient resume(String session) throws Exception {
+    DefaultEventBusClient connection = new DefaultEventBusClient("client", new Socket("localhost", server.getServerPort()), new RethrowingErrorListener(), new ConnectionOptions(), null);
+    connection.start();
+    assertTrue(connection.awaitHandshake(10_000));
+    connection.resume(session);
+    return connection;
+  }
+
+  private static EventBusServer restart(int port) throws InterruptedException {
+    // the port can be held for a moment by a reconnection attempt
+    for (int attempt = 1; ; attempt++) {
+      try {
+        return new EventBusServer.Builder().listen(port).build();
+      } catch (EventBusIOException e) {
+        if (attempt == 100) {
+          throw e;
+        }
+        Thread.sleep(100);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that a relaying server forwards the events of a client to the other clients, without decoding them.
+ *
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class RelayTest {
+
+  private final CountingCodec serverCodec = new CountingCodec("counting");
+  private final List<EventBusClient> clients = new ArrayList<EventBusClient>();
+  private EventBusServer server;
+
+  @After
+  public void close() throws IOException {
+    for (EventBusClient client : clients) {
+      client.close();
+    }
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void blocking_server_relays_events_between_clients() throws Exception {
+    server = new EventBusServer.Builder().codec(serverCodec).relay().listenRandom().build();
+    check(false);
+  }
+
+  @Test
+  public void nio_server_relays_events_between_clients() throws Exception {
+    server = new EventBusServer.Builder().codec(serverCodec).relay().listenRandom().nio(2).build();
+    check(true);
+  }
+
+  @Test
+  public void server_does_not_relay_by_default() throws Exception {
+    server = new EventBusServer.Builder().codec(serverCodec).listenRandom().build();
+    BlockingQueue<Event> onServer = new LinkedBlockingQueue<Event>();
+    server.on("chat", onServer::add);
+    EventBusClient sender = connect(new CountingCodec("counting"), false);
+    BlockingQueue<Event> onReceiver = listen(connect(new CountingCodec("counting"), false), "chat");
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 2);
+
+    sender.trigger("chat", "hello");
+    assertNotNull(onServer.poll(10, TimeUnit.SECONDS));
+    assertNull(onReceiver.poll(500, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void client_of_another_codec_gets_relayed_events_in_binary_codec() throws Exception {
+    server = new EventBusServer.Builder().codec(serverCodec).relay().listenRandom().build();
+    EventBusClient sender = connect(new CountingCodec("counting"), false);
+    BlockingQueue<Event> onOther = listen(connect(new CountingCodec("other"), false), "chat");
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 2);
+
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> {
+      sender.trigger("chat", "hello");
+      return !onOther.isEmpty();
+    });
+    Event event = onOther.poll();
+    assertEquals(sender.getId(), event.getSource());
+    assertEquals("hello", event.getData());
+    assertEquals(0, serverCodec.encoded.get());
+  }
+
+  private void check(boolean nio) throws Exception {
+    EventBusClient sender = connect(new CountingCodec("counting"), nio);
+    BlockingQueue<Event> onSender = listen(sender, "chat");
+    BlockingQueue<Event> onReceiver = listen(connect(new CountingCodec("counting"), nio), "chat");
+    BlockingQueue<Event> onIdle = listen(connect(new CountingCodec("counting"), nio), "other");
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 3);
+
+    // the sender only sends the event once the server has told it that another client listens to it
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> {
+      sender.trigger("chat", "hello");
+      return !onReceiver.isEmpty();
+    });
+    Event event = onReceiver.poll();
+    assertEquals("chat", event.getName());
+    assertEquals(sender.getId(), event.getSource());
+    assertEquals("hello", event.getData());
+
+    // never sent back to the sender nor to a client not listening to it
+    assertNull(onSender.poll(500, TimeUnit.MILLISECONDS));
+    assertTrue(onIdle.isEmpty());
+    // the server has no listener: the events were forwarded as received
+    assertEquals(0, serverCodec.encoded.get());
+    assertEquals(0, serverCodec.decoded.get());
+  }
+
+  private EventBusClient connect(EventCodec codec, boolean nio) {
+    EventBusClient.Builder builder = new EventBusClient.Builder().codec(codec).connect(server.getServerPort());
+    EventBusClient client = (nio ? builder.nio() : builder).build();
+    clients.add(client);
+    return client;
+  }
+
+  // only records the events coming from other buses
+  private static BlockingQueue<Event> listen(EventBus bus, String name) {
+    BlockingQueue<Event> queue = new LinkedBlockingQueue<Event>();
+    bus.on(name, event -> {
+      if (!event.getSource().equals(bus.getId())) {
+        queue.add(event);
+      }
+    });
+    return queue;
+  }
+
+}
@@ -17,6 +17,7 @@
 
 package org.terracotta.ipceventbus.event;
 
+import com.jayway.awaitility.Awaitility;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -24,6 +25,8 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.io.IOException;
+import java.net.Socket;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -72,9 +75,33 @@ public class RemoteEventBusTest extends AbstractEventBusTest<EventBusClient> {
     assertEquals(peer.getServerPort(), eventBus.getServerPort());
   }
 
+  @Test
+  public void topic_sends_to_remote_peers() throws Exception {
+    final RecordingEventListener onServer = new RecordingEventListener();
+    final RecordingEventListener onClient = new RecordingEventListener();
+    peer.on("from.client", onServer);
+    eventBus.on("from.server", onClient);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> peer.getClientCount() == 1);
+
+    eventBus.topic("from.client").trigger("data");
+    peer.topic("from.server").trigger("data");
+
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> onServer.events == 1 && onClient.events == 1);
+    assertEquals(eventBus.getId(), onServer.sources.get(0));
+    assertEquals(peer.getId(), onClient.sources.get(0));
+  }
+
   @Test
   public void bus_has_isClosed() {
     assertFalse(peer.isClosed());
     assertFalse(eventBus.isClosed());
   }
+
+  @Test
+  public void clients_disconnecting_at_once_are_unregistered() throws Exception {
+    for (int i = 0; i < 20; i++) {
+      new Socket("localhost", peer.getServerPort()).close();
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> peer.getClientCount() == 1);
+  }
 }
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks the request/reply calls between the buses of each transport.
+ *
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class RequestReplyTest {
+
+  private EventBusServer server;
+  private EventBusClient client;
+  private Path dir;
+
+  @After
+  public void close() throws IOException {
+    if (client != null) client.close();
+    if (server != null) server.close();
+    if (dir != null) {
+      Files.deleteIfExists(dir.resolve("bus.shm"));
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  public void local_requests_are_answered_by_the_local_handler() throws Exception {
+    EventBus bus = new EventBus.Builder().id("local").build();
+    bus.reply("square", request -> request.getData(Integer.class) * request.getData(Integer.class));
+    Event reply = bus.request("square", 7, 1000).get(5, TimeUnit.SECONDS);
+    assertEquals(49, reply.getData());
+    assertEquals("local", reply.getSource());
+    assertEquals("square", reply.getName());
+  }
+
+  @Test
+  public void calls_in_both_directions() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.reply("server.add", request -> request.getData(Integer.class) + 1);
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    callsInBothDirections();
+  }
+
+  @Test
+  public void calls_in_both_directions_with_nio() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().nio(1).build();
+    server.reply("server.add", request -> request.getData(Integer.class) + 1);
+    client = new EventBusClient.Builder().connect(server.getServerPort()).nio().build();
+    callsInBothDirections();
+  }
+
+  @Test
+  public void calls_in_both_directions_with_a_reconnecting_client() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.reply("server.add", request -> request.getData(Integer.class) + 1);
+    client = new EventBusClient.Builder().connect(server.getServerPort()).reconnect().build();
+    callsInBothDirections();
+  }
+
+  @Test
+  public void calls_in_both_directions_through_shared_memory() throws Exception {
+    Assume.assumeTrue(ShmFile.isSupported());
+    dir = Files.createTempDirectory("ipc-bus");
+    server = new EventBusServer.Builder().sharedMemory(dir.resolve("bus.shm")).build();
+    server.reply("server.add", request -> request.getData(Integer.class) + 1);
+    client = new EventBusClient.Builder().sharedMemory(dir.resolve("bus.shm")).build();
+    callsInBothDirections();
+  }
+
+  @Test
+  public void requests_sent_before_the_handshake_are_answered() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.reply("echo", Event::getData);
+    // sent as soon as connected, possibly before knowing that the server reads frames
+    List<CompletableFuture<Event>> calls = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+      calls.add(client.request("echo", i, 5000));
+      calls.get(i).get(10, TimeUnit.SECONDS);
+      client.close();
+    }
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i, calls.get(i).get().getData());
+    }
+    client = null;
+  }
+
+  @Test
+  public void failures_of_the_handler_are_sent_back() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    server.reply("divide", request -> 1 / request.getData(Integer.class));
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    try {
+      client.request("divide", 0, 5000).get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof EventBusException);
+      assertTrue(e.getCause().getMessage(), e.getCause().getMessage().contains("ArithmeticException"));
+    }
+    assertEquals(1, client.request("divide", 1, 5000).get(10, TimeUnit.SECONDS).getData());
+  }
+
+  @Test
+  public void unanswered_requests_time_out() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    // a plain listener never replies
+    server.on("ignored", e -> {
+    });
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    long start = System.nanoTime();
+    try {
+      client.request("ignored", null, 200).get(10, TimeUnit.SECONDS);
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof TimeoutException);
+    }
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+  }
+
+  @Test
+  public void requests_nobody_listens_to_fail_at_once() throws Exception {
+    server = new EventBusServer.Builder().listenRandom().build();
+    // a bus sends all its events to a peer until it registers a listener
+    server.on("other", e -> {
+    });
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> !((Connection) client).wants("unknown"));
+    CompletableFuture<Event> call = client.request("unknown", null, 60000);
+    assertTrue(call.isCompletedExceptionally());
+  }
+
+  @Test
+  public void the_pending_calls_are_forgotten() throws Exception {
+    Calls calls = new Calls();
+    List<Calls.Call> answered = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Calls.Call call = calls.open("call", i % 2 == 0 ? 50 : 60000);
+      if (i % 2 == 1) {
+        calls.complete(new Reply("peer", "call", 0, i, call.id, false));
+        answered.add(call);
+      }
+    }
+    Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> calls.size() == 0);
+    for (Calls.Call call : answered) {
+      assertTrue(call.isDone() && !call.isCompletedExceptionally());
+    }
+  }
+
+  private void callsInBothDirections() throws Exception {
+    client.reply("client.add", request -> request.getData(Integer.class) + 2);
+    Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> ((AbstractEventBusServer) server).getClients().iterator().next().getPeerInterest().wants("client.add")
+        && !((AbstractEventBusServer) server).getClients().iterator().next().getPeerInterest().wants("unknown"));
+    List<CompletableFuture<Event>> toServer = new ArrayList<>();
+    List<CompletableFuture<Event>> toClient = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      toServer.add(client.request("server.add", i, 5000));
+      toClient.add(server.request("client.add", i, 5000));
+    }
+    for (int i = 0; i < 100; i++) {
+      Event fromServer = toServer.get(i).get(10, TimeUnit.SECONDS);
+      assertEquals(i + 1, fromServer.getData());
+      assertEquals(server.getId(), fromServer.getSource());
+      Event fromClient = toClient.get(i).get(10, TimeUnit.SECONDS);
+      assertEquals(i + 2, fromClient.getData());
+      assertEquals(client.getId(), fromClient.getSource());
+    }
+  }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class SharedMemoryTest {
+
+  private final BlockingQueue<Event> onServer = new LinkedBlockingQueue<Event>();
+  private final BlockingQueue<Event> onClient = new LinkedBlockingQueue<Event>();
+  private Path dir;
+  private Path file;
+  private EventBusServer server;
+  private EventBusClient client;
+
+  @Before
+  public void setUp() throws IOException {
+    Assume.assumeTrue(ShmFile.isSupported());
+    dir = Files.createTempDirectory("ipc-bus");
+    file = dir.resolve("bus.shm");
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    if (client != null) client.close();
+    if (server != null) server.close();
+    if (dir != null) {
+      Files.deleteIfExists(file);
+      Files.delete(dir);
+    }
+  }
+
+  @Test
+  public void exchange_events_through_shared_memory() throws Exception {
+    server = new EventBusServer.Builder().sharedMemory(file).build();
+    server.on("from.client", onServer::add);
+    server.on("eventbus.client.connect", onServer::add);
+    server.on("eventbus.client.disconnect", onServer::add);
+    assertEquals(-1, server.getServerPort());
+    client = new EventBusClient.Builder().sharedMemory(file).build();
+    client.on("from.server", onClient::add);
+    assertEquals("eventbus.client.connect", onServer.poll(10, TimeUnit.SECONDS).getName());
+    assertEquals(1, server.getClientCount());
+
+    Map<String, String> map = new HashMap<String, String>();
+    map.put("key", "value");
+    Object[] data = {null, "été", 42L, new byte[100 * 1024], map, new BigDecimal("3.14")};
+    for (int round = 0; round < 100; round++) {
+      for (Object d : data) {
+        client.trigger("from.client", d);
+        server.trigger("from.server", d);
+      }
+    }
+    for (int i = 0; i < 100 * data.length; i++) {
+      check(data[i % data.length], onServer.poll(10, TimeUnit.SECONDS), client.getId());
+      check(data[i % data.length], onClient.poll(10, TimeUnit.SECONDS), server.getId());
+    }
+
+    client.close();
+    assertEquals("eventbus.client.disconnect", onServer.poll(10, TimeUnit.SECONDS).getName());
+    assertEquals(0, server.getClientCount());
+    server.close();
+    assertFalse(Files.exists(file));
+  }
+
+  @Test
+  public void same_codec_is_used_on_both_sides() throws Exception {
+    CountingCodec serverCodec = new CountingCodec("counting");
+    CountingCodec clientCodec = new CountingCodec("counting");
+    server = new EventBusServer.Builder().codec(serverCodec).sharedMemory(file).build();
+    server.on("from.client", onServer::add);
+    client = new EventBusClient.Builder().codec(clientCodec).sharedMemory(file).build();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    client.trigger("from.client", "hello");
+    assertEquals("hello", onServer.poll(10, TimeUnit.SECONDS).getData());
+    assertEquals(1, clientCodec.encoded.get());
+    assertEquals(1, serverCodec.decoded.get());
+  }
+
+  @Test
+  public void event_failing_to_encode_defines_no_string() throws Exception {
+    CountingCodec clientCodec = new CountingCodec("counting") {
+      @Override
+      public void encode(Object data, DataOutput out) throws IOException {
+        if ("bad".equals(data)) throw new IllegalStateException("cannot encode " + data);
+        super.encode(data, out);
+      }
+    };
+    server = new EventBusServer.Builder().codec(new CountingCodec("counting")).sharedMemory(file).build();
+    server.on("from.client", onServer::add);
+    client = new EventBusClient.Builder().codec(clientCodec).sharedMemory(file).build();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    try {
+      client.trigger("from.client", "bad");
+      fail();
+    } catch (IllegalStateException ignored) {
+    }
+    // the event name is defined again by the next event
+    client.trigger("from.client", "good");
+    Event event = onServer.poll(10, TimeUnit.SECONDS);
+    assertEquals("from.client", event.getName());
+    assertEquals("good", event.getData());
+  }
+
+  @Test
+  public void full_ring_drops_events() throws Exception {
+    server = new EventBusServer.Builder().outbound(1, RemoteEventBus.SlowPeerPolicy.DROP_NEWEST).sharedMemory(file, 4096, RemoteEventBus.WaitStrategy.PARK).build();
+    final CountDownLatch blocked = new CountDownLatch(1);
+    client = new EventBusClient.Builder().sharedMemory(file).build();
+    client.on("state", e -> {
+      blocked.await();
+      onClient.add(e);
+    });
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+
+    for (int i = 0; i < 1000; i++) {
+      server.trigger("state", i);
+    }
+    assertTrue(server.getDroppedEvents() > 0);
+    assertTrue(server.getQueueDepth() > 0);
+    blocked.countDown();
+    long received = 1000 - server.getDroppedEvents();
+    for (int i = 0; i < received; i++) {
+      assertNotNull(onClient.poll(10, TimeUnit.SECONDS));
+    }
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getQueueDepth() == 0);
+  }
+
+  @Test
+  public void too_large_event_closes_the_connection() throws Exception {
+    server = new EventBusServer.Builder().sharedMemory(file, 4096, RemoteEventBus.WaitStrategy.YIELD).build();
+    server.on("eventbus.client.error", onServer::add);
+    client = new EventBusClient.Builder().sharedMemory(file, RemoteEventBus.WaitStrategy.YIELD).on("payload", e -> {
+    }).build();
+    // the event is only sent once the server knows that the client listens to it
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> ((AbstractEventBusServer) server).getClients().stream().anyMatch(c -> c.wants("payload")));
+
+    server.trigger("payload", new byte[8192]);
+    Event error = onServer.poll(10, TimeUnit.SECONDS);
+    assertNotNull(error);
+    assertTrue(error.getData(Throwable.class).getMessage().contains("larger than the shared memory ring"));
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> client.isClosed());
+  }
+
+  @Test
+  public void file_accepts_a_single_client() throws Exception {
+    server = new EventBusServer.Builder().sharedMemory(file).build();
+    client = new EventBusClient.Builder().sharedMemory(file).build();
+    try {
+      new EventBusClient.Builder().sharedMemory(file).build();
+      fail();
+    } catch (EventBusIOException e) {
+      assertTrue(e.getMessage().contains("not accepting any client"));
+    }
+  }
+
+  private static void check(Object expected, Event event, String source) {
+    assertNotNull(event);
+    assertEquals(source, event.getSource());
+    if (expected instanceof byte[]) {
+      assertArrayEquals((byte[]) expected, (byte[]) event.getData());
+    } else {
+      assertEquals(expected, event.getData());
+    }
+  }
+
+}
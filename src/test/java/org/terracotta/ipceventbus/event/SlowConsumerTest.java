@@ -0,0 +1,180 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A client which stops reading its socket must not stall the server nor its other clients.
+ *
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class SlowConsumerTest {
+
+  private static final int CAPACITY = 16;
+  private static final char[] PAYLOAD = new char[32 * 1024];
+
+  static {
+    Arrays.fill(PAYLOAD, 'x');
+  }
+
+  private final BlockingQueue<Event> received = new LinkedBlockingQueue<Event>();
+  private final BlockingQueue<Event> errors = new LinkedBlockingQueue<Event>();
+  private EventBusServer server;
+  private EventBusClient client;
+  private Socket slow;
+
+  @After
+  public void close() throws IOException {
+    if (slow != null) slow.close();
+    if (client != null) client.close();
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void events_to_slow_client_are_dropped() throws Exception {
+    connect(RemoteEventBus.SlowPeerPolicy.DROP_NEWEST);
+    broadcastAndReceive(1000);
+
+    assertTrue(server.getDroppedEvents() > 0);
+    assertEquals(2, server.getClientCount());
+    for (int depth : server.getClientQueueDepths().values()) {
+      assertTrue(depth <= CAPACITY);
+    }
+  }
+
+  @Test
+  public void slow_client_is_disconnected() throws Exception {
+    connect(RemoteEventBus.SlowPeerPolicy.DISCONNECT);
+    broadcastAndReceive(1000);
+
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+    assertTrue(errors.stream().anyMatch(e -> e.getData(Throwable.class).getMessage().startsWith("Outbound queue full")));
+    assertEquals(1, server.getDroppedEvents());
+  }
+
+  @Test
+  public void events_to_slow_client_are_coalesced() throws Exception {
+    connect(RemoteEventBus.SlowPeerPolicy.COALESCE);
+    broadcastAndReceive(1000);
+    assertTrue(server.getDroppedEvents() > 0);
+
+    // the slow client catches up: it gets the last state, and the states it gets are in order
+    List<Integer> states = readSlowClient(999);
+    for (int i = 1; i < states.size(); i++) {
+      assertTrue(states.get(i - 1) < states.get(i));
+    }
+    assertEquals(999, states.get(states.size() - 1).intValue());
+  }
+
+  @Test
+  public void slow_client_blocks_producer() throws Exception {
+    connect(RemoteEventBus.SlowPeerPolicy.BLOCK);
+    Thread producer = new Thread() {
+      @Override
+      public void run() {
+        broadcast(1000);
+      }
+    };
+    producer.start();
+    producer.join(1000);
+    assertTrue(producer.isAlive());
+
+    List<Integer> states = readSlowClient(999);
+    producer.join(10000);
+    assertFalse(producer.isAlive());
+    assertEquals(1000, states.size());
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, states.get(i).intValue());
+    }
+    assertEquals(0, server.getDroppedEvents());
+  }
+
+  private void connect(RemoteEventBus.SlowPeerPolicy policy) throws Exception {
+    server = new EventBusServer.Builder()
+        .listenRandom()
+        .outbound(CAPACITY, policy)
+        .on("eventbus.client.error", errors::add)
+        .build();
+    client = new EventBusClient.Builder().connect(server.getServerPort()).build();
+    client.on("state", received::add);
+
+    // a peer of a previous version, never reading its socket after the stream header
+    slow = new Socket();
+    slow.setReceiveBufferSize(4096);
+    slow.connect(new InetSocketAddress("localhost", server.getServerPort()));
+    new ObjectOutputStream(slow.getOutputStream()).flush();
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 2);
+  }
+
+  private void broadcast(int count) {
+    for (int i = 0; i < count; i++) {
+      server.trigger("state", i);
+      // a new string each time, otherwise only a reference to it is serialized
+      server.trigger("payload", new String(PAYLOAD));
+    }
+  }
+
+  /**
+   * Broadcasts at the pace of the fast client, whose queue thus never overflows
+   */
+  private void broadcastAndReceive(int count) throws InterruptedException {
+    for (int i = 0; i < count; i++) {
+      server.trigger("state", i);
+      server.trigger("payload", new String(PAYLOAD));
+      Event event = received.poll(10, TimeUnit.SECONDS);
+      assertNotNull(event);
+      assertEquals(i, event.getData(Integer.class).intValue());
+    }
+  }
+
+  private List<Integer> readSlowClient(int last) throws Exception {
+    List<Integer> states = new ArrayList<Integer>();
+    ObjectInputStream in = new ObjectInputStream(slow.getInputStream());
+    while (states.isEmpty() || states.get(states.size() - 1) != last) {
+      Event event = (Event) in.readObject();
+      if ("eventbus.event".equals(event.getName()) && "state".equals(event.getData(Event.class).getName())) {
+        states.add(event.getData(Event.class).getData(Integer.class));
+      }
+    }
+    return states;
+  }
+
+}
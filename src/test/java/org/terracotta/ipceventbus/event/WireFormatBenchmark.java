@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary frames with the serialized events of the previous versions: encoding and decoding time per
+ * event, by kind of data. Run {@link #main(String[])} to also print the number of bytes per event and, with the GC
+ * profiler, the bytes allocated per operation.
+ * <p>
+ * The compact path writes the frames of a connection whose dictionary already holds the source and the name of the
+ * event, as after the first event of each name.
+ * <p>
+ * The legacy path writes each event wrapped in an {@code eventbus.event} event to a long-lived object stream, as
+ * connections do, but resets it every {@value #EVENTS} events to keep the benchmark memory bounded.
+ *
+ * @author Mathieu Carbou
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+  static final int EVENTS = 1024;
+
+  @Param({"null", "string", "long", "map", "small", "bytes", "serializable"})
+  String data;
+
+  Event event;
+
+  FrameOutput frame = new FrameOutput();
+  FrameInput frameInput = new FrameInput();
+  byte[] encodedFrame;
+
+  FrameDictionary sentNames = new FrameDictionary();
+  FrameDictionary receivedNames = new FrameDictionary();
+  byte[] compactFrame;
+
+  ObjectOutputStream legacyOut;
+  int legacyWritten;
+  byte[] legacyEncoded;
+  ObjectInputStream legacyIn;
+  int legacyRead;
+
+  @Setup
+  public void setup() throws IOException {
+    event = new DefaultEvent("127.0.0.1:56789", "process.telemetry", System.currentTimeMillis(), data(data));
+
+    frame.reset();
+    Frames.writeEvent(frame, EventCodec.binary(), event, null);
+    encodedFrame = frame.toByteArray();
+
+    frame.reset();
+    Frames.writeEvent(frame, EventCodec.binary(), event, null, 0, sentNames);
+    byte[] defining = frame.toByteArray();
+    frameInput.reset(defining, 5, defining.length - 5);
+    try {
+      Frames.readEvent(frameInput, EventCodec.binary(), receivedNames);
+    } catch (ClassNotFoundException e) {
+      throw new IOException(e);
+    }
+    frame.reset();
+    Frames.writeEvent(frame, EventCodec.binary(), event, null, 0, sentNames);
+    compactFrame = frame.toByteArray();
+
+    legacyOut = new ObjectOutputStream(new NullOutputStream());
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    for (int i = 0; i < EVENTS; i++) {
+      out.writeObject(new DefaultEvent(event.getSource(), "eventbus.event", event));
+    }
+    out.close();
+    legacyEncoded = bytes.toByteArray();
+  }
+
+  @Benchmark
+  public int encodeBinary() throws IOException {
+    frame.reset();
+    Frames.writeEvent(frame, EventCodec.binary(), event, null);
+    return frame.size();
+  }
+
+  @Benchmark
+  public Event decodeBinary() throws IOException, ClassNotFoundException {
+    frameInput.reset(encodedFrame, 4, encodedFrame.length - 4);
+    frameInput.readByte();
+    return Frames.readEvent(frameInput, EventCodec.binary());
+  }
+
+  @Benchmark
+  public int encodeCompact() throws IOException {
+    frame.reset();
+    Frames.writeEvent(frame, EventCodec.binary(), event, null, 0, sentNames);
+    return frame.size();
+  }
+
+  @Benchmark
+  public Event decodeCompact() throws IOException, ClassNotFoundException {
+    frameInput.reset(compactFrame, 4, compactFrame.length - 4);
+    frameInput.readByte();
+    return Frames.readEvent(frameInput, EventCodec.binary(), receivedNames);
+  }
+
+  @Benchmark
+  public ObjectOutputStream encodeLegacy() throws IOException {
+    if (++legacyWritten == EVENTS) {
+      legacyOut.reset();
+      legacyWritten = 0;
+    }
+    legacyOut.writeObject(new DefaultEvent(event.getSource(), "eventbus.event", event));
+    legacyOut.flush();
+    return legacyOut;
+  }
+
+  @Benchmark
+  public Event decodeLegacy() throws IOException, ClassNotFoundException {
+    if (legacyIn == null || legacyRead == EVENTS) {
+      legacyIn = new ObjectInputStream(new ByteArrayInputStream(legacyEncoded));
+      legacyRead = 0;
+    }
+    legacyRead++;
+    return ((Event) legacyIn.readObject()).getData(Event.class);
+  }
+
+  static Object data(String kind) {
+    switch (kind) {
+      case "null":
+        return null;
+      case "string":
+        return "child process 4242 reached state RUNNING";
+      case "long":
+        return 123456789L;
+      case "map": {
+        Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < 8; i++) {
+          map.put("key" + i, "value" + i);
+        }
+        return map;
+      }
+      case "small":
+        return new byte[20];
+      case "bytes":
+        return new byte[256];
+      case "serializable":
+        return new BigDecimal("12345.6789");
+      default:
+        throw new IllegalArgumentException(kind);
+    }
+  }
+
+  /**
+   * Prints the bytes per event of the formats: for the compact one, the events following the first one of their name,
+   * and for the legacy one, the first event of a stream, which carries the class descriptors, and the following ones.
+   */
+  static void printSizes() throws IOException {
+    System.out.printf("%-14s %8s %8s %14s %14s%n", "data", "binary", "compact", "legacy first", "legacy next");
+    for (String kind : new String[]{"null", "string", "long", "map", "small", "bytes", "serializable"}) {
+      Event event = new DefaultEvent("127.0.0.1:56789", "process.telemetry", System.currentTimeMillis(), data(kind));
+      FrameOutput frame = new FrameOutput();
+      Frames.writeEvent(frame, EventCodec.binary(), event, null);
+
+      FrameDictionary names = new FrameDictionary();
+      FrameOutput compact = new FrameOutput();
+      Frames.writeEvent(compact, EventCodec.binary(), event, null, 0, names);
+      compact.reset();
+      Frames.writeEvent(compact, EventCodec.binary(), event, null, 0, names);
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      ObjectOutputStream out = new ObjectOutputStream(bytes);
+      out.flush();
+      int header = bytes.size();
+      out.writeObject(new DefaultEvent(event.getSource(), "eventbus.event", event));
+      out.flush();
+      int first = bytes.size() - header;
+      out.writeObject(new DefaultEvent(event.getSource(), "eventbus.event", new DefaultEvent(event.getSource(), event.getName(), event.getTimestamp(), data(kind))));
+      out.flush();
+      int next = bytes.size() - header - first;
+
+      System.out.printf("%-14s %8d %8d %14d %14d%n", kind, frame.size(), compact.size(), first, next);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException, IOException {
+    printSizes();
+    new Runner(new OptionsBuilder().include(WireFormatBenchmark.class.getSimpleName()).addProfiler(GCProfiler.class).build()).run();
+  }
+
+  private static final class NullOutputStream extends OutputStream {
+    @Override
+    public void write(int b) {
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+    }
+  }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 Terracotta, Inc., a Software AG company.
+ * Copyright IBM Corp. 2024, 2025
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.terracotta.ipceventbus.event;
+
+import com.jayway.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the codec negotiation between peers, including peers of previous versions only knowing Java serialization.
+ *
+ * @author Mathieu Carbou
+ */
+@RunWith(JUnit4.class)
+public class WireProtocolTest {
+
+  private final CountingCodec serverCodec = new CountingCodec("counting");
+  private final CountingCodec clientCodec = new CountingCodec("counting");
+  private final BlockingQueue<Event> onServer = new LinkedBlockingQueue<Event>();
+  private final BlockingQueue<Event> onClient = new LinkedBlockingQueue<Event>();
+  private EventBusServer server;
+  private EventBusClient client;
+
+  @After
+  public void close() throws IOException {
+    if (client != null) client.close();
+    if (server != null) server.close();
+  }
+
+  @Test
+  public void new_peers_switch_to_binary_frames() throws Exception {
+    connect(serverCodec, clientCodec);
+    exchange();
+    assertTrue(clientCodec.encoded.get() >= 5);
+    assertTrue(serverCodec.decoded.get() >= 5);
+    assertTrue(serverCodec.encoded.get() >= 5);
+    assertTrue(clientCodec.decoded.get() >= 5);
+  }
+
+  @Test
+  public void peers_fall_back_to_binary_codec_when_not_sharing_their_codec() throws Exception {
+    connect(serverCodec, new CountingCodec("other"));
+    exchange();
+    assertEquals(0, serverCodec.encoded.get());
+    assertEquals(0, serverCodec.decoded.get());
+  }
+
+  @Test
+  public void old_client_is_served_with_serialization() throws Exception {
+    connect(serverCodec, null);
+    exchange();
+    assertEquals(0, serverCodec.encoded.get());
+    assertEquals(0, serverCodec.decoded.get());
+  }
+
+  @Test
+  public void old_server_is_sent_serialized_events() throws Exception {
+    connect(null, clientCodec);
+    exchange();
+    assertEquals(0, clientCodec.encoded.get());
+    assertEquals(0, clientCodec.decoded.get());
+  }
+
+  @Test
+  public void corrupt_frame_closes_the_connection() throws Exception {
+    // announces byte arrays longer than the frame
+    CountingCodec corrupting = new CountingCodec("counting") {
+      @Override
+      public void encode(Object data, DataOutput out) throws IOException {
+        out.writeByte(10);
+        BinaryEventCodec.writeVarInt(out, Integer.MAX_VALUE);
+      }
+    };
+    connect(corrupting, clientCodec);
+    client.on("eventbus.client.error", onClient::add);
+    server.trigger("from.server", "data");
+    Event error = onClient.poll(10, TimeUnit.SECONDS);
+    assertEquals("eventbus.client.error", error.getName());
+    assertTrue(error.getData() instanceof EventBusIOException);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> client.isClosed() && server.getClientCount() == 0);
+  }
+
+  @Test
+  public void failing_codec_closes_the_connection() throws Exception {
+    CountingCodec failing = new CountingCodec("counting") {
+      @Override
+      public void encode(Object data, DataOutput out) throws IOException {
+        throw new IllegalStateException("cannot encode " + data);
+      }
+    };
+    connect(failing, clientCodec);
+    server.on("eventbus.client.error", onServer::add);
+    server.trigger("from.server", "data");
+    Event error = onServer.poll(10, TimeUnit.SECONDS);
+    assertEquals("eventbus.client.error", error.getName());
+    assertTrue(error.getData() instanceof IllegalStateException);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> client.isClosed() && server.getClientCount() == 0);
+  }
+
+  private void connect(EventCodec serverCodec, EventCodec clientCodec) throws Exception {
+    ServerSocket serverSocket = new ServerSocket();
+    serverSocket.bind(new InetSocketAddress("localhost", 0));
+    server = new DefaultEventBusServer("server", serverSocket, new RethrowingErrorListener(), new Listeners(), Dispatcher.direct(), options(serverCodec));
+    server.on("from.client", onServer::add);
+
+    Socket socket = new Socket("localhost", server.getServerPort());
+    client = new DefaultEventBusClient("client", socket, new RethrowingErrorListener(), new Listeners(), Dispatcher.direct(), options(clientCodec));
+    client.on("from.server", onClient::add);
+    Awaitility.waitAtMost(10, TimeUnit.SECONDS).until(() -> server.getClientCount() == 1);
+  }
+
+  private void exchange() throws InterruptedException {
+    Map<String, String> map = new HashMap<String, String>();
+    map.put("key", "value");
+    Object[] data = {null, "été", 42L, new byte[]{1, 2}, map, new BigDecimal("3.14")};
+
+    Topic fromClient = client.topic("from.client");
+    Topic fromServer = server.topic("from.server");
+    for (Object d : data) {
+      fromClient.trigger(d);
+      server.trigger("from.server", d);
+    }
+    for (Object d : data) {
+      client.trigger("from.client", d);
+      fromServer.trigger(d);
+    }
+    for (int i = 0; i < 2 * data.length; i++) {
+      check(data[i % data.length], onServer.poll(10, TimeUnit.SECONDS), "client");
+      check(data[i % data.length], onClient.poll(10, TimeUnit.SECONDS), "server");
+    }
+  }
+
+  static ConnectionOptions options(EventCodec codec) {
+    ConnectionOptions options = new ConnectionOptions();
+    options.codec = codec;
+    return options;
+  }
+
+  private static void check(Object expected, Event event, String source) {
+    assertNotNull(event);
+    assertEquals(source, event.getSource());
+    assertTrue(event.getTimestamp() > 0);
+    if (expected instanceof byte[]) {
+      assertArrayEquals((byte[]) expected, (byte[]) event.getData());
+    } else {
+      assertEquals(expected, event.getData());
+    }
+  }
+
+}
@@ -54,6 +54,9 @@ public class EchoEvent {
       }
     });
 
+    // tells the parent that the listeners are registered
+    bus.trigger("ready", null);
+
     ThreadUtil.minimumSleep(1000);
   }
 
@@ -18,6 +18,7 @@
 package org.terracotta.ipceventbus.proc;
 
 import com.jayway.awaitility.Awaitility;
+import org.junit.Assume;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -25,6 +26,7 @@ import org.junit.runners.JUnit4;
 import org.terracotta.ipceventbus.ThreadUtil;
 import org.terracotta.ipceventbus.event.Event;
 import org.terracotta.ipceventbus.event.EventListener;
+import org.terracotta.ipceventbus.event.RemoteEventBus;
 import org.terracotta.ipceventbus.proc.draft.SocketClient;
 import org.terracotta.ipceventbus.proc.draft.SocketServer;
 
@@ -32,8 +34,10 @@ import java.io.File;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
@@ -178,6 +182,85 @@ public class EventJavaProcessTest {
     assertEquals("", process.getRecordedStderrText());
   }
 
+  @Test(timeout = 10_000)
+  public void launch_ipc_process_over_unix_socket() throws Throwable {
+    Assume.assumeTrue(System.getProperty("java.specification.version").compareTo("16") >= 0 && !System.getProperty("os.name").startsWith("Windows"));
+
+    final BlockingQueue<Event> pongs = new LinkedBlockingQueue<Event>();
+    EventJavaProcess process = EventJavaProcess.newBuilder()
+        .unixSocket()
+        .on("pong", new EventListener() {
+          @Override
+          public void onEvent(Event e) {
+            pongs.add(e);
+          }
+        })
+        .mainClass(EchoEvent.class.getName())
+        .addClasspath(EchoEvent.class)
+        .recordStderr()
+        .pipeStdout()
+        .pipeStderr()
+        .build();
+
+    assertEquals(-1, process.getEventBusServerPort());
+    Awaitility.waitAtMost(5, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return process.isEventBusConnected();
+      }
+    });
+
+    process.trigger("ping", "hello");
+    assertEquals("hello", pongs.poll(5, TimeUnit.SECONDS).getData());
+
+    assertEquals(0, process.waitFor());
+    assertEquals("", process.getRecordedStderrText());
+  }
+
+  @Test(timeout = 10_000)
+  public void launch_ipc_process_over_shared_memory() throws Throwable {
+    Assume.assumeTrue(!System.getProperty("java.specification.version").startsWith("1."));
+
+    final BlockingQueue<Event> pongs = new LinkedBlockingQueue<Event>();
+    final CountDownLatch ready = new CountDownLatch(1);
+    EventJavaProcess process = EventJavaProcess.newBuilder()
+        .sharedMemory(RemoteEventBus.WaitStrategy.YIELD)
+        .on("pong", new EventListener() {
+          @Override
+          public void onEvent(Event e) {
+            pongs.add(e);
+          }
+        })
+        .on("ready", new EventListener() {
+          @Override
+          public void onEvent(Event e) {
+            ready.countDown();
+          }
+        })
+        .mainClass(EchoEvent.class.getName())
+        .addClasspath(EchoEvent.class)
+        .recordStderr()
+        .pipeStdout()
+        .pipeStderr()
+        .build();
+
+    assertEquals(-1, process.getEventBusServerPort());
+    Awaitility.waitAtMost(5, TimeUnit.SECONDS).until(new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return process.isEventBusConnected();
+      }
+    });
+
+    // the ring does not keep the events sent before the child listens to them
+    assertTrue(ready.await(5, TimeUnit.SECONDS));
+    process.trigger("ping", "hello");
+    assertEquals("hello", pongs.poll(5, TimeUnit.SECONDS).getData());
+
+    assertEquals(0, process.waitFor());
+    assertEquals("", process.getRecordedStderrText());
+  }
+
   @Test(timeout = 10_000)
   public void be_alerted_of_process_end() throws Throwable {
 